@@ -3,7 +3,7 @@ DIR="$( cd "$( dirname "${BASH_SOURCE[0]}" )" && pwd )"
 
 
 # compile the java program
-javac -d $DIR/../classes $DIR/../src/AirlineManagement.java
+javac -encoding UTF-8 -Xlint:unchecked -Xlint:deprecation -Xlint:serial -d $DIR/../classes $DIR/../src/*.java
 
 #run the java program
 #Use your database name, port number and login
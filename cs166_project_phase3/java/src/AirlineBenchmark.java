@@ -0,0 +1,452 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+
+/**
+ * This class benchmarks the real menu operations against the configured
+ * database.  Each operation is driven through its menu method with scripted
+ * input, exactly as a user would type it, from several threads at once; the
+ * report gives throughput, latency percentiles and bytes allocated per
+ * operation.  MakeReservation books real seats, so run it against a scratch
+ * copy of the database.  The run ends with a contention check: many threads
+ * book the last few seats of one flight instance at once, and the seats,
+ * reservations and waitlist must add up exactly afterwards.
+ *
+ * Options: -Dairline.bench.warmup=&lt;seconds&gt; (default 2),
+ * -Dairline.bench.ops=&lt;comma separated operation names&gt; (default all,
+ * the check is ContendedBooking), -Dairline.bench.contendThreads=&lt;n&gt;
+ * (default 32) and -Dairline.bench.contendSeats=&lt;free seats&gt; (default 5).
+ *
+ */
+public class AirlineBenchmark {
+
+   /*
+    * Produces the lines a user types for one call of an operation
+    **/
+   private interface Script {
+      String next(ThreadLocalRandom random);
+   }
+
+   private interface Action {
+      void run(AirlineManagement esql);
+   }
+
+   private static final class Operation {
+      final String name;
+      final Script script;
+      final Action action;
+
+      Operation(String name, Script script, Action action) {
+         this.name = name;
+         this.script = script;
+         this.action = action;
+      }
+   }//end Operation
+
+   /*
+    * Serves one script at a time to the session of a benchmark thread
+    **/
+   private static final class ScriptReader extends Reader {
+      private String _script = "";
+      private int _pos = 0;
+
+      void set(String script) {
+         this._script = script;
+         this._pos = 0;
+      }
+
+      public int read(char[] buf, int off, int len) {
+         if (this._pos >= this._script.length())
+            return -1;
+         int n = Math.min(len, this._script.length() - this._pos);
+         this._script.getChars(this._pos, this._pos + n, buf, off);
+         this._pos += n;
+         return n;
+      }
+
+      public void close() {
+      }
+   }//end ScriptReader
+
+   /*
+    * Discards output but remembers how much was written
+    **/
+   private static final class CountingStream extends OutputStream {
+      long count = 0;
+
+      public void write(int b) {
+         this.count++;
+      }
+
+      public void write(byte[] b, int off, int len) {
+         this.count += len;
+      }
+   }//end CountingStream
+
+   /*
+    * Latencies and counters collected by one benchmark thread
+    **/
+   private static final class Recorder {
+      long[] nanos = new long[1 << 14];
+      int size = 0;
+      long errors = 0;
+      long allocatedBytes = 0;
+
+      void add(long latency) {
+         if (this.size == this.nanos.length)
+            this.nanos = Arrays.copyOf(this.nanos, this.size * 2);
+         this.nanos[this.size++] = latency;
+      }
+   }//end Recorder
+
+   static final String COUNT_OVERSOLD =
+      "SELECT COUNT(*) FROM FlightInstance WHERE SeatsSold > SeatsTotal";
+
+   // an instance nobody has flown or is waiting for, and the only one of its
+   // flight on that date, so every booking lands on it
+   static final String PICK_CONTENDED =
+      "SELECT fi.FlightInstanceID, fi.FlightNumber, TO_CHAR(fi.FlightDate, 'YYYY-MM-DD') " +
+      "FROM FlightInstance fi " +
+      "WHERE fi.FlightDate IS NOT NULL " +
+      "  AND NOT EXISTS (SELECT 1 FROM Reservation r WHERE r.FlightInstanceID = fi.FlightInstanceID " +
+      "                    AND r.Status IN ('flown', 'waitlist')) " +
+      "  AND NOT EXISTS (SELECT 1 FROM FlightInstance o WHERE o.FlightNumber = fi.FlightNumber " +
+      "                    AND o.FlightDate = fi.FlightDate AND o.FlightInstanceID <> fi.FlightInstanceID) " +
+      "ORDER BY random() LIMIT 1";
+
+   // makes SeatsSold match the reserved seats and leaves ? of them free
+   static final String PREPARE_CONTENDED =
+      "UPDATE FlightInstance fi SET SeatsSold = r.reserved, SeatsTotal = r.reserved + ? " +
+      "FROM (SELECT COUNT(*) AS reserved FROM Reservation " +
+      "      WHERE FlightInstanceID = ? AND Status = 'reserved') r " +
+      "WHERE fi.FlightInstanceID = ?";
+
+   // SeatsSold, SeatsTotal, and the reserved, flown and waitlisted reservations
+   static final String COUNT_CONTENDED =
+      "SELECT fi.SeatsSold, fi.SeatsTotal, " +
+      "       (SELECT COUNT(*) FROM Reservation r WHERE r.FlightInstanceID = fi.FlightInstanceID AND r.Status = 'reserved'), " +
+      "       (SELECT COUNT(*) FROM Reservation r WHERE r.FlightInstanceID = fi.FlightInstanceID AND r.Status = 'flown'), " +
+      "       (SELECT COUNT(*) FROM Reservation r WHERE r.FlightInstanceID = fi.FlightInstanceID AND r.Status = 'waitlist') " +
+      "FROM FlightInstance fi WHERE fi.FlightInstanceID = ?";
+
+   static final String CONTENDED_BOOKING = "ContendedBooking";
+
+   // threads booking the contended instance, -Dairline.bench.contendThreads=<n>; each books twice
+   static final int CONTEND_THREADS = Integer.getInteger("airline.bench.contendThreads", 32);
+   // free seats left on it before they start, -Dairline.bench.contendSeats=<n>
+   static final int CONTEND_SEATS = Integer.getInteger("airline.bench.contendSeats", 5);
+
+   // inputs are drawn from rows the menu prompts accept
+   static final String SAMPLE_INSTANCES =
+      "SELECT fi.FlightNumber, TO_CHAR(fi.FlightDate, 'YYYY-MM-DD'), f.DepartureCity, f.ArrivalCity " +
+      "FROM FlightInstance fi JOIN Flight f ON fi.FlightNumber = f.FlightNumber " +
+      "WHERE fi.FlightNumber ~ '^F[0-9]{3}$' " +
+      "  AND fi.FlightDate BETWEEN DATE '2025-01-01' AND DATE '2026-12-31' " +
+      "  AND f.DepartureCity ~ '^[A-Za-z ]{2,15}$' AND f.ArrivalCity ~ '^[A-Za-z ]{2,15}$' " +
+      "ORDER BY random() LIMIT 1000";
+
+   static final String SAMPLE_CUSTOMERS =
+      "SELECT CAST(CustomerID AS TEXT), FirstName, LastName FROM Customer " +
+      "WHERE FirstName ~ '^[A-Za-z]{2,15}$' AND LastName ~ '^[A-Za-z]{2,30}$' " +
+      "ORDER BY random() LIMIT 1000";
+
+   private static final LocalDate LAST_VALID_DATE = LocalDate.of(2026, 12, 31);
+
+   private final AirlineManagement _esql;
+   private final int _seconds;
+   private final int _threads;
+   private final int _warmupSeconds = Integer.getInteger("airline.bench.warmup", 2);
+   private final List<String> _selected;
+   private final ThreadMXBean _threadBean = ManagementFactory.getThreadMXBean();
+
+   private List<String[]> _instances;
+   private List<String[]> _customers;
+
+   /**
+    * Creates a new benchmark
+    *
+    * @param esql the database to run against
+    * @param seconds how long each operation is measured
+    * @param threads the number of concurrent users
+    */
+   public AirlineBenchmark(AirlineManagement esql, int seconds, int threads) {
+      this._esql = esql;
+      this._seconds = seconds;
+      this._threads = threads;
+      String ops = System.getProperty("airline.bench.ops");
+      this._selected = ops == null ? null : Arrays.asList(ops.split("\\s*,\\s*"));
+   }//end AirlineBenchmark
+
+   /**
+    * Runs every selected operation and prints one report line for each.
+    *
+    * @throws java.lang.Exception when the sample data could not be read or a
+    *         benchmark thread failed
+    */
+   public void run() throws Exception {
+      this._instances = sample(SAMPLE_INSTANCES, 4);
+      this._customers = sample(SAMPLE_CUSTOMERS, 3);
+      if (this._instances.isEmpty() || this._customers.isEmpty())
+         throw new IllegalStateException("Benchmark needs flight instances and customers in the database");
+      long oversoldBefore = countOversold();
+
+      System.out.println(String.format("Benchmark: %d thread(s), %d s warmup, %d s measured per operation",
+                                       this._threads, this._warmupSeconds, this._seconds));
+      System.out.println(String.format("%-22s %10s %9s %9s %9s %9s %9s %7s %10s",
+                                       "operation", "ops/s", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms",
+                                       "max ms", "errors", "KB/op"));
+      for (Operation op : operations()) {
+         if (this._selected != null && !this._selected.contains(op.name))
+            continue;
+         if (this._warmupSeconds > 0)
+            measure(op, this._warmupSeconds);
+         report(op, measure(op, this._seconds));
+      }
+
+      long oversoldAfter = countOversold();
+      System.out.println("Oversold flight instances: " + oversoldBefore + " before, " + oversoldAfter + " after" +
+                         (oversoldAfter > oversoldBefore ? " - FAILED" : ""));
+      boolean contended = (this._selected != null && !this._selected.contains(CONTENDED_BOOKING)) || contend();
+      System.out.println("Connection pool: " + this._esql.getPoolStats());
+      if (!contended)
+         throw new IllegalStateException("Contended booking check failed");
+   }//end run
+
+   /*
+    * Lets CONTEND_THREADS threads book one instance with CONTEND_SEATS free
+    * seats at the same moment.  Exactly min(attempts, free seats) bookings
+    * must get a seat and the rest a waitlist place, and SeatsSold must still
+    * equal the reserved and flown reservations.
+    * @return true when all of that holds
+    **/
+   private boolean contend() throws Exception {
+      String[] instance = this._esql.executeQueryForObject(PICK_CONTENDED,
+         rs -> new String[] { rs.getString(1), rs.getString(2), rs.getString(3) });
+      if (instance == null) {
+         System.out.println(CONTENDED_BOOKING + ": no flight instance without flown or waitlisted reservations - SKIPPED");
+         return true;
+      }
+      int instanceId = Integer.parseInt(instance[0]);
+      this._esql.executeUpdate(PREPARE_CONTENDED, CONTEND_SEATS, instanceId, instanceId);
+      this._esql.getWaitlistEngine().forget(instanceId);
+      this._esql.getFlightStatsCache().touch(instanceId);
+      this._esql.getDayBoardCache().touch(instanceId);
+      long[] before = countContended(instanceId);
+      long free = before[1] - before[0];
+
+      int attempts = CONTEND_THREADS * 2;
+      ExecutorService workers = Executors.newFixedThreadPool(CONTEND_THREADS);
+      long[] outcome = new long[3];   // reserved, waitlist, failed
+      try {
+         CountDownLatch start = new CountDownLatch(1);
+         List<Future<long[]>> results = new ArrayList<Future<long[]>>();
+         for (int t = 0; t < CONTEND_THREADS; ++t)
+            results.add(workers.submit(() -> {
+               long[] mine = new long[3];
+               start.await();
+               for (int i = 0; i < 2; ++i) {
+                  int customerId = Integer.parseInt(pick(this._customers, ThreadLocalRandom.current())[0]);
+                  try {
+                     BookingEngine.Booking booking =
+                        this._esql.getBookingEngine().book(customerId, instance[1], instance[2]);
+                     if (booking == null)
+                        mine[2]++;
+                     else
+                        mine[booking.isConfirmed() ? 0 : 1]++;
+                  } catch (SQLException e) {
+                     mine[2]++;
+                  }
+               }
+               return mine;
+            }));
+         start.countDown();
+         for (Future<long[]> result : results) {
+            long[] mine = result.get();
+            for (int i = 0; i < outcome.length; ++i)
+               outcome[i] += mine[i];
+         }
+      } finally {
+         workers.shutdownNow();
+      }
+
+      long[] after = countContended(instanceId);
+      long seated = Math.min(attempts, free);
+      boolean ok = outcome[2] == 0
+                && outcome[0] == seated && after[2] - before[2] == seated
+                && after[0] == after[2] + after[3]
+                && outcome[1] == attempts - seated && after[4] - before[4] == attempts - seated;
+      System.out.println(String.format(
+         "%s: %d bookings of %s %s with %d free seats: %d reserved, %d waitlisted, %d failed; " +
+         "SeatsSold %d = %d reserved + %d flown - %s",
+         CONTENDED_BOOKING, attempts, instance[1], instance[2], free, after[2] - before[2], after[4] - before[4],
+         outcome[2], after[0], after[2], after[3], ok ? "OK" : "FAILED"));
+      return ok;
+   }//end contend
+
+   private long[] countContended(int instanceId) throws SQLException {
+      return this._esql.executeQueryForObject(COUNT_CONTENDED,
+         rs -> new long[] { rs.getLong(1), rs.getLong(2), rs.getLong(3), rs.getLong(4), rs.getLong(5) }, instanceId);
+   }
+
+   private List<Operation> operations() {
+      List<Operation> ops = new ArrayList<Operation>();
+      ops.add(new Operation("SearchFlights", r -> {
+         String[] i = pick(this._instances, r);
+         return i[2] + "\n" + i[3] + "\n" + i[1] + "\n";
+      }, AirlineManagement::SearchFlights));
+      ops.add(new Operation("ViewFlightsOfTheDay", r -> pick(this._instances, r)[1] + "\n",
+                            AirlineManagement::ViewFlightsOfTheDay));
+      ops.add(new Operation("ViewFlightStatsInRange", r -> {
+         String[] i = pick(this._instances, r);
+         LocalDate end = LocalDate.parse(i[1]).plusDays(30);
+         if (end.isAfter(LAST_VALID_DATE))
+            end = LAST_VALID_DATE;
+         return i[0] + "\n" + i[1] + "\n" + end + "\n";
+      }, AirlineManagement::ViewFlightStatsInRange));
+      ops.add(new Operation("LogIn", r -> {
+         String[] c = pick(this._customers, r);
+         return "1\n" + c[1] + "\n" + c[2] + "\n" + c[0] + "\n";
+      }, AirlineManagement::LogIn));
+      ops.add(new Operation("MakeReservation", r -> {
+         String[] i = pick(this._instances, r);
+         return pick(this._customers, r)[0] + "\n" + i[0] + "\n" + i[1] + "\n";
+      }, AirlineManagement::MakeReservation));
+      return ops;
+   }//end operations
+
+   /*
+    * Runs the operation from every thread until the time is up
+    **/
+   private Recorder measure(Operation op, int seconds) throws Exception {
+      ExecutorService workers = Executors.newFixedThreadPool(this._threads);
+      try {
+         CountDownLatch start = new CountDownLatch(1);
+         List<Future<Recorder>> results = new ArrayList<Future<Recorder>>();
+         for (int t = 0; t < this._threads; ++t)
+            results.add(workers.submit(() -> {
+               start.await();
+               return runWorker(op, System.nanoTime() + seconds * 1000000000L);
+            }));
+         start.countDown();
+
+         Recorder total = new Recorder();
+         for (Future<Recorder> result : results) {
+            Recorder r = result.get();
+            for (int i = 0; i < r.size; ++i)
+               total.add(r.nanos[i]);
+            total.errors += r.errors;
+            total.allocatedBytes += r.allocatedBytes;
+         }
+         return total;
+      } finally {
+         workers.shutdownNow();
+      }
+   }//end measure
+
+   private Recorder runWorker(Operation op, long deadline) {
+      Recorder recorder = new Recorder();
+      ScriptReader input = new ScriptReader();
+      CountingStream errors = new CountingStream();
+      Session.attach(new Session(input, new PrintStream(new CountingStream()), new PrintStream(errors)));
+      ThreadLocalRandom random = ThreadLocalRandom.current();
+      long allocatedBefore = allocatedBytes();
+      try {
+         while (System.nanoTime() < deadline) {
+            input.set(op.script.next(random));
+            long errorsBefore = errors.count;
+            long start = System.nanoTime();
+            op.action.run(this._esql);
+            long latency = System.nanoTime() - start;
+            if (errors.count != errorsBefore)
+               recorder.errors++;
+            else
+               recorder.add(latency);
+         }
+      } finally {
+         Session.detach();
+      }
+      long allocatedAfter = allocatedBytes();
+      recorder.allocatedBytes = (allocatedBefore < 0 || allocatedAfter < 0) ? -1 : allocatedAfter - allocatedBefore;
+      return recorder;
+   }//end runWorker
+
+   private void report(Operation op, Recorder r) {
+      long[] sorted = Arrays.copyOf(r.nanos, r.size);
+      Arrays.sort(sorted);
+      long ops = r.size + r.errors;
+      String perOp = (r.allocatedBytes < 0 || ops == 0) ? "n/a" : String.format("%.1f", r.allocatedBytes / 1024.0 / ops);
+      System.out.println(String.format("%-22s %10.1f %9.3f %9.3f %9.3f %9.3f %9.3f %7d %10s",
+                                       op.name, (double) ops / this._seconds,
+                                       percentile(sorted, 0.50), percentile(sorted, 0.90),
+                                       percentile(sorted, 0.99), percentile(sorted, 0.999),
+                                       sorted.length == 0 ? 0.0 : sorted[sorted.length - 1] / 1e6,
+                                       r.errors, perOp));
+   }//end report
+
+   /*
+    * @return the latency at quantile q in milliseconds
+    **/
+   private static double percentile(long[] sorted, double q) {
+      if (sorted.length == 0)
+         return 0.0;
+      int index = (int) Math.ceil(q * sorted.length) - 1;
+      return sorted[Math.max(0, Math.min(index, sorted.length - 1))] / 1e6;
+   }
+
+   /*
+    * @return bytes allocated so far by the calling thread, or -1 when the JVM
+    *         cannot tell
+    **/
+   private long allocatedBytes() {
+      if (this._threadBean instanceof com.sun.management.ThreadMXBean) {
+         com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) this._threadBean;
+         if (bean.isThreadAllocatedMemorySupported() && bean.isThreadAllocatedMemoryEnabled())
+            return bean.getThreadAllocatedBytes(Thread.currentThread().getId());
+      }
+      return -1;
+   }//end allocatedBytes
+
+   private List<String[]> sample(String query, int columns) throws SQLException {
+      return this._esql.executeQueryForList(query, rs -> {
+         String[] row = new String[columns];
+         for (int i = 0; i < columns; ++i)
+            row[i] = rs.getString(i + 1);
+         return row;
+      });
+   }
+
+   private long countOversold() throws SQLException {
+      return this._esql.executeQueryForObject(COUNT_OVERSOLD, rs -> rs.getLong(1));
+   }
+
+   private static String[] pick(List<String[]> rows, ThreadLocalRandom random) {
+      return rows.get(random.nextInt(rows.size()));
+   }
+
+}//end AirlineBenchmark
@@ -11,19 +11,30 @@
  */
 
 
-import java.sql.DriverManager;
-import java.sql.Connection;
 import java.sql.Statement;
+import java.sql.PreparedStatement;
+import java.sql.Types;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.io.File;
-import java.io.FileReader;
 import java.io.BufferedReader;
 import java.io.InputStreamReader;
 import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.Map;
+import java.util.LinkedHashMap;
+import java.time.LocalDate;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.ToIntFunction;
 import java.lang.Math;
 
 
@@ -34,13 +45,107 @@ import java.lang.Math;
  */
 public class AirlineManagement {
 
-   // reference to physical database connection.
-   private Connection _connection = null;
+   // pool of physical database connections shared by every caller.
+   private ConnectionPool _pool = null;
 
-   // handling the keyboard inputs through a BufferedReader
-   // This variable can be global for convenience.
-   static BufferedReader in = new BufferedReader(
-                                new InputStreamReader(System.in));
+   // number of prepared statements kept open per connection
+   static final int STATEMENT_CACHE_SIZE = 64;
+
+   // pool sizing, overridable with -Dairline.pool.<name>=<value>
+   static final int POOL_MIN_SIZE = Integer.getInteger("airline.pool.minSize", 1);
+   static final int POOL_MAX_SIZE = Integer.getInteger("airline.pool.maxSize", 8);
+   static final long POOL_MAX_WAIT_MILLIS = Long.getLong("airline.pool.maxWaitMillis", 30000L);
+   static final long POOL_IDLE_TIMEOUT_MILLIS = Long.getLong("airline.pool.idleTimeoutMillis", 300000L);
+   static final long POOL_VALIDATE_AFTER_MILLIS = Long.getLong("airline.pool.validateAfterMillis", 5000L);
+
+   /**
+    * @return the input of the user served by the current thread
+    */
+   static BufferedReader in() {
+      return Session.current().in();
+   }
+
+   /**
+    * @return where menus and results for the current user are written
+    */
+   static PrintStream out() {
+      return Session.current().out();
+   }
+
+   /**
+    * @return where error messages for the current user are written
+    */
+   static PrintStream err() {
+      return Session.current().err();
+   }
+
+   /**
+    * Unit of work run against a single borrowed connection.
+    */
+   public interface ConnectionWork<T> {
+      T run(ConnectionPool.PooledConnection conn) throws SQLException;
+   }
+
+   /**
+    * Callback that receives streamed query rows one at a time.  The result
+    * set is positioned on the current row and must not be advanced.
+    */
+   public interface RowHandler {
+      void handle(ResultSet rs, int rowNumber) throws SQLException;
+   }
+
+   /**
+    * Reads the current row of a result set into a typed object.  The result
+    * set must not be advanced.
+    */
+   public interface RowMapper<T> {
+      T map(ResultSet rs) throws SQLException;
+   }
+
+   static final String PARTITIONED_SCHEMA =
+      "SELECT EXISTS (SELECT 1 FROM pg_partitioned_table WHERE partrelid = to_regclass('reservation'))";
+
+   // rows fetched per round trip by streaming queries, -Dairline.fetchSize=<n>
+   static final int STREAM_FETCH_SIZE = Integer.getInteger("airline.fetchSize", 500);
+
+   // ID generators; block sizes must match INCREMENT BY in create_tables.sql
+   private final IdAllocator _reservationIds = new IdAllocator(this, "reservation_id_seq", 50);
+   private final IdAllocator _customerIds = new IdAllocator(this, "customer_id_seq", 20);
+   private final IdAllocator _requestIds = new IdAllocator(this, "maintenance_request_id_seq", 20);
+   private final IdAllocator _repairIds = new IdAllocator(this, "repair_id_seq", 20);
+   private final IdAllocator _pilotIds = new IdAllocator(this, "pilot_id_seq", 1);
+   private final IdAllocator _technicianIds = new IdAllocator(this, "technician_id_seq", 1);
+
+   // Flight and Schedule, indexed by route and day of week
+   private final RouteCache _routes = new RouteCache(this);
+
+   // connecting flights over the cached route graph
+   private final ItineraryEngine _itineraries = new ItineraryEngine(this, this._routes);
+
+   // latency, rows and errors per SQL template of the execute* methods
+   private final QueryMetrics _metrics = new QueryMetrics(System.err);
+
+   // runs the queries of executeQueryStreamingAsync
+   private final ExecutorService _queryExecutor = newTaskExecutor("airline-query");
+
+   // customers, pilots and technicians for LogIn
+   private final IdentityCache _identities = new IdentityCache(this);
+
+   // passenger manifests, cached once a flight has departed
+   private final ManifestEngine _manifests = new ManifestEngine(this);
+
+   // on-time and seat totals per flight, kept current by the booking engine
+   private final FlightStatsCache _flightStats = new FlightStatsCache(this);
+
+   // null until isPartitioned first reads the catalog
+   private volatile Boolean _partitioned;
+
+   // ViewFlightsOfTheDay boards; past dates cached, today's patched in place
+   private final DayBoardCache _dayBoards = new DayBoardCache(this);
+
+   // books seats against the FlightInstance seat inventory
+   private final WaitlistEngine _waitlist = new WaitlistEngine();
+   private final BookingEngine _bookings = new BookingEngine(this, this._waitlist);
 
    /**
     * Creates a new instance of AirlineManagement
@@ -53,22 +158,163 @@ public class AirlineManagement {
     */
    public AirlineManagement(String dbname, String dbport, String user, String passwd) throws SQLException {
 
-      System.out.print("Connecting to database...");
+      out().print("Connecting to database...");
       try{
          // constructs the connection URL
          String url = "jdbc:postgresql://localhost:" + dbport + "/" + dbname;
-         System.out.println ("Connection URL: " + url + "\n");
+         out().println ("Connection URL: " + url + "\n");
 
-         // obtain a physical connection
-         this._connection = DriverManager.getConnection(url, user, passwd);
-         System.out.println("Done");
+         // open the connection pool
+         this._pool = new ConnectionPool(url, user, passwd, POOL_MIN_SIZE, POOL_MAX_SIZE,
+                                         POOL_MAX_WAIT_MILLIS, POOL_IDLE_TIMEOUT_MILLIS,
+                                         POOL_VALIDATE_AFTER_MILLIS, STATEMENT_CACHE_SIZE);
+         out().println("Done");
       }catch (Exception e){
-         System.err.println("Error - Unable to Connect to Database: " + e.getMessage() );
-         System.out.println("Make sure you started postgres on this machine");
+         err().println("Error - Unable to Connect to Database: " + e.getMessage() );
+         out().println("Make sure you started postgres on this machine");
          System.exit(-1);
       }//end catch
    }//end AirlineManagement
 
+   /**
+    * Borrows a pooled connection, runs the work on it and gives it back.  A
+    * connection whose work failed is validated before it is reused.
+    *
+    * @param work the statements to run
+    * @return the value returned by the work
+    * @throws java.sql.SQLException when the work failed
+    */
+   public <T> T withConnection (ConnectionWork<T> work) throws SQLException {
+      ConnectionPool.PooledConnection conn = this._pool.borrow();
+      try {
+         return work.run(conn);
+      } catch (SQLException e) {
+         conn.markSuspect();
+         throw e;
+      } finally {
+         this._pool.release(conn);
+      }
+   }//end withConnection
+
+   /*
+    * Work whose statement is timed; it calls clock.answered as soon as the
+    * statement's execute call returns
+    **/
+   private interface TimedWork<T> {
+      T run(ConnectionPool.PooledConnection conn, Stopwatch clock) throws SQLException;
+   }
+
+   /*
+    * Measures from its creation to the first answered call, or to elapsed
+    * when there was none
+    **/
+   private static final class Stopwatch {
+      private final long _start = System.nanoTime();
+      private long _answered = 0;
+
+      void answered() {
+         if (this._answered == 0)
+            this._answered = System.nanoTime();
+      }
+
+      long elapsed() {
+         return (this._answered == 0 ? System.nanoTime() : this._answered) - this._start;
+      }
+   }//end Stopwatch
+
+   /*
+    * Runs the work like withConnection and records, under the SQL template
+    * in the query metrics, how long the database took to answer, its row
+    * count and whether it failed.  The clock stops when the execute call
+    * returns; for a streamed query that is when the first batch of rows has
+    * arrived.  Reading, rendering and printing the rows is not included.
+    **/
+   private <T> T timed (String sql, ToIntFunction<T> rows, TimedWork<T> work) throws SQLException {
+      return withConnection(conn -> {
+         Stopwatch clock = new Stopwatch();
+         try {
+            T result = work.run(conn, clock);
+            this._metrics.record(sql, clock.elapsed(), rows.applyAsInt(result), null);
+            return result;
+         } catch (SQLException | RuntimeException e) {
+            this._metrics.record(sql, clock.elapsed(), 0, e);
+            throw e;
+         }
+      });
+   }//end timed
+
+   /**
+    * Runs the work on one pooled connection inside a single transaction.  The
+    * transaction commits when the work returns and rolls back when it throws.
+    *
+    * @param work the statements to run
+    * @return the value returned by the work
+    * @throws java.sql.SQLException when the work or the commit failed
+    */
+   public <T> T inTransaction (ConnectionWork<T> work) throws SQLException {
+      return withConnection(conn -> {
+         conn.getConnection().setAutoCommit(false);
+         // release() rolls back and restores auto-commit if we do not get to commit
+         T result = work.run(conn);
+         conn.getConnection().commit();
+         return result;
+      });
+   }//end inTransaction
+
+   /**
+    * Runs executeQueryStreaming on the query executor and returns at once.
+    * Independent scans started this way overlap their round trips, up to
+    * the size of the connection pool.  The handler is called on that
+    * executor's thread, one row at a time, and must not use in(), out() or
+    * err(); those belong to the calling session's thread.
+    *
+    * @param query the query template with '?' placeholders
+    * @param handler called once per row
+    * @param params the values bound to the placeholders, in order
+    * @return completes with the number of rows streamed
+    */
+   public CompletableFuture<Integer> executeQueryStreamingAsync (String query, RowHandler handler, Object... params) {
+      return async(() -> executeQueryStreaming(query, handler, params));
+   }//end executeQueryStreamingAsync
+
+   /*
+    * A blocking database call run by async on the query executor
+    **/
+   private interface DatabaseCall<T> {
+      T call() throws SQLException;
+   }
+
+   private <T> CompletableFuture<T> async (DatabaseCall<T> call) {
+      return CompletableFuture.supplyAsync(() -> {
+         try {
+            return call.call();
+         } catch (SQLException e) {
+            throw new CompletionException(e);
+         }
+      }, this._queryExecutor);
+   }//end async
+
+   /**
+    * Waits for an asynchronous query and hands back its result, rethrowing
+    * the SQLException it failed with.
+    *
+    * @param future a future returned by executeQueryStreamingAsync
+    * @return the result of the query
+    * @throws java.sql.SQLException when the query failed
+    */
+   public static <T> T await (CompletableFuture<T> future) throws SQLException {
+      try {
+         return future.join();
+      } catch (CompletionException e) {
+         Throwable cause = e.getCause();
+         if (cause instanceof SQLException)
+            throw (SQLException) cause;
+         if (cause instanceof RuntimeException)
+            throw (RuntimeException) cause;
+         throw new SQLException(String.valueOf(cause), cause);
+      }
+   }//end await
+
    /**
     * Method to execute an update SQL statement.  Update SQL instructions
     * includes CREATE, INSERT, UPDATE, DELETE, and DROP.
@@ -77,14 +323,18 @@ public class AirlineManagement {
     * @throws java.sql.SQLException when update failed
     */
    public void executeUpdate (String sql) throws SQLException {
-      // creates a statement object
-      Statement stmt = this._connection.createStatement ();
-
-      // issues the update instruction
-      stmt.executeUpdate (sql);
-
-      // close the instruction
-      stmt.close ();
+      timed(sql, n -> n, (conn, clock) -> {
+         // creates a statement object
+         Statement stmt = conn.getConnection().createStatement ();
+
+         // issues the update instruction
+         int rowCount = stmt.executeUpdate (sql);
+         clock.answered();
+
+         // close the instruction
+         stmt.close ();
+         return rowCount;
+      });
    }//end executeUpdate
 
    /**
@@ -98,38 +348,162 @@ public class AirlineManagement {
     * @throws java.sql.SQLException when failed to execute the query
     */
    public int executeQueryAndPrintResult (String query) throws SQLException {
-      // creates a statement object
-      Statement stmt = this._connection.createStatement ();
+      return timed(query, n -> n, (conn, clock) -> {
+         // creates a statement object
+         Statement stmt = conn.getConnection().createStatement ();
+
+         // fetch through a cursor so large results are not buffered
+         useCursor(conn, stmt, STREAM_FETCH_SIZE);
+
+         // issues the query instruction
+         ResultSet rs = stmt.executeQuery (query);
+         clock.answered();
+         int rowCount = printResult(rs);
+         stmt.close();
+         return rowCount;
+      });
+   }//end executeQuery
+
+   /**
+    * Method to execute a parameterized query (i.e. SELECT) through the
+    * statement cache and output the results to standard out.
+    *
+    * @param query the query template with '?' placeholders
+    * @param params the values bound to the placeholders, in order
+    * @return the number of rows returned
+    * @throws java.sql.SQLException when failed to execute the query
+    */
+   public int executeQueryAndPrintResult (String query, Object... params) throws SQLException {
+      return timed(query, n -> n, (conn, clock) -> {
+         PreparedStatement stmt = prepareStreaming(conn, query, STREAM_FETCH_SIZE, params);
+         try {
+            ResultSet rs = stmt.executeQuery ();
+            clock.answered();
+            int rowCount = printResult(rs);
+            rs.close();
+            return rowCount;
+         } finally {
+            resetFetchSize(stmt);
+         }
+      });
+   }//end executeQueryAndPrintResult
+
+   /**
+    * Method to execute a parameterized query (i.e. SELECT) and push the rows
+    * to a handler one at a time as they arrive.  Rows are fetched through a
+    * server-side cursor in batches of STREAM_FETCH_SIZE, so memory use does
+    * not depend on the size of the result; drivers without setFetchSize
+    * read the whole result first.
+    *
+    * @param query the query template with '?' placeholders
+    * @param handler called once per row
+    * @param params the values bound to the placeholders, in order
+    * @return the number of rows streamed
+    * @throws java.sql.SQLException when failed to execute the query
+    */
+   public int executeQueryStreaming (String query, RowHandler handler, Object... params) throws SQLException {
+      return executeQueryStreaming(query, STREAM_FETCH_SIZE, handler, params);
+   }
+
+   /**
+    * Method to execute a parameterized query (i.e. SELECT) and push the rows
+    * to a handler one at a time, fetching fetchSize rows per round trip.
+    *
+    * @param query the query template with '?' placeholders
+    * @param fetchSize the number of rows fetched per round trip
+    * @param handler called once per row
+    * @param params the values bound to the placeholders, in order
+    * @return the number of rows streamed
+    * @throws java.sql.SQLException when failed to execute the query
+    */
+   public int executeQueryStreaming (String query, int fetchSize, RowHandler handler, Object... params) throws SQLException {
+      return timed(query, n -> n, (conn, clock) -> {
+         PreparedStatement stmt = prepareStreaming(conn, query, fetchSize, params);
+         try {
+            ResultSet rs = stmt.executeQuery ();
+            clock.answered();
+            int rowCount = 0;
+            while (rs.next())
+               handler.handle(rs, ++rowCount);
+            rs.close();
+            return rowCount;
+         } finally {
+            // the statement is cached, don't leak the fetch size to the next user
+            resetFetchSize(stmt);
+         }
+      });
+   }//end executeQueryStreaming
+
+   /*
+    * Prepares the statement and asks for a cursor; see useCursor
+    **/
+   private static PreparedStatement prepareStreaming (ConnectionPool.PooledConnection conn, String query,
+                                                      int fetchSize, Object[] params) throws SQLException {
+      PreparedStatement stmt = prepare(conn, query, params);
+      useCursor(conn, stmt, fetchSize);
+      return stmt;
+   }//end prepareStreaming
+
+   // false once the driver has refused setFetchSize; lib/pg73jdbc3.jar does
+   private static volatile boolean fetchSizeSupported = true;
 
-      // issues the query instruction
-      ResultSet rs = stmt.executeQuery (query);
+   /*
+    * Makes the statement fetch fetchSize rows per round trip.  Cursor-based
+    * fetching only happens inside a transaction, so auto-commit is switched
+    * off; the pool rolls back and restores it on release.  Drivers without
+    * setFetchSize (the 7.3 driver throws "not implemented") read the whole
+    * result at once instead, and later statements don't ask again.
+    * @return true when the statement fetches through a cursor
+    **/
+   private static boolean useCursor (ConnectionPool.PooledConnection conn, Statement stmt, int fetchSize) throws SQLException {
+      if (!fetchSizeSupported)
+         return false;
+      try {
+         stmt.setFetchSize(fetchSize);
+      } catch (SQLException e) {
+         fetchSizeSupported = false;
+         return false;
+      }
+      conn.getConnection().setAutoCommit(false);
+      return true;
+   }//end useCursor
+
+   /* puts a cached statement back to the driver's default fetch size */
+   private static void resetFetchSize (Statement stmt) {
+      if (!fetchSizeSupported)
+         return;
+      try {
+         stmt.setFetchSize(0);
+      } catch (SQLException e) {
+         // ignored, the query's own outcome is what the caller sees
+      }
+   }
 
+   /*
+    * Outputs every row of the result set to standard out
+    * @return the number of rows printed
+    **/
+   private static int printResult (ResultSet rs) throws SQLException {
       /*
        ** obtains the metadata object for the returned result set.  The metadata
        ** contains row and column info.
        */
       ResultSetMetaData rsmd = rs.getMetaData ();
       int numCol = rsmd.getColumnCount ();
-      int rowCount = 0;
+      String[] columns = new String[numCol];
+      for (int i = 1; i <= numCol; ++i)
+         columns[i - 1] = rsmd.getColumnName(i);
 
-      // iterates through the result set and output them to standard out.
-      boolean outputHeader = true;
+      // rows are formatted into one buffer and written in large chunks
+      TableRenderer table = new TableRenderer(out(), columns);
+      Object[] row = new Object[numCol];
       while (rs.next()){
-		 if(outputHeader){
-			for(int i = 1; i <= numCol; i++){
-			System.out.print(rsmd.getColumnName(i) + "\t");
-			}
-			System.out.println();
-			outputHeader = false;
-		 }
          for (int i=1; i<=numCol; ++i)
-            System.out.print (rs.getString (i) + "\t");
-         System.out.println ();
-         ++rowCount;
+            row[i - 1] = rs.getString (i);
+         table.row(row);
       }//end while
-      stmt.close();
-      return rowCount;
-   }//end executeQuery
+      return table.finish();
+   }//end printResult
 
    /**
     * Method to execute an input query SQL instruction (i.e. SELECT).  This
@@ -141,22 +515,93 @@ public class AirlineManagement {
     * @throws java.sql.SQLException when failed to execute the query
     */
    public List<List<String>> executeQueryAndReturnResult (String query) throws SQLException {
-      // creates a statement object
-      Statement stmt = this._connection.createStatement ();
+      return timed(query, List::size, (conn, clock) -> {
+         // creates a statement object
+         Statement stmt = conn.getConnection().createStatement ();
+
+         // issues the query instruction
+         ResultSet rs = stmt.executeQuery (query);
+         clock.answered();
+         List<List<String>> result = readResult(rs);
+         stmt.close ();
+         return result;
+      });
+   }//end executeQueryAndReturnResult
 
-      // issues the query instruction
-      ResultSet rs = stmt.executeQuery (query);
+   /**
+    * Method to execute a parameterized query (i.e. SELECT) through the
+    * statement cache and return the results as a list of records.
+    *
+    * @param query the query template with '?' placeholders
+    * @param params the values bound to the placeholders, in order
+    * @return the query result as a list of records
+    * @throws java.sql.SQLException when failed to execute the query
+    */
+   public List<List<String>> executeQueryAndReturnResult (String query, Object... params) throws SQLException {
+      return timed(query, List::size, (conn, clock) -> {
+         ResultSet rs = prepare(conn, query, params).executeQuery ();
+         clock.answered();
+         List<List<String>> result = readResult(rs);
+         rs.close ();
+         return result;
+      });
+   }//end executeQueryAndReturnResult
+
+   /**
+    * Method to execute a parameterized query (i.e. SELECT) and map every
+    * row to a typed object, reading columns with the typed getters instead
+    * of building a list of Strings per row.
+    *
+    * @param query the query template with '?' placeholders
+    * @param mapper turns the current row into an object
+    * @param params the values bound to the placeholders, in order
+    * @return one mapped object per row
+    * @throws java.sql.SQLException when failed to execute the query
+    */
+   public <T> List<T> executeQueryForList (String query, RowMapper<T> mapper, Object... params) throws SQLException {
+      return timed(query, List::size, (conn, clock) -> {
+         ResultSet rs = prepare(conn, query, params).executeQuery ();
+         clock.answered();
+         List<T> result = new ArrayList<T>();
+         while (rs.next())
+            result.add(mapper.map(rs));
+         rs.close ();
+         return result;
+      });
+   }//end executeQueryForList
+
+   /**
+    * Method to execute a parameterized query (i.e. SELECT) and map only its
+    * first row to a typed object.
+    *
+    * @param query the query template with '?' placeholders
+    * @param mapper turns the current row into an object
+    * @param params the values bound to the placeholders, in order
+    * @return the mapped first row, or null when the query returned no rows
+    * @throws java.sql.SQLException when failed to execute the query
+    */
+   public <T> T executeQueryForObject (String query, RowMapper<T> mapper, Object... params) throws SQLException {
+      return timed(query, row -> row == null ? 0 : 1, (conn, clock) -> {
+         ResultSet rs = prepare(conn, query, params).executeQuery ();
+         clock.answered();
+         T result = rs.next() ? mapper.map(rs) : null;
+         rs.close ();
+         return result;
+      });
+   }//end executeQueryForObject
 
+   /*
+    * Saves every row of the result set as a list of attribute values
+    **/
+   private static List<List<String>> readResult (ResultSet rs) throws SQLException {
       /*
        ** obtains the metadata object for the returned result set.  The metadata
        ** contains row and column info.
        */
       ResultSetMetaData rsmd = rs.getMetaData ();
       int numCol = rsmd.getColumnCount ();
-      int rowCount = 0;
 
       // iterates through the result set and saves the data returned by the query.
-      boolean outputHeader = false;
       List<List<String>> result  = new ArrayList<List<String>>();
       while (rs.next()){
         List<String> record = new ArrayList<String>();
@@ -164,9 +609,8 @@ public class AirlineManagement {
 			record.add(rs.getString (i));
         result.add(record);
       }//end while
-      stmt.close ();
       return result;
-   }//end executeQueryAndReturnResult
+   }//end readResult
 
    /**
     * Method to execute an input query SQL instruction (i.e. SELECT).  This
@@ -177,51 +621,264 @@ public class AirlineManagement {
     * @throws java.sql.SQLException when failed to execute the query
     */
    public int executeQuery (String query) throws SQLException {
-       // creates a statement object
-       Statement stmt = this._connection.createStatement ();
+      return timed(query, n -> n, (conn, clock) -> {
+         // creates a statement object
+         Statement stmt = conn.getConnection().createStatement ();
+
+         // issues the query instruction
+         ResultSet rs = stmt.executeQuery (query);
+         clock.answered();
+
+         int rowCount = 0;
+
+         // iterates through the result set and count nuber of results.
+         while (rs.next()){
+            rowCount++;
+         }//end while
+         stmt.close ();
+         return rowCount;
+      });
+   }
+
+   /**
+    * Method to execute a parameterized query (i.e. SELECT) through the
+    * statement cache and return the number of results
+    *
+    * @param query the query template with '?' placeholders
+    * @param params the values bound to the placeholders, in order
+    * @return the number of rows returned
+    * @throws java.sql.SQLException when failed to execute the query
+    */
+   public int executeQuery (String query, Object... params) throws SQLException {
+      return timed(query, n -> n, (conn, clock) -> {
+         ResultSet rs = prepare(conn, query, params).executeQuery ();
+         clock.answered();
+         int rowCount = 0;
+         while (rs.next()){
+            rowCount++;
+         }//end while
+         rs.close ();
+         return rowCount;
+      });
+   }
+
+   /**
+    * Method to execute a parameterized update (INSERT, UPDATE, DELETE)
+    * through the statement cache.
+    *
+    * @param sql the update template with '?' placeholders
+    * @param params the values bound to the placeholders, in order
+    * @return the number of rows affected
+    * @throws java.sql.SQLException when update failed
+    */
+   public int executeUpdate (String sql, Object... params) throws SQLException {
+      return timed(sql, n -> n, (conn, clock) -> {
+         int rowCount = prepare(conn, sql, params).executeUpdate ();
+         clock.answered();
+         return rowCount;
+      });
+   }//end executeUpdate
 
-       // issues the query instruction
-       ResultSet rs = stmt.executeQuery (query);
+   /**
+    * Looks up the cached statement for a SQL template on a borrowed
+    * connection and binds its parameters
+    *
+    * @param conn the borrowed connection
+    * @param sql the SQL template
+    * @param params the values bound to the placeholders, in order
+    * @return the bound statement; callers must not close it
+    * @throws java.sql.SQLException when the statement cannot be prepared
+    */
+   static PreparedStatement prepare (ConnectionPool.PooledConnection conn, String sql, Object... params) throws SQLException {
+      PreparedStatement stmt = conn.prepare(sql);
+      bind(stmt, params);
+      return stmt;
+   }//end prepare
 
-       int rowCount = 0;
+   /*
+    * Binds positional parameters; nulls are sent as untyped VARCHAR nulls
+    **/
+   static void bind (PreparedStatement stmt, Object[] params) throws SQLException {
+      for (int i = 0; i < params.length; ++i) {
+         if (params[i] == null)
+            stmt.setNull(i + 1, Types.VARCHAR);
+         else
+            stmt.setObject(i + 1, params[i]);
+      }
+   }//end bind
 
-       // iterates through the result set and count nuber of results.
-       while (rs.next()){
-          rowCount++;
-       }//end while
-       stmt.close ();
-       return rowCount;
+   /**
+    * @return true when FlightInstance and Reservation are partitioned by
+    *         flight date (create_tables_partitioned.sql); Reservation then
+    *         has a FlightDate column that queries use to prune partitions
+    * @throws java.sql.SQLException when the catalog could not be read
+    */
+   public boolean isPartitioned() throws SQLException {
+      Boolean partitioned = this._partitioned;
+      if (partitioned == null) {
+         partitioned = executeQueryForObject(PARTITIONED_SCHEMA, rs -> rs.getBoolean(1));
+         this._partitioned = partitioned;
+      }
+      return partitioned;
+   }//end isPartitioned
+
+   /**
+    * @return the number of statements served from the statement caches
+    */
+   public long getStatementCacheHits() {
+      return this._pool.getStatementCacheHits();
+   }
+
+   /**
+    * @return the number of statements that had to be prepared
+    */
+   public long getStatementCacheMisses() {
+      return this._pool.getStatementCacheMisses();
+   }
+
+   public RouteCache getRouteCache() {
+      return this._routes;
+   }
+
+   public QueryMetrics getQueryMetrics() {
+      return this._metrics;
+   }
+
+   public IdentityCache getIdentityCache() {
+      return this._identities;
+   }
+
+   public ManifestEngine getManifestEngine() {
+      return this._manifests;
+   }
+
+   public FlightStatsCache getFlightStatsCache() {
+      return this._flightStats;
+   }
+
+   public DayBoardCache getDayBoardCache() {
+      return this._dayBoards;
+   }
+
+   public ItineraryEngine getItineraryEngine() {
+      return this._itineraries;
+   }
+
+   public WaitlistEngine getWaitlistEngine() {
+      return this._waitlist;
+   }
+
+   public BookingEngine getBookingEngine() {
+      return this._bookings;
+   }
+
+   /**
+    * @return a new reservation ID of the form R0001; IDs past R9999 simply
+    *         grow wider
+    * @throws java.sql.SQLException when no ID block could be reserved
+    */
+   public String nextReservationId() throws SQLException {
+      return String.format("R%04d", this._reservationIds.nextId());
+   }
+
+   public int nextCustomerId() throws SQLException {
+      return (int) this._customerIds.nextId();
+   }
+
+   public int nextMaintenanceRequestId() throws SQLException {
+      return (int) this._requestIds.nextId();
+   }
+
+   /**
+    * @param conn the connection of the caller's transaction; a new ID block
+    *         is reserved on it instead of on a second pooled connection
+    * @return a new maintenance request ID
+    * @throws java.sql.SQLException when no ID block could be reserved
+    */
+   public int nextMaintenanceRequestId(ConnectionPool.PooledConnection conn) throws SQLException {
+      return (int) this._requestIds.nextId(conn);
+   }
+
+   public int nextRepairId() throws SQLException {
+      return (int) this._repairIds.nextId();
+   }
+
+   /**
+    * @param conn the connection of the caller's transaction; a new ID block
+    *         is reserved on it instead of on a second pooled connection
+    * @return a new repair ID
+    * @throws java.sql.SQLException when no ID block could be reserved
+    */
+   public int nextRepairId(ConnectionPool.PooledConnection conn) throws SQLException {
+      return (int) this._repairIds.nextId(conn);
+   }
+
+   public String nextPilotId() throws SQLException {
+      return String.format("P%03d", this._pilotIds.nextId());
+   }
+
+   public String nextTechnicianId() throws SQLException {
+      return String.format("T%03d", this._technicianIds.nextId());
+   }
+
+   /**
+    * @return a one-line summary of connection pool size and wait times
+    */
+   public String getPoolStats() {
+      return this._pool.getStats();
    }
 
    /**
     * Method to fetch the last value from sequence. This
     * method issues the query to the DBMS and returns the current
-    * value of sequence used for autogenerated keys
+    * value of sequence used for autogenerated keys.  currval is per
+    * session, so this only sees nextval calls made on the same pooled
+    * connection.
     *
     * @param sequence name of the DB sequence
     * @return current value of a sequence
     * @throws java.sql.SQLException when failed to execute the query
     */
    public int getCurrSeqVal(String sequence) throws SQLException {
-	Statement stmt = this._connection.createStatement ();
-
-	ResultSet rs = stmt.executeQuery (String.format("Select currval('%s')", sequence));
-	if (rs.next())
-		return rs.getInt(1);
-	return -1;
+      return withConnection(conn -> {
+         ResultSet rs = prepare(conn, "Select currval(CAST(? AS REGCLASS))", sequence).executeQuery ();
+         int value = rs.next() ? rs.getInt(1) : -1;
+         rs.close ();
+         return value;
+      });
    }
 
    /**
-    * Method to close the physical connection if it is open.
+    * Creates an executor that runs every task on its own thread: a virtual
+    * thread on JVMs that have them (Java 21+), otherwise a cached pool of
+    * daemon platform threads.
+    *
+    * @param name prefix for the platform thread names
+    * @return the executor
+    */
+   static ExecutorService newTaskExecutor(String name) {
+      try {
+         return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+      } catch (Exception e) {
+         // older JVM, fall back to platform threads.
+      }
+      AtomicInteger counter = new AtomicInteger();
+      return Executors.newCachedThreadPool(task -> {
+         Thread thread = new Thread(task, name + "-" + counter.incrementAndGet());
+         thread.setDaemon(true);
+         return thread;
+      });
+   }//end newTaskExecutor
+
+   /**
+    * Method to close the pooled connections.  Calling it again, e.g. from
+    * the server's shutdown hook after main, does nothing.
     */
    public void cleanup(){
-      try{
-         if (this._connection != null){
-            this._connection.close ();
-         }//end if
-      }catch (SQLException e){
-         // ignored.
-      }//end try
+      this._queryExecutor.shutdown();
+      if (this._pool != null){
+         this._pool.close ();
+      }//end if
    }//end cleanup
 
    /**
@@ -230,16 +887,18 @@ public class AirlineManagement {
     * @param args the command line arguments this inclues the <mysql|pgsql> <login file>
     */
    public static void main(String[] args) {
-   if (args.length != 3) {
-      System.err.println (
+   String mode = (args.length > 3) ? args[3] : null;
+   if (args.length < 3 || !isKnownMode(mode, args.length)) {
+      err().println (
          "Usage: " +
          "java [-classpath <classpath>] " +
          AirlineManagement.class.getName () +
-         " <dbname> <port> <user>");
+         " <dbname> <port> <user> [--serve <listen port> | --bench <seconds> <threads> | --import <data dir>" +
+         " | --maintain-partitions <months ahead> <months kept>]");
       return;
    }//end if
 
-   Greeting();
+   if (mode == null) Greeting();
    AirlineManagement esql = null;
    try{
       // use postgres JDBC driver.
@@ -250,18 +909,43 @@ public class AirlineManagement {
       String user = args[2];
       esql = new AirlineManagement (dbname, dbport, user, "");
 
-      // Use modularized menu system
-      beforeLogin(esql);
+      if (mode == null) {
+         // Use modularized menu system
+         esql.getIdentityCache().warm(err());
+         beforeLogin(esql);
+      } else if (mode.equals("--serve")) {
+         // serve the same menus to many clients at once
+         esql.getIdentityCache().warm(err());
+         new AirlineServer(esql, Integer.parseInt(args[4])).serve();
+      } else if (mode.equals("--bench")) {
+         // measure the menu operations under concurrent load
+         new AirlineBenchmark(esql, Integer.parseInt(args[4]), Integer.parseInt(args[5])).run();
+      } else if (mode.equals("--import")) {
+         // bulk load a directory of CSV files into the empty tables
+         File dataDir = new File(args[4]);
+         File indexFile = new File(System.getProperty("airline.import.indexes",
+                                   new File(dataDir, "../sql/src/create_indexes.sql").getPath()));
+         new BulkLoader(esql, dataDir, indexFile).load();
+      } else if (mode.equals("--maintain-partitions")) {
+         // create the coming months' partitions and drop expired ones; run daily
+         MaintainPartitions(esql, Integer.parseInt(args[4]), Integer.parseInt(args[5]));
+      }
 
    }catch(Exception e) {
-      System.err.println (e.getMessage ());
+      err().println (e.getMessage ());
    }finally{
       // make sure to cleanup the created table and close the connection.
       try{
          if(esql != null) {
-            System.out.print("Disconnecting from database...");
+            String dump = System.getProperty("airline.metrics.dump");
+            if (dump != null)
+               writeQueryMetrics(esql, new File(dump));
+            out().println("Statement cache: " + esql.getStatementCacheHits() + " hits, " +
+                               esql.getStatementCacheMisses() + " misses");
+            out().println("Connection pool: " + esql.getPoolStats());
+            out().print("Disconnecting from database...");
             esql.cleanup ();
-            System.out.println("Done\n\nBye !");
+            out().println("Done\n\nBye !");
          }//end if
       }catch (Exception e) {
          // ignored.
@@ -269,9 +953,34 @@ public class AirlineManagement {
       }//end try
    }//end main
 
+   /*
+    * Checks the optional mode argument and the number of values it takes
+    **/
+   private static boolean isKnownMode(String mode, int argCount) {
+      if (mode == null) return argCount == 3;
+      if (mode.equals("--serve")) return argCount == 5;
+      if (mode.equals("--bench")) return argCount == 6;
+      if (mode.equals("--import")) return argCount == 5;
+      if (mode.equals("--maintain-partitions")) return argCount == 6;
+      return false;
+   }
+
+
+   /*
+    * Runs maintain_flight_partitions of create_tables_partitioned.sql
+    **/
+   private static void MaintainPartitions(AirlineManagement esql, int monthsAhead, int monthsKept) throws SQLException {
+      if (!esql.isPartitioned()) {
+         err().println("Reservation is not partitioned; create the tables with create_tables_partitioned.sql");
+         return;
+      }
+      int[] counts = esql.executeQueryForObject("SELECT created, dropped FROM maintain_flight_partitions(?, ?)",
+         rs -> new int[] { rs.getInt(1), rs.getInt(2) }, monthsAhead, monthsKept);
+      out().println("Partitions created: " + counts[0] + ", dropped: " + counts[1]);
+   }//end MaintainPartitions
 
    public static void Greeting(){
-      System.out.println(
+      out().println(
          "\n\n*******************************************************\n" +
          "              User Interface      	               \n" +
          "*******************************************************\n");
@@ -283,20 +992,20 @@ public class AirlineManagement {
     */
    public static void beforeLogin(AirlineManagement esql) {
    boolean keepon = true;
-      while(keepon) {
-         System.out.println("MAIN MENU");
-         System.out.println("---------");
-         System.out.println("1. Create user");
-         System.out.println("2. Log in");
-         System.out.println("9. < EXIT");
-         System.out.print("Please make your choice: ");
+      while(keepon && !Session.current().isClosed()) {
+         out().println("MAIN MENU");
+         out().println("---------");
+         out().println("1. Create user");
+         out().println("2. Log in");
+         out().println("9. < EXIT");
+         out().print("Please make your choice: ");
          int choice = readChoice();
          String authorisedUser = null;
          switch (choice){
             case 1: CreateUser(esql); break;
             case 2: authorisedUser = LogIn(esql); break;
             case 9: keepon = false; break;
-            default : System.out.println("Unrecognized choice!"); break;
+            default : out().println("Unrecognized choice!"); break;
          }
          if (authorisedUser != null) {
             afterLogin(esql, authorisedUser);
@@ -313,44 +1022,52 @@ public class AirlineManagement {
    String role = authParts[0];
    String id = (authParts.length > 1) ? authParts[1] : null;
    boolean usermenu = true;
-   while(usermenu) {
-      System.out.println();
-      System.out.println("MAIN MENU (" + role + ")");
-      System.out.println("----------------------");
+   while(usermenu && !Session.current().isClosed()) {
+      out().println();
+      out().println("MAIN MENU (" + role + ")");
+      out().println("----------------------");
       // Role-based menu printing
       if (role.equalsIgnoreCase("Manager")) {
-         System.out.println("1. View Flights");
-         System.out.println("2. View Flight Seats");
-         System.out.println("3. View Flight Status");
-         System.out.println("4. View Flights of the day");
-         System.out.println("5. View Full Order ID History");
-         System.out.println("6. View Reservation Details");
-         System.out.println("7. Get Plane Information");
-         System.out.println("8. List Technician Repairs");
-         System.out.println("9. View Plane Repairs by Date");
-         System.out.println("10. View Flight Stats by Date Range");
+         out().println("1. View Flights");
+         out().println("2. View Flight Seats");
+         out().println("3. View Flight Status");
+         out().println("4. View Flights of the day");
+         out().println("5. View Full Order ID History");
+         out().println("6. View Reservation Details");
+         out().println("7. Get Plane Information");
+         out().println("8. List Technician Repairs");
+         out().println("9. View Plane Repairs by Date");
+         out().println("10. View Flight Stats by Date Range");
+         out().println("22. Update Seat Capacity");
+         out().println("25. View Query Metrics");
+         out().println("26. Fleet Maintenance Dashboard");
+         out().println("27. Update Flight Status");
+         out().println("28. Export Report to File");
          // ...more management options as needed...
       }
      
       if (role.equalsIgnoreCase("Customer")) {
-         System.out.println("11. Search Flights");
-         System.out.println("12. Make Reservation");
-         System.out.println("13. Find Ticket Cost");
-	  System.out.println("14. Find Airplane Type");
+         out().println("11. Search Flights");
+         out().println("12. Make Reservation");
+         out().println("13. Find Ticket Cost");
+	  out().println("14. Find Airplane Type");
+         out().println("21. Cancel Reservation");
          // ...more customer options...
       }
       if (role.equalsIgnoreCase("Pilot")) {
-         System.out.println("15. Maintenance Request");
+         out().println("15. Maintenance Request");
+         out().println("24. Submit Maintenance Requests (batch)");
          // ...more pilot options...
       }
       if (role.equalsIgnoreCase("Technician")) {
-         System.out.println("16. View Repairs");
-         System.out.println("17. Add Repair Record");
-	 System.out.println("18. View Pilot Requests");
+         out().println("16. View Repairs");
+         out().println("17. Add Repair Record");
+	 out().println("18. View Pilot Requests");
+         out().println("23. Submit Repair Records (batch)");
          // ...more technician options...
       }
-      System.out.println("20. Log out");
-      System.out.print("Please make your choice: ");
+      out().println("20. Log out");
+      out().print("Please make your choice: ");
       int choice = readChoice();
 
       switch (choice) {
@@ -366,6 +1083,11 @@ public class AirlineManagement {
          case 8: if (role.equalsIgnoreCase("Manager")) ViewRepairsByTechnician(esql); else notAuthorized(); break;
          case 9: if (role.equalsIgnoreCase("Manager")) ViewRepairsForPlaneInRange(esql); else notAuthorized(); break;
          case 10: if (role.equalsIgnoreCase("Manager")) ViewFlightStatsInRange(esql); else notAuthorized(); break;
+         case 22: if (role.equalsIgnoreCase("Manager")) UpdateSeatCapacity(esql); else notAuthorized(); break;
+         case 25: if (role.equalsIgnoreCase("Manager")) ViewQueryMetrics(esql); else notAuthorized(); break;
+         case 26: if (role.equalsIgnoreCase("Manager")) ViewFleetDashboard(esql); else notAuthorized(); break;
+         case 27: if (role.equalsIgnoreCase("Manager")) UpdateFlightStatus(esql); else notAuthorized(); break;
+         case 28: if (role.equalsIgnoreCase("Manager")) ExportReport(esql); else notAuthorized(); break;
          // Add more management functions as needed
           
          // Customer
@@ -373,30 +1095,33 @@ public class AirlineManagement {
          case 12: if (role.equalsIgnoreCase("Customer")) MakeReservation(esql); else notAuthorized(); break;
 	 case 13: if (role.equalsIgnoreCase("Customer")) FindTicketCost(esql); else notAuthorized(); break;
 	 case 14: if (role.equalsIgnoreCase("Customer")) FindPlaneType(esql); else notAuthorized(); break;
+         case 21: if (role.equalsIgnoreCase("Customer")) CancelReservation(esql, id); else notAuthorized(); break;
 
          // Add more customer functions as needed
 
          // Pilot
          case 15: if (role.equalsIgnoreCase("Pilot")) MaintenanceRequest(esql); else notAuthorized(); break;
+         case 24: if (role.equalsIgnoreCase("Pilot")) SubmitRequestBatch(esql, id); else notAuthorized(); break;
          // Add more pilot functions as needed
 
          // Technician
          case 16: if (role.equalsIgnoreCase("Technician")) ViewRepairs(esql); else notAuthorized(); break;
          case 17: if (role.equalsIgnoreCase("Technician")) AddRepairRecord(esql); else notAuthorized(); break;
 	 case 18: if (role.equalsIgnoreCase("Technician")) ViewPilotRequests(esql); else notAuthorized(); break;
+         case 23: if (role.equalsIgnoreCase("Technician")) SubmitRepairBatch(esql, id); else notAuthorized(); break;
          // Add more technician functions as needed
 
          // Log out
          case 20: usermenu = false; break;
 
-         default: System.out.println("Unrecognized choice!"); break;
+         default: out().println("Unrecognized choice!"); break;
       }
       }
    }//end afterLogin
 
    // Helper method for login authorization
    private static void notAuthorized() {
-      System.out.println("You are not authorized to use this function.");
+      out().println("You are not authorized to use this function.");
    }
 
 
@@ -408,12 +1133,12 @@ public class AirlineManagement {
    //    int input;
    //    // returns only if a correct value is given.
    //    do {
-   //       System.out.print("Please make your choice: ");
+   //       out().print("Please make your choice: ");
    //       try { // read the integer, parse it and break.
    //          input = Integer.parseInt(in.readLine());
    //          break;
    //       }catch (Exception e) {
-   //          System.out.println("Your input is invalid!");
+   //          out().println("Your input is invalid!");
    //          continue;
    //       }//end try
    //    }while (true);
@@ -421,12 +1146,12 @@ public class AirlineManagement {
    // }//end readChoice
 
    public static int readChoice() {
-      BufferedReader in = new BufferedReader(new InputStreamReader(System.in));
       try {
-         String input = in.readLine();
+         String input = in().readLine();
+         if (input == null) return -1; // the user went away
          return Integer.parseInt(input.trim());
       } catch (Exception e) {
-         System.out.println("Your input is invalid!");
+         out().println("Your input is invalid!");
          return -1;
       }
    }
@@ -437,13 +1162,13 @@ public class AirlineManagement {
     **/
    public static void CreateUser(AirlineManagement esql) {
      try {
-	BufferedReader in = new BufferedReader(new InputStreamReader(System.in));
+	BufferedReader in = in();
 
-	System.out.println("Select user type:");
-	System.out.println("1. Customer");
-	System.out.println("2. Pilot");
-	System.out.println("3. Technician");
-	System.out.println("Enter choice: ");
+	out().println("Select user type:");
+	out().println("1. Customer");
+	out().println("2. Pilot");
+	out().println("3. Technician");
+	out().println("Enter choice: ");
 	String choice = in.readLine().trim();
 
 	switch(choice) {
@@ -463,58 +1188,43 @@ public class AirlineManagement {
 		String zip = promptForValidZip(in);
         if (zip == null) return;
 
-		String getMaxId = "SELECT COALESCE(MAX(CustomerID), 0) FROM Customer";
-		List<List<String>> result = esql.executeQueryAndReturnResult(getMaxId);
-		int newId = Integer.parseInt(result.get(0).get(0)) + 1;
+		int newId = esql.nextCustomerId();
 
-		String insertCustomer = String.format(
+		String insertCustomer =
 		   "INSERT INTO Customer (CustomerID, FirstName, LastName, Gender, DOB, Address, Phone, Zip) " + 
-		   "VALUES (%d, '%s', '%s', '%s', DATE '%s', '%s', '%s', '%s')",
-		    newId, firstName, lastName, gender, birth, address, phoneNumber, zip
-		);
-		esql.executeUpdate(insertCustomer);
-		System.out.println("Customer created with ID: " + newId);
+		   "VALUES (?, ?, ?, ?, CAST(? AS DATE), ?, ?, ?)";
+		esql.executeUpdate(insertCustomer, newId, firstName, lastName, gender, birth, address, phoneNumber, zip);
+		esql.getIdentityCache().addCustomer(newId, firstName, lastName);
+		out().println("Customer created with ID: " + newId);
 		break;
 
 	 case "2":
-	      String getMaxPilot = "SELECT COALESCE(MAX(CAST(SUBSTRING(PilotID, 2) AS INTEGER)), 0) FROM Pilot";
-	      List<List<String>> pilotResult = esql.executeQueryAndReturnResult(getMaxPilot);
-	      int newPilotID = Integer.parseInt(pilotResult.get(0).get(0)) + 1;
-	      String pilotId = String.format("P%03d", newPilotID);
-
           String pilotName = promptForValidFullName(in, "Pilot");
           if (pilotName == null) return;
+	      String pilotId = esql.nextPilotId();
 
-	      String insertPilot = String.format(
-		  "INSERT INTO Pilot (PilotID, Name) VALUES ('%s', '%s')", 
-    		  pilotId, pilotName
- 	      );
-	      esql.executeUpdate(insertPilot);
-	      System.out.println("Pilot created with ID: " + pilotId);
+	      String insertPilot = "INSERT INTO Pilot (PilotID, Name) VALUES (?, ?)";
+	      esql.executeUpdate(insertPilot, pilotId, pilotName);
+	      esql.getIdentityCache().addPilot(pilotId, pilotName);
+	      out().println("Pilot created with ID: " + pilotId);
 	      break;
 
 	case "3":	      
-	     String getMaxTech = "SELECT COALESCE(MAX(CAST(SUBSTRING(TechnicianID, 2) AS INTEGER)), 0) FROM Technician";
-	     List<List<String>> techResult = esql.executeQueryAndReturnResult(getMaxTech);
-	     int newTechID = Integer.parseInt(techResult.get(0).get(0)) + 1;
-	     String techID = String.format("T%03d", newTechID);
-
          String techName = promptForValidFullName(in, "Technician");
          if (techName == null) return;
+	     String techID = esql.nextTechnicianId();
 	    
-	     String insertTechnician = String.format(
-	 	 "INSERT INTO Technician (TechnicianID, Name) VALUES ('%s', '%s')",
-	         techID, techName
-	     );
-    	     esql.executeUpdate(insertTechnician);
-	     System.out.println("Technician created with ID: " + techID);
+	     String insertTechnician = "INSERT INTO Technician (TechnicianID, Name) VALUES (?, ?)";
+    	     esql.executeUpdate(insertTechnician, techID, techName);
+	     esql.getIdentityCache().addTechnician(techID, techName);
+	     out().println("Technician created with ID: " + techID);
              break;
 
 	default:
-	   System.out.println("Invalid choice. Returning to main menu.");
+	   out().println("Invalid choice. Returning to main menu.");
       }
      } catch (Exception e) {
-	  System.err.println("Error creating user: " + e.getMessage());
+	  err().println("Error creating user: " + e.getMessage());
      }	  
 
    }//end CreateUser
@@ -534,8 +1244,8 @@ public class AirlineManagement {
  **/
 public static String LogIn(AirlineManagement esql) {
     try {
-        BufferedReader in = new BufferedReader(new InputStreamReader(System.in));
-        System.out.println("Login as: 1. Customer 2. Pilot 3. Technician 4. Manager");
+        BufferedReader in = in();
+        out().println("Login as: 1. Customer 2. Pilot 3. Technician 4. Manager");
         String roleChoice = in.readLine().trim();
         String userTable = "";
         String userIdCol = "";
@@ -553,16 +1263,13 @@ public static String LogIn(AirlineManagement esql) {
                 String customerId = promptForValidCustomerID(in);
                 if (customerId == null) return null;
 
-                String query = "SELECT CustomerID FROM Customer " +
-                               "WHERE FirstName = '" + firstName + "' " +
-                               "AND LastName = '" + lastName + "' " +
-                               "AND CustomerID = " + customerId;
-                List<List<String>> result = esql.executeQueryAndReturnResult(query);
-                if(result.size() > 0) {
-                    System.out.println("Login successful as Customer!");
-                    return "Customer:" + result.get(0).get(0);
+                // served from memory; the database is read only for unknown IDs
+                int foundCustomer = Integer.parseInt(customerId);
+                if(esql.getIdentityCache().isCustomer(foundCustomer, firstName, lastName)) {
+                    out().println("Login successful as Customer!");
+                    return "Customer:" + foundCustomer;
                 } else {
-                    System.out.println("Login failed! Customer not found.");
+                    out().println("Login failed! Customer not found.");
                     return null;
                 }
             case "2": // Pilot
@@ -572,13 +1279,12 @@ public static String LogIn(AirlineManagement esql) {
                loginName = promptForValidFullName(in, "Pilot");
                 if (loginName == null) return null;
 
-                String queryPilot = "SELECT PilotID FROM Pilot WHERE Name = '" + loginName + "'";
-                List<List<String>> resultPilot = esql.executeQueryAndReturnResult(queryPilot);
-                if(resultPilot.size() > 0) {
-                    System.out.println("Login successful as Pilot!");
-                    return "Pilot:" + resultPilot.get(0).get(0);
+                String foundPilot = esql.getIdentityCache().findPilot(loginName);
+                if(foundPilot != null) {
+                    out().println("Login successful as Pilot!");
+                    return "Pilot:" + foundPilot;
                 } else {
-                    System.out.println("Login failed! Pilot not found.");
+                    out().println("Login failed! Pilot not found.");
                     return null;
                 }
             case "3": // Technician
@@ -588,31 +1294,30 @@ public static String LogIn(AirlineManagement esql) {
                 loginName = promptForValidFullName(in, "Technician");
                 if (loginName == null) return null;
 
-                String queryTech = "SELECT TechnicianID FROM Technician WHERE Name = '" + loginName + "'";
-                List<List<String>> resultTech = esql.executeQueryAndReturnResult(queryTech);
-                if(resultTech.size() > 0) {
-                    System.out.println("Login successful as Technician!");
-                    return "Technician:" + resultTech.get(0).get(0);
+                String foundTech = esql.getIdentityCache().findTechnician(loginName);
+                if(foundTech != null) {
+                    out().println("Login successful as Technician!");
+                    return "Technician:" + foundTech;
                 } else {
-                    System.out.println("Login failed! Technician not found.");
+                    out().println("Login failed! Technician not found.");
                     return null;
                 }
             case "4": // Manager
-                System.out.print("Enter manager password: ");
+                out().print("Enter manager password: ");
                 String pw = in.readLine();
                 if(pw.equals("24601")) { //"admin123" is a placeholder for the actual password
-                    System.out.println("Manager login successful!");
+                    out().println("Manager login successful!");
                     return "Manager";
                 } else {
-                    System.out.println("Incorrect password!");
+                    out().println("Incorrect password!");
                     return null;
                 }
             default:
-                System.out.println("Unrecognized user type.");
+                out().println("Unrecognized user type.");
                 return null;
         }
     } catch(Exception e) {
-        System.err.println(e.getMessage());
+        err().println(e.getMessage());
         return null;
     }
 }//end login
@@ -624,45 +1329,35 @@ public static String LogIn(AirlineManagement esql) {
  **/
    public static void ViewFlights(AirlineManagement esql) {
     try {
-        BufferedReader in = new BufferedReader(new InputStreamReader(System.in));
+        BufferedReader in = in();
         // Use the robust flight number guard!
         String flightNumber = promptForValidFlightNumber(in);
         if (flightNumber == null) {
-            System.out.println("Returning to main menu.");
+            out().println("Returning to main menu.");
             return;
         }
 
         String query = 
             "SELECT s.DayOfWeek, s.DepartureTime, s.ArrivalTime " +
             "FROM Schedule s " +
-            "WHERE s.FlightNumber = '" + flightNumber + "' " +
-            "ORDER BY " +
-            "CASE " +
-            "   WHEN s.DayOfWeek = 'Monday' THEN 1 " +
-            "   WHEN s.DayOfWeek = 'Tuesday' THEN 2 " +
-            "   WHEN s.DayOfWeek = 'Wednesday' THEN 3 " +
-            "   WHEN s.DayOfWeek = 'Thursday' THEN 4 " +
-            "   WHEN s.DayOfWeek = 'Friday' THEN 5 " +
-            "   WHEN s.DayOfWeek = 'Saturday' THEN 6 " +
-            "   WHEN s.DayOfWeek = 'Sunday' THEN 7 " +
-            "   ELSE 8 END";
-
-        List<List<String>> results = esql.executeQueryAndReturnResult(query);
+            "WHERE s.FlightNumber = ? " +
+            "ORDER BY s.DayNum";
+
+        List<List<String>> results = esql.executeQueryAndReturnResult(query, flightNumber);
 
         if (results.isEmpty()) {
-            System.out.println("No weekly schedule found for flight " + flightNumber + ".");
+            out().println("No weekly schedule found for flight " + flightNumber + ".");
 	    return;
         }
 
-	System.out.printf("| %-10s | %-12s | %-12s |\n", "Day", "DepartureTime", "ArrivalTime");
-	System.out.println("|------------|--------------|--------------|");
-
+	TableRenderer table = new TableRenderer(out(), "Day", "DepartureTime", "ArrivalTime");
 	for (List<String> row : results) {
-	    System.out.printf("| %-10s | %-12s | %-12s |\n", row.get(0), row.get(1), row.get(2));
+	    table.row(row.get(0), row.get(1), row.get(2));
 	}
+	table.finish();
 
     } catch(Exception e) {
-        System.err.println(e.getMessage());
+        err().println(e.getMessage());
     }
 }//end ViewFlights
 
@@ -672,40 +1367,33 @@ public static String LogIn(AirlineManagement esql) {
  **/
  public static void ViewFlightSeats(AirlineManagement esql) {
     try {
-        BufferedReader in = new BufferedReader(new InputStreamReader(System.in));
+        BufferedReader in = in();
 
         // Use robust flight number input guard
         String flightNumber = promptForValidFlightNumber(in);
         if (flightNumber == null) {
-            System.out.println("Returning to main menu.");
+            out().println("Returning to main menu.");
             return;
         }
 
         // Use robust date input guard
         String flightDate = promptForValidDate(in);
         if (flightDate == null) {
-            System.out.println("Returning to main menu.");
+            out().println("Returning to main menu.");
             return;
         }
 
-        String query = "SELECT SeatsTotal, SeatsSold " +
-                       "FROM FlightInstance " +
-                       "WHERE FlightNumber = '" + flightNumber + "' " +
-                       "AND FlightDate = DATE '" + flightDate + "'";
-
-        List<List<String>> result = esql.executeQueryAndReturnResult(query);
-        if (result.size() == 0) {
-            System.out.println("No seat information found for this flight and date.");
+        FlightStatsCache.InstanceSeats instance =
+            esql.getFlightStatsCache().seats(flightNumber, LocalDate.parse(flightDate));
+        if (instance == null) {
+            out().println("No seat information found for this flight and date.");
         } else {
-            int seatsTotal = Integer.parseInt(result.get(0).get(0));
-            int seatsSold = Integer.parseInt(result.get(0).get(1));
-            int seatsAvailable = seatsTotal - seatsSold;
-            System.out.println("Flight: " + flightNumber + " on " + flightDate);
-            System.out.println("Seats Sold: " + seatsSold);
-            System.out.println("Seats Still Available: " + seatsAvailable);
+            out().println("Flight: " + flightNumber + " on " + flightDate);
+            out().println("Seats Sold: " + instance.seatsSold);
+            out().println("Seats Still Available: " + instance.seatsAvailable());
         }
     } catch(Exception e) {
-        System.err.println(e.getMessage());
+        err().println(e.getMessage());
     }
 }//end ViewFlightSeats
 
@@ -715,47 +1403,42 @@ public static String LogIn(AirlineManagement esql) {
  **/
    public static void ViewFlightStatus(AirlineManagement esql) {
     try {
-        BufferedReader in = new BufferedReader(new InputStreamReader(System.in));
+        BufferedReader in = in();
         // Input guards
         String flightNumber = promptForValidFlightNumber(in);
         if (flightNumber == null) {
-            System.out.println("Returning to main menu.");
+            out().println("Returning to main menu.");
             return;
         }
 
         String flightDate = promptForValidDate(in);
         if (flightDate == null) {
-            System.out.println("Returning to main menu.");
+            out().println("Returning to main menu.");
             return;
         }
 
         String query = 
-            "SELECT s.DepartureTime, s.ArrivalTime, fi.DepartedOnTime, fi.ArrivedOnTime " +
-            "FROM FlightInstance fi " +
-            "JOIN Schedule s ON fi.FlightNumber = s.FlightNumber " +
-            "AND s.DayOfWeek = TO_CHAR(fi.FlightDate, 'FMDay') " +
-            "WHERE fi.FlightNumber = '" + flightNumber + "' " +
-            "AND fi.FlightDate = DATE '" + flightDate + "'";
-
-        List<List<String>> result = esql.executeQueryAndReturnResult(query);
-        if (result.size() == 0) {
-            System.out.println("No flight status information found for this flight and date.");
+            "SELECT " + ScheduledFlightRow.COLUMNS + " " +
+            "FROM " + ScheduledFlightRow.SOURCE + " " +
+            "WHERE fi.FlightNumber = ? " +
+            "AND fi.FlightDate = CAST(? AS DATE)";
+
+        // Should be at most one result now
+        ScheduledFlightRow row = esql.executeQueryForObject(query, ScheduledFlightRow.MAPPER, flightNumber, flightDate);
+        if (row == null) {
+            out().println("No flight status information found for this flight and date.");
         } else {
-            // Should be at most one result now
-            List<String> row = result.get(0);
-            String schedDep = row.get(0);
-            String schedArr = row.get(1);
-            String departed = row.get(2).equals("t") ? "Yes" : "No";
-            String arrived = row.get(3).equals("t") ? "Yes" : "No";
-            System.out.println("-----------------------------------------");
-            System.out.println("Scheduled Departure: " + schedDep);
-            System.out.println("Scheduled Arrival:   " + schedArr);
-            System.out.println("Departed On Time:    " + departed);
-            System.out.println("Arrived On Time:     " + arrived);
-            System.out.println("-----------------------------------------");
+            String departed = Boolean.TRUE.equals(row.departedOnTime) ? "Yes" : "No";
+            String arrived = Boolean.TRUE.equals(row.arrivedOnTime) ? "Yes" : "No";
+            out().println("-----------------------------------------");
+            out().println("Scheduled Departure: " + row.departureTime);
+            out().println("Scheduled Arrival:   " + row.arrivalTime);
+            out().println("Departed On Time:    " + departed);
+            out().println("Arrived On Time:     " + arrived);
+            out().println("-----------------------------------------");
         }
     } catch(Exception e) {
-        System.err.println(e.getMessage());
+        err().println(e.getMessage());
     }
 }//end ViewFlightStatus
 
@@ -764,40 +1447,28 @@ public static String LogIn(AirlineManagement esql) {
  **/
    public static void ViewFlightsOfTheDay(AirlineManagement esql) {
     try {
-        BufferedReader in = new BufferedReader(new InputStreamReader(System.in));
+        BufferedReader in = in();
 
         String flightDate = promptForValidDate(in);
         if (flightDate == null) {
-            System.out.println("Returning to main menu.");
+            out().println("Returning to main menu.");
             return;
         }
 
-        String query =
-            "SELECT fi.FlightInstanceID, fi.FlightNumber, f.DepartureCity, f.ArrivalCity, fi.NumOfStops, " +
-            "s.DepartureTime, s.ArrivalTime, fi.DepartedOnTime, fi.ArrivedOnTime " +
-            "FROM FlightInstance fi " +
-            "JOIN Flight f ON fi.FlightNumber = f.FlightNumber " +
-            "JOIN Schedule s ON fi.FlightNumber = s.FlightNumber " +
-            "AND s.DayOfWeek = TO_CHAR(fi.FlightDate, 'FMDay') " +
-            "WHERE fi.FlightDate = DATE '" + flightDate + "' " +
-            "ORDER BY fi.FlightNumber, s.DepartureTime";
-
-        List<List<String>> result = esql.executeQueryAndReturnResult(query);
-        if (result.size() == 0) {
-            System.out.println("No flights scheduled on " + flightDate + ".");
-        } else {
-            System.out.println("Flights scheduled on " + flightDate + ":");
-            System.out.println("InstanceID | FlightNumber | From         | To           | Stops | Departure | Arrival   | DepartedOnTime | ArrivedOnTime");
-            for (List<String> row : result) {
-                String departed = row.get(7).equals("t") ? "Yes" : "No";
-                String arrived  = row.get(8).equals("t") ? "Yes" : "No";
-                System.out.printf("%10s | %12s | %-12s | %-12s | %5s | %-9s | %-8s | %-14s | %-13s\n",
-                        row.get(0), row.get(1), row.get(2), row.get(3), row.get(4),
-                        row.get(5), row.get(6), departed, arrived);
-            }
+        TableRenderer table = new TableRenderer(out(), "InstanceID", "FlightNumber", "From", "To", "Stops",
+                                                "Departure", "Arrival", "DepartedOnTime", "ArrivedOnTime");
+        List<ScheduledFlightRow> board = esql.getDayBoardCache().board(LocalDate.parse(flightDate));
+        if (!board.isEmpty())
+            table.note("Flights scheduled on " + flightDate + ":");
+        for (ScheduledFlightRow row : board) {
+            String departed = Boolean.TRUE.equals(row.departedOnTime) ? "Yes" : "No";
+            String arrived  = Boolean.TRUE.equals(row.arrivedOnTime) ? "Yes" : "No";
+            table.row(row.flightInstanceId, row.flightNumber, row.departureCity, row.arrivalCity, row.numOfStops,
+                      row.departureTime, row.arrivalTime, departed, arrived);
         }
+        table.finish("No flights scheduled on " + flightDate + ".");
     } catch(Exception e) {
-        System.err.println(e.getMessage());
+        err().println(e.getMessage());
     }
 }//end ViewFlightsOfTheDay
 
@@ -806,94 +1477,81 @@ public static String LogIn(AirlineManagement esql) {
    **/
    public static void ViewOrderHistory(AirlineManagement esql) {
     try {
-        BufferedReader in = new BufferedReader(new InputStreamReader(System.in));
+        BufferedReader in = in();
 
         String flightNumber = promptForValidFlightNumber(in);
         if (flightNumber == null) {
-            System.out.println("Returning to main menu.");
+            out().println("Returning to main menu.");
             return;
         }
 
         String flightDate = promptForValidDate(in);
         if (flightDate == null) {
-            System.out.println("Returning to main menu.");
+            out().println("Returning to main menu.");
             return;
         }
 
-        // Find FlightInstanceID
-        String findInstance = "SELECT FlightInstanceID FROM FlightInstance " +
-                              "WHERE FlightNumber = '" + flightNumber + "' " +
-                              "AND FlightDate = DATE '" + flightDate + "'";
-        List<List<String>> instanceResult = esql.executeQueryAndReturnResult(findInstance);
-        if (instanceResult.size() == 0) {
-            System.out.println("No flight instance found for " + flightNumber + " on " + flightDate + ".");
+        // The instance and all of its reservations in one round trip
+        ManifestEngine.Manifest manifest = esql.getManifestEngine().manifest(flightNumber, flightDate);
+        if (manifest == null) {
+            out().println("No flight instance found for " + flightNumber + " on " + flightDate + ".");
             return;
         }
-        String instanceId = instanceResult.get(0).get(0);
 
-        // 1. All reservations
-        System.out.println("\nPassengers who made a reservation:");
-        String queryAll =
-            "SELECT c.CustomerID, c.FirstName, c.LastName, r.Status " +
-            "FROM Reservation r " +
-            "JOIN Customer c ON r.CustomerID = c.CustomerID " +
-            "WHERE r.FlightInstanceID = " + instanceId +
-            " ORDER BY r.Status";
-        List<List<String>> allResults = esql.executeQueryAndReturnResult(queryAll);
-        if (allResults.size() == 0) {
-            System.out.println("  None.");
-        } else {
-            System.out.printf("| %-8s | %-15s | %-15s | %-10s |\n", "ID", "First Name", "Last Name", "Status");
-            System.out.println("|----------|-----------------|-----------------|------------|");
-            for (List<String> row : allResults) {
-                System.out.printf("| %-8s | %-15s | %-15s | %-10s |\n", row.get(0), row.get(1), row.get(2), row.get(3));
-            }
+        if (TableRenderer.FORMAT != TableRenderer.Format.TABLE) {
+            // CSV and JSON get one result; the List column says which list a row is on
+            TableRenderer table = new TableRenderer(out(), "List", "ID", "First Name", "Last Name", "Status");
+            listPassengers(table, "reservation", manifest.withoutStatus("cancelled"));
+            listPassengers(table, "waitlist", manifest.withStatus("waitlist"));
+            listPassengers(table, "flown", manifest.withStatus("flown"));
+            table.finish();
+            return;
         }
 
+        // 1. All reservations that still stand
+        out().println("\nPassengers who made a reservation:");
+        printPassengers(manifest.withoutStatus("cancelled"), true);
+
         // 2. Waitlist only
-        System.out.println("\nPassengers on the waiting list:");
-        String queryWaitlist =
-            "SELECT c.CustomerID, c.FirstName, c.LastName " +
-            "FROM Reservation r " +
-            "JOIN Customer c ON r.CustomerID = c.CustomerID " +
-            "WHERE r.FlightInstanceID = " + instanceId + " AND r.Status = 'waitlist'";
-        List<List<String>> waitResults = esql.executeQueryAndReturnResult(queryWaitlist);
-        if (waitResults.size() == 0) {
-            System.out.println("  None.");
-        } else {
-            System.out.printf("| %-8s | %-15s | %-15s |\n", "ID", "First Name", "Last Name");
-            System.out.println("|----------|-----------------|-----------------|");
-            for (List<String> row : waitResults) {
-                System.out.printf("| %-8s | %-15s | %-15s |\n", row.get(0), row.get(1), row.get(2));
-            }
-        }
+        out().println("\nPassengers on the waiting list:");
+        printPassengers(manifest.withStatus("waitlist"), false);
 
         // 3. Actually flown
-        System.out.println("\nPassengers who actually flew:");
-        String queryFlown =
-            "SELECT c.CustomerID, c.FirstName, c.LastName " +
-            "FROM Reservation r " +
-            "JOIN Customer c ON r.CustomerID = c.CustomerID " +
-            "WHERE r.FlightInstanceID = " + instanceId + " AND r.Status = 'flown'";
-        List<List<String>> flownResults = esql.executeQueryAndReturnResult(queryFlown);
-        if (flownResults.size() == 0) {
-            System.out.println("  None.");
-        } else {
-            System.out.printf("| %-8s | %-15s | %-15s |\n", "ID", "First Name", "Last Name");
-            System.out.println("|----------|-----------------|-----------------|");
-            for (List<String> row : flownResults) {
-                System.out.printf("| %-8s | %-15s | %-15s |\n", row.get(0), row.get(1), row.get(2));
-            }
-        }
+        out().println("\nPassengers who actually flew:");
+        printPassengers(manifest.withStatus("flown"), false);
 
     } catch(Exception e) {
-        System.err.println(e.getMessage());
+        err().println(e.getMessage());
     }
 }//end ViewOrderHistory
 
+/*
+ * Prints ID, first and last name, and the status when asked to
+ **/
+private static void printPassengers(List<ManifestEngine.Passenger> passengers, boolean withStatus) {
+    TableRenderer table = withStatus
+        ? new TableRenderer(out(), "ID", "First Name", "Last Name", "Status")
+        : new TableRenderer(out(), "ID", "First Name", "Last Name");
+    for (ManifestEngine.Passenger p : passengers) {
+        if (withStatus)
+            table.row(p.customerId, p.firstName, p.lastName, p.status);
+        else
+            table.row(p.customerId, p.firstName, p.lastName);
+    }
+    table.finish("  None.");
+}
+
+/*
+ * Adds the passengers to a machine-readable report, each row tagged with its list
+ **/
+private static void listPassengers(TableRenderer table, String list, List<ManifestEngine.Passenger> passengers) {
+    for (ManifestEngine.Passenger p : passengers)
+        table.row(list, p.customerId, p.firstName, p.lastName, p.status);
+}
+
 public static void ViewReservationDetails(AirlineManagement esql) {
     try {
-        BufferedReader in = new BufferedReader(new InputStreamReader(System.in));
+        BufferedReader in = in();
 
         String resId = promptForValidReservationID(in);
         if (resId == null) return;
@@ -903,168 +1561,146 @@ public static void ViewReservationDetails(AirlineManagement esql) {
             "SELECT c.FirstName, c.LastName, c.Gender, c.DOB, c.Address, c.Phone, c.Zip " +
             "FROM Reservation r " +
             "JOIN Customer c ON r.CustomerID = c.CustomerID " +
-            "WHERE r.ReservationID = '" + resId + "'";
+            "WHERE r.ReservationID = ?";
 
-        List<List<String>> result = esql.executeQueryAndReturnResult(query);
+        List<List<String>> result = esql.executeQueryAndReturnResult(query, resId);
 
         if (result.size() == 0) {
-            System.out.println("No reservation found with ID " + resId + ".");
+            out().println("No reservation found with ID " + resId + ".");
         } else {
             List<String> row = result.get(0);
-            System.out.println("Traveler information for reservation " + resId + ":");
-            System.out.println("First Name : " + row.get(0));
-            System.out.println("Last Name  : " + row.get(1));
-            System.out.println("Gender     : " + row.get(2));
-            System.out.println("DOB        : " + row.get(3));
-            System.out.println("Address    : " + row.get(4));
-            System.out.println("Phone      : " + row.get(5));
-            System.out.println("Zip Code   : " + row.get(6));
+            out().println("Traveler information for reservation " + resId + ":");
+            out().println("First Name : " + row.get(0));
+            out().println("Last Name  : " + row.get(1));
+            out().println("Gender     : " + row.get(2));
+            out().println("DOB        : " + row.get(3));
+            out().println("Address    : " + row.get(4));
+            out().println("Phone      : " + row.get(5));
+            out().println("Zip Code   : " + row.get(6));
         }
     } catch(Exception e) {
-        System.err.println(e.getMessage());
+        err().println(e.getMessage());
     }
 }
 
 public static void ViewPlaneInfo(AirlineManagement esql) {
     try {
-        BufferedReader in = new BufferedReader(new InputStreamReader(System.in));
+        BufferedReader in = in();
         String planeId = promptForValidPlaneID(in);
         if (planeId == null) return;
 
         String query =
-            "SELECT Make, Model, Year, LastRepairDate FROM Plane WHERE PlaneID = '" + planeId + "'";
-        List<List<String>> result = esql.executeQueryAndReturnResult(query);
+            "SELECT " + PlaneRow.COLUMNS + " FROM Plane WHERE PlaneID = ?";
+        PlaneRow plane = esql.executeQueryForObject(query, PlaneRow.MAPPER, planeId);
 
-        if (result.size() == 0) {
-            System.out.println("No plane found with ID " + planeId + ".");
+        if (plane == null) {
+            out().println("No plane found with ID " + planeId + ".");
             return;
         }
 
-        List<String> row = result.get(0);
-        String make = row.get(0);
-        String model = row.get(1);
-        String yearStr = row.get(2);
-        String lastRepairDate = row.get(3);
-
         int currentYear = java.time.LocalDate.now().getYear();
-        int year = Integer.parseInt(yearStr);
-        int age = currentYear - year;
+        int age = currentYear - plane.year;
 
-        System.out.println("Plane Information:");
-        System.out.println("Plane ID       : " + planeId);
-        System.out.println("Make           : " + make);
-        System.out.println("Model          : " + model);
-        System.out.println("Year           : " + year);
-        System.out.println("Age            : " + age + " year(s)");
-        System.out.println("Last Repair    : " + lastRepairDate);
+        out().println("Plane Information:");
+        out().println("Plane ID       : " + planeId);
+        out().println("Make           : " + plane.make);
+        out().println("Model          : " + plane.model);
+        out().println("Year           : " + plane.year);
+        out().println("Age            : " + age + " year(s)");
+        out().println("Last Repair    : " + plane.lastRepairDate);
 
     } catch(Exception e) {
-        System.err.println(e.getMessage());
+        err().println(e.getMessage());
     }
 }
 
     public static void ViewRepairsByTechnician(AirlineManagement esql) {
         try {
-            BufferedReader in = new BufferedReader(new InputStreamReader(System.in));
+            BufferedReader in = in();
             String techId = promptForValidTechnicianID(in);
             if (techId == null) return;
 
             String query =
                 "SELECT RepairID, PlaneID, RepairCode, RepairDate " +
-                "FROM Repair WHERE TechnicianID = '" + techId + "' " +
+                "FROM Repair WHERE TechnicianID = ? " +
                 "ORDER BY RepairDate";
 
-            List<List<String>> result = esql.executeQueryAndReturnResult(query);
-            if (result.size() == 0) {
-                System.out.println("No repairs found for technician " + techId + ".");
-            } else {
-                System.out.println("Repairs performed by technician " + techId + ":");
-                System.out.println("| RepairID | PlaneID | RepairCode | RepairDate  |");
-                System.out.println("|----------|---------|------------|-------------|");
-                for (List<String> row : result) {
-                    System.out.printf("| %-8s | %-7s | %-10s | %-11s |\n",
-                            row.get(0), row.get(1), row.get(2), row.get(3));
+            TableRenderer table = new TableRenderer(out(), "RepairID", "PlaneID", "RepairCode", "RepairDate");
+            esql.executeQueryStreaming(query, (rs, rowNumber) -> {
+                if (rowNumber == 1) {
+                    table.note("Repairs performed by technician " + techId + ":");
                 }
-            }
+                table.row(rs.getString(1), rs.getString(2), rs.getString(3), rs.getString(4));
+            }, techId);
+            table.finish("No repairs found for technician " + techId + ".");
         } catch(Exception e) {
-            System.err.println(e.getMessage());
+            err().println(e.getMessage());
         }
     }
 
     public static void ViewRepairsForPlaneInRange(AirlineManagement esql) {
     try {
-        BufferedReader in = new BufferedReader(new InputStreamReader(System.in));
+        BufferedReader in = in();
         String planeId = promptForValidPlaneID(in);
         if (planeId == null) return;
 
-        System.out.println("Enter start date of range:");
+        out().println("Enter start date of range:");
         String startDate = promptForValidDate(in);
         if (startDate == null) return;
 
-        System.out.println("Enter end date of range:");
+        out().println("Enter end date of range:");
         String endDate = promptForValidDate(in);
         if (endDate == null) return;
 
         String query =
             "SELECT RepairDate, RepairCode " +
             "FROM Repair " +
-            "WHERE PlaneID = '" + planeId + "' " +
-            "AND RepairDate BETWEEN DATE '" + startDate + "' AND DATE '" + endDate + "' " +
+            "WHERE PlaneID = ? " +
+            "AND RepairDate BETWEEN CAST(? AS DATE) AND CAST(? AS DATE) " +
             "ORDER BY RepairDate";
 
-        List<List<String>> result = esql.executeQueryAndReturnResult(query);
-        if (result.size() == 0) {
-            System.out.println("No repairs for plane " + planeId + " between " + startDate + " and " + endDate + ".");
-        } else {
-            System.out.println("Repairs for " + planeId + " from " + startDate + " to " + endDate + ":");
-            System.out.println("| RepairDate  | RepairCode |");
-            System.out.println("|-------------|------------|");
-            for (List<String> row : result) {
-                System.out.printf("| %-11s | %-10s |\n", row.get(0), row.get(1));
+        TableRenderer table = new TableRenderer(out(), "RepairDate", "RepairCode");
+        esql.executeQueryStreaming(query, (rs, rowNumber) -> {
+            if (rowNumber == 1) {
+                table.note("Repairs for " + planeId + " from " + startDate + " to " + endDate + ":");
             }
-        }
+            table.row(rs.getString(1), rs.getString(2));
+        }, planeId, startDate, endDate);
+        table.finish("No repairs for plane " + planeId + " between " + startDate + " and " + endDate + ".");
     } catch(Exception e) {
-        System.err.println(e.getMessage());
+        err().println(e.getMessage());
     }
 }
 
 public static void ViewFlightStatsInRange(AirlineManagement esql) {
     try {
-        BufferedReader in = new BufferedReader(new InputStreamReader(System.in));
+        BufferedReader in = in();
 
         String flightNum = promptForValidFlightNumber(in);
         if (flightNum == null) return;
 
-        System.out.println("Enter start date of range:");
+        out().println("Enter start date of range:");
         String startDate = promptForValidDate(in);
         if (startDate == null) return;
 
-        System.out.println("Enter end date of range:");
+        out().println("Enter end date of range:");
         String endDate = promptForValidDate(in);
         if (endDate == null) return;
 
-        String query =
-            "SELECT COUNT(CASE WHEN DepartedOnTime THEN 1 END) AS NumDeparted, " +
-            "       COUNT(CASE WHEN ArrivedOnTime THEN 1 END) AS NumArrived, " +
-            "       SUM(SeatsSold) AS TotalSold, " +
-            "       SUM(SeatsTotal - SeatsSold) AS TotalUnsold " +
-            "FROM FlightInstance " +
-            "WHERE FlightNumber = '" + flightNum + "' " +
-            "  AND FlightDate BETWEEN DATE '" + startDate + "' AND DATE '" + endDate + "'";
-
-        List<List<String>> result = esql.executeQueryAndReturnResult(query);
-        if (result.size() == 0 || (result.get(0).get(0) == null && result.get(0).get(1) == null)) {
-            System.out.println("No statistics found for flight " + flightNum + " in the given range.");
+        // answered from the per-flight prefix sums instead of scanning FlightInstance
+        FlightStatsRow stats = esql.getFlightStatsCache().stats(flightNum,
+            LocalDate.parse(startDate), LocalDate.parse(endDate));
+        if (stats == null) {
+            out().println("No statistics found for flight " + flightNum + " in the given range.");
         } else {
-            List<String> row = result.get(0);
-            System.out.println("Flight Statistics for " + flightNum + " (" + startDate + " to " + endDate + "):");
-            System.out.println("Number of days departed on time:     " + (row.get(0) == null ? "0" : row.get(0)));
-            System.out.println("Number of days arrived on time:      " + (row.get(1) == null ? "0" : row.get(1)));
-            System.out.println("Total tickets sold:          " + (row.get(2) == null ? "0" : row.get(2)));
-            System.out.println("Total tickets unsold:        " + (row.get(3) == null ? "0" : row.get(3)));
+            out().println("Flight Statistics for " + flightNum + " (" + startDate + " to " + endDate + "):");
+            out().println("Number of days departed on time:     " + stats.numDeparted);
+            out().println("Number of days arrived on time:      " + stats.numArrived);
+            out().println("Total tickets sold:          " + stats.totalSold);
+            out().println("Total tickets unsold:        " + stats.totalUnsold);
         }
     } catch(Exception e) {
-        System.err.println(e.getMessage());
+        err().println(e.getMessage());
     }
 }
 
@@ -1072,61 +1708,91 @@ public static void ViewFlightStatsInRange(AirlineManagement esql) {
 
    public static void SearchFlights(AirlineManagement esql) {
     try {
-        BufferedReader in = new BufferedReader(new InputStreamReader(System.in));
+        BufferedReader in = in();
         String depCity = promptForValidCity(in, "Enter Departure City");
         if (depCity == null) {
-            System.out.println("Returning to main menu.");
+            out().println("Returning to main menu.");
             return;
         }
         String arrCity = promptForValidCity(in, "Enter Arrival City");
         if (arrCity == null) {
-            System.out.println("Returning to main menu.");
+            out().println("Returning to main menu.");
             return;
         }
         String flightDate = promptForValidDate(in);
         if (flightDate == null) {
-            System.out.println("Returning to main menu.");
+            out().println("Returning to main menu.");
             return;
         }
 
-        // Build query for only the correct schedule (for the right day)
-        String query =
-            "SELECT f.FlightNumber, f.DepartureCity, f.ArrivalCity, " +
-            "s.DepartureTime, s.ArrivalTime, fi.NumOfStops, " +
-            "CASE WHEN fi.DepartedOnTime IS NULL THEN 'N/A' " +
-            "     WHEN fi.DepartedOnTime THEN 'Yes' ELSE 'No' END AS DepartedOnTime, " +
-            "CASE WHEN fi.ArrivedOnTime IS NULL THEN 'N/A' " +
-            "     WHEN fi.ArrivedOnTime THEN 'Yes' ELSE 'No' END AS ArrivedOnTime " +
-            "FROM Flight f " +
-            "JOIN FlightInstance fi ON f.FlightNumber = fi.FlightNumber " +
-            "JOIN Schedule s ON f.FlightNumber = s.FlightNumber " +
-            "    AND s.DayOfWeek = TO_CHAR(fi.FlightDate, 'FMDay') " +
-            "WHERE f.DepartureCity = '" + depCity + "' " +
-            "  AND f.ArrivalCity = '" + arrCity + "' " +
-            "  AND fi.FlightDate = DATE '" + flightDate + "' " +
-            "ORDER BY s.DepartureTime";
-
-        List<List<String>> result = esql.executeQueryAndReturnResult(query);
-        if (result.size() == 0) {
-            System.out.println("No flights found for those criteria.");
-        } else {
-            System.out.println("| Flight# | From      | To        | DepTime  | ArrTime  | Stops | Departed On Time | Arrived On Time |");
-            System.out.println("|---------|-----------|-----------|----------|----------|-------|------------------|-----------------|");
-            for (List<String> row : result) {
-                System.out.printf("| %-7s | %-9s | %-9s | %-8s | %-8s | %-5s | %-16s | %-15s |\n",
-                    row.get(0), row.get(1), row.get(2), row.get(3), row.get(4), row.get(5), row.get(6), row.get(7));
+        // Routes and schedules come from the cache; only the day's instances are queried
+        List<RouteCache.Departure> departures =
+            esql.getRouteCache().departures(depCity, arrCity, LocalDate.parse(flightDate));
+        // by FlightInstanceID: a flight can have more than one instance on a date
+        Map<Integer, FlightInstanceRow> instances = new LinkedHashMap<Integer, FlightInstanceRow>();
+        if (!departures.isEmpty()) {
+            List<Object> params = new ArrayList<Object>();
+            StringBuilder inList = new StringBuilder();
+            params.add(flightDate);
+            for (RouteCache.Departure d : departures) {
+                if (!params.contains(d.flightNumber)) {
+                    inList.append(params.size() == 1 ? "?" : ", ?");
+                    params.add(d.flightNumber);
+                }
+            }
+            String query =
+                "SELECT " + FlightInstanceRow.COLUMNS + " FROM FlightInstance fi " +
+                "WHERE fi.FlightDate = CAST(? AS DATE) " +
+                "  AND fi.FlightNumber IN (" + inList + ") " +
+                "ORDER BY fi.FlightInstanceID";
+            for (FlightInstanceRow row : esql.executeQueryForList(query, FlightInstanceRow.MAPPER, params.toArray()))
+                instances.put(row.flightInstanceId, row);
+        }
+
+        TableRenderer table = new TableRenderer(out(), "Flight#", "From", "To", "DepTime", "ArrTime", "Stops",
+                                                "Departed On Time", "Arrived On Time");
+        for (RouteCache.Departure d : departures) {
+            for (FlightInstanceRow row : instances.values()) {
+                if (!row.flightNumber.equals(d.flightNumber))
+                    continue;
+                table.row(d.flightNumber, d.departureCity, d.arrivalCity, d.departureTime, d.arrivalTime,
+                    row.numOfStops, ScheduledFlightRow.yesNo(row.departedOnTime), ScheduledFlightRow.yesNo(row.arrivedOnTime));
             }
         }
+        if (table.finish() == 0)
+            printConnections(esql, depCity, arrCity, LocalDate.parse(flightDate));
 
     } catch(Exception e) {
-        System.err.println(e.getMessage());
+        err().println(e.getMessage());
     }
 }
 
 
+/*
+ * Lists the best connecting itineraries when a city pair has no direct flight
+ **/
+private static void printConnections(AirlineManagement esql, String depCity, String arrCity, LocalDate date) throws SQLException {
+    List<ItineraryEngine.Itinerary> itineraries =
+        esql.getItineraryEngine().search(depCity, arrCity, date, ItineraryEngine.MAX_LEGS, 5);
+    TableRenderer table = new TableRenderer(out(), "Option", "Flight#", "From", "To", "Date", "DepTime", "ArrTime",
+                                            "Seats Left", "Cost");
+    if (!itineraries.isEmpty())
+        table.note("No direct flights found. Connecting flights with free seats:");
+    int option = 0;
+    for (ItineraryEngine.Itinerary itinerary : itineraries) {
+        ++option;
+        for (ItineraryEngine.Leg leg : itinerary.legs) {
+            RouteCache.Departure d = leg.departure;
+            table.row(option, d.flightNumber, d.departureCity, d.arrivalCity, leg.date, d.departureTime, d.arrivalTime,
+                      leg.seatsAvailable, leg.ticketCost);
+        }
+    }
+    table.finish("No flights found for those criteria.");
+}
+
 public static void MakeReservation(AirlineManagement esql) {
     try {
-        BufferedReader in = new BufferedReader(new InputStreamReader(System.in));
+        BufferedReader in = in();
 
         String custId = promptForValidCustomerID(in);
         if (custId == null) return;
@@ -1137,14 +1803,15 @@ public static void MakeReservation(AirlineManagement esql) {
         String flightDate = promptForValidDate(in);
         if (flightDate == null) return;
 
-        // Find the FlightInstanceID and seat info
-        String findInstance = "SELECT FlightInstanceID, SeatsTotal, SeatsSold FROM FlightInstance " +
-                              "WHERE FlightNumber = '" + flightNum + "' " +
-                              "AND FlightDate = DATE '" + flightDate + "'";
-        List<List<String>> result = esql.executeQueryAndReturnResult(findInstance);
+        // Take a seat, or a waitlist place when the flight is full, in one statement
+        BookingEngine.Booking booking = esql.getBookingEngine().book(Integer.parseInt(custId), flightNum, flightDate);
 
-        if (result.isEmpty()) {
-            System.out.println("No flight instance found.");
+        if (booking == null) {
+            String findInstance = "SELECT 1 FROM FlightInstance WHERE FlightNumber = ? AND FlightDate = CAST(? AS DATE)";
+            if (esql.executeQuery(findInstance, flightNum, flightDate) == 0)
+                out().println("No flight instance found.");
+            else
+                out().println("Sorry, this flight is already flown. No further reservations or waitlist allowed.");
             return;
         }
 
@@ -1153,62 +1820,290 @@ public static void MakeReservation(AirlineManagement esql) {
         // java.sql.Date flightSqlDate = java.sql.Date.valueOf(flightDate);
 
         // if (flightSqlDate.before(today)) {
-        //     System.out.println("Sorry, this flight has already flown. No further reservations or waitlist allowed.");
+        //     out().println("Sorry, this flight has already flown. No further reservations or waitlist allowed.");
         //     return;
         // }
 
         // // Optionally, also check DepartedOnTime, if you use that as a flown marker:
         // // (Assuming result.get(0).get(3) is DepartedOnTime)
         // if (result.get(0).size() > 3 && result.get(0).get(3) != null && result.get(0).get(3).equals("t")) {
-        //     System.out.println("Sorry, this flight has already departed. No further reservations or waitlist allowed.");
+        //     out().println("Sorry, this flight has already departed. No further reservations or waitlist allowed.");
         //     return;
         // }
 
-        String instanceId = result.get(0).get(0);
-        int seatsTotal = Integer.parseInt(result.get(0).get(1));
-        int seatsSold = Integer.parseInt(result.get(0).get(2));
+        out().println("Reservation ID: " + booking.reservationId +
+            (booking.isConfirmed() ? " - Confirmed!" : " - Added to waitlist!"));
+
+    } catch(Exception e) {
+        err().println(e.getMessage());
+    }
+}
+
+
+/*
+ * Cancels one of the logged-in customer's reservations; a freed seat goes to
+ * the next passenger on the waiting list
+ **/
+public static void CancelReservation(AirlineManagement esql, String customerId) {
+    try {
+        BufferedReader in = in();
+
+        String resId = promptForValidReservationID(in);
+        if (resId == null) return;
+
+        BookingEngine.Cancellation cancelled = esql.getBookingEngine().cancel(resId, Integer.parseInt(customerId));
+        if (cancelled == null) {
+            out().println("You have no reserved or waitlisted reservation with ID " + resId + ".");
+            return;
+        }
+
+        out().println("Reservation " + resId + " cancelled.");
+        for (String promotedId : cancelled.promoted) {
+            out().println("Reservation " + promotedId + " moved from the waitlist to reserved.");
+        }
+
+    } catch(Exception e) {
+        err().println(e.getMessage());
+    }
+}
+
+
+/*
+ * Changes the number of seats on a flight; new seats go to the waiting list
+ **/
+public static void UpdateSeatCapacity(AirlineManagement esql) {
+    try {
+        BufferedReader in = in();
+
+        String flightNum = promptForValidFlightNumber(in);
+        if (flightNum == null) return;
+
+        String flightDate = promptForValidDate(in);
+        if (flightDate == null) return;
+
+        String findInstance = "SELECT FlightInstanceID FROM FlightInstance " +
+                              "WHERE FlightNumber = ? " +
+                              "AND FlightDate = CAST(? AS DATE)";
+        Integer instanceId = esql.executeQueryForObject(findInstance, rs -> rs.getInt(1), flightNum, flightDate);
+        if (instanceId == null) {
+            out().println("No flight instance found for " + flightNum + " on " + flightDate + ".");
+            return;
+        }
 
-        // New flown status check:
-        String checkFlown = "SELECT 1 FROM Reservation WHERE FlightInstanceID = " + instanceId + " AND Status = 'flown' LIMIT 1";
-        List<List<String>> flownCheck = esql.executeQueryAndReturnResult(checkFlown);
-        if (flownCheck.size() > 0) {
-            System.out.println("Sorry, this flight is already flown. No further reservations or waitlist allowed.");
+        out().print("New total number of seats: ");
+        String input = in.readLine().trim();
+        if (!input.matches("\\d{1,4}")) {
+            out().println("Invalid number of seats.");
             return;
         }
 
-        String status = (seatsSold < seatsTotal) ? "reserved" : "waitlist";
+        List<String> promoted = esql.getBookingEngine().updateCapacity(instanceId, Integer.parseInt(input));
+        out().println("Seat capacity of " + flightNum + " on " + flightDate + " set to " + Integer.parseInt(input) + ".");
+        for (String promotedId : promoted) {
+            out().println("Reservation " + promotedId + " moved from the waitlist to reserved.");
+        }
 
-       // Generate a new unique ReservationID (assumes format R0001, R0002, etc.)
-        String getMaxId = "SELECT COALESCE(MAX(ReservationID), 'R0000') FROM Reservation";
-        List<List<String>> maxIdResult = esql.executeQueryAndReturnResult(getMaxId);
-        String maxId = maxIdResult.get(0).get(0);
-        int newNum = Integer.parseInt(maxId.replaceAll("[^0-9]", "")) + 1;
-        if (newNum > 9999) {
-            System.out.println("Error: Maximum number of reservations reached (R9999). Cannot create new reservation.");
+    } catch(Exception e) {
+        err().println(e.getMessage());
+    }
+}
+
+
+/*
+ * Records whether a flight instance departed and arrived on time, and
+ * brings the caches that show those flags up to date
+ **/
+public static void UpdateFlightStatus(AirlineManagement esql) {
+    try {
+        BufferedReader in = in();
+
+        String flightNum = promptForValidFlightNumber(in);
+        if (flightNum == null) return;
+
+        String flightDate = promptForValidDate(in);
+        if (flightDate == null) return;
+
+        String findInstance = "SELECT FlightInstanceID FROM FlightInstance " +
+                              "WHERE FlightNumber = ? " +
+                              "AND FlightDate = CAST(? AS DATE)";
+        Integer instanceId = esql.executeQueryForObject(findInstance, rs -> rs.getInt(1), flightNum, flightDate);
+        if (instanceId == null) {
+            out().println("No flight instance found for " + flightNum + " on " + flightDate + ".");
             return;
         }
-        String newReservationId = String.format("R%04d", newNum);
 
+        Boolean departed = promptForOnTime(in, "Departed on time");
+        Boolean arrived = promptForOnTime(in, "Arrived on time");
 
-        String insertRes = String.format(
-            "INSERT INTO Reservation (ReservationID, CustomerID, FlightInstanceID, Status) " +
-            "VALUES ('%s', %s, %s, '%s')",
-            newReservationId, custId, instanceId, status
-        );
-        esql.executeUpdate(insertRes);
+        String update = "UPDATE FlightInstance SET DepartedOnTime = CAST(? AS BOOLEAN), ArrivedOnTime = CAST(? AS BOOLEAN) " +
+                        "WHERE FlightInstanceID = ?";
+        esql.executeUpdate(update, departed, arrived, instanceId);
+        esql.getFlightStatsCache().touch(instanceId);
+        esql.getManifestEngine().forget(instanceId);
+        esql.getDayBoardCache().touch(instanceId);
 
-        System.out.println("Reservation ID: " + newReservationId +
-            (status.equals("reserved") ? " - Confirmed!" : " - Added to waitlist!"));
+        out().println("Status of " + flightNum + " on " + flightDate + " set to departed on time: " +
+                      ScheduledFlightRow.yesNo(departed) + ", arrived on time: " + ScheduledFlightRow.yesNo(arrived) + ".");
+    } catch(Exception e) {
+        err().println(e.getMessage());
+    }
+}
 
+/*
+ * Reads y, n or blank (not known yet, stored as NULL)
+ **/
+private static Boolean promptForOnTime(BufferedReader in, String prompt) throws IOException {
+    while (true) {
+        out().print(prompt + " (y/n, blank if not yet): ");
+        String input = in.readLine();
+        if (input == null || input.trim().isEmpty())
+            return null;
+        input = input.trim();
+        if (input.equalsIgnoreCase("y"))
+            return Boolean.TRUE;
+        if (input.equalsIgnoreCase("n"))
+            return Boolean.FALSE;
+        out().println("Please enter y or n.");
+    }
+}
+
+/*
+ * Shows latency percentiles, rows and errors of every SQL template run so
+ * far, the most total time first, and optionally saves them as JSON
+ **/
+public static void ViewQueryMetrics(AirlineManagement esql) {
+    try {
+        List<QueryMetrics.Template> templates = esql.getQueryMetrics().snapshot();
+        if (templates.isEmpty()) {
+            out().println("No statements have run yet.");
+            return;
+        }
+        TableRenderer table = new TableRenderer(out(), "Count", "Errors", "Rows", "p50 ms", "p95 ms", "p99 ms", "Max ms", "SQL");
+        for (QueryMetrics.Template t : templates) {
+            String sql = t.sql.replaceAll("\\s+", " ").trim();
+            if (sql.length() > 70)
+                sql = sql.substring(0, 67) + "...";
+            table.row(t.count(), t.errors(), t.rows(),
+                String.format("%8.2f", t.percentileMicros(0.50) / 1000.0), String.format("%8.2f", t.percentileMicros(0.95) / 1000.0),
+                String.format("%8.2f", t.percentileMicros(0.99) / 1000.0), String.format("%8.2f", t.maxMicros() / 1000.0), sql);
+        }
+        table.finish();
+
+        out().print("Save as JSON to a file in " + ReportExporter.EXPORT_DIR + " (leave blank to skip): ");
+        String path = in().readLine();
+        if (path != null && !path.trim().isEmpty())
+            writeQueryMetrics(esql, ReportExporter.exportFile(path.trim()));
     } catch(Exception e) {
-        System.err.println(e.getMessage());
+        err().println(e.getMessage());
     }
 }
 
+/*
+ * Writes the rows behind a report to a CSV or binary file (see
+ * ReportExporter) for other tools to read
+ **/
+public static void ExportReport(AirlineManagement esql) {
+    try {
+        BufferedReader in = in();
+
+        out().println("1. Flight instances in a date range (View Flight Stats by Date Range)");
+        out().println("2. Reservations of a flight (View Full Order ID History)");
+        out().println("3. Repairs by a technician (List Technician Repairs)");
+        out().print("Report to export: ");
+        String report = in.readLine();
+        report = report == null ? "" : report.trim();
+
+        String query;
+        Object[] params;
+        if (report.equals("1")) {
+            String flightNum = promptForValidFlightNumber(in);
+            if (flightNum == null) return;
+            out().println("Enter start date of range:");
+            String startDate = promptForValidDate(in);
+            if (startDate == null) return;
+            out().println("Enter end date of range:");
+            String endDate = promptForValidDate(in);
+            if (endDate == null) return;
+            query = "SELECT FlightInstanceID, FlightDate, DepartedOnTime, ArrivedOnTime, SeatsSold, " +
+                    "SeatsTotal - SeatsSold AS SeatsUnsold, TicketCost " +
+                    "FROM FlightInstance " +
+                    "WHERE FlightNumber = ? AND FlightDate BETWEEN CAST(? AS DATE) AND CAST(? AS DATE) " +
+                    "ORDER BY FlightDate, FlightInstanceID";
+            params = new Object[] { flightNum, startDate, endDate };
+        } else if (report.equals("2")) {
+            String flightNum = promptForValidFlightNumber(in);
+            if (flightNum == null) return;
+            String flightDate = promptForValidDate(in);
+            if (flightDate == null) return;
+            query = "SELECT r.ReservationID, c.CustomerID, c.FirstName, c.LastName, r.Status " +
+                    "FROM FlightInstance fi " +
+                    "JOIN Reservation r ON r.FlightInstanceID = fi.FlightInstanceID" +
+                    (esql.isPartitioned() ? " AND r.FlightDate = fi.FlightDate " : " ") +
+                    "JOIN Customer c ON c.CustomerID = r.CustomerID " +
+                    "WHERE fi.FlightNumber = ? AND fi.FlightDate = CAST(? AS DATE) " +
+                    "ORDER BY r.Status, CAST(SUBSTRING(r.ReservationID, 2) AS INTEGER)";
+            params = new Object[] { flightNum, flightDate };
+        } else if (report.equals("3")) {
+            String techId = promptForValidTechnicianID(in);
+            if (techId == null) return;
+            query = "SELECT RepairID, PlaneID, RepairCode, RepairDate " +
+                    "FROM Repair WHERE TechnicianID = ? " +
+                    "ORDER BY RepairDate";
+            params = new Object[] { techId };
+        } else {
+            out().println("Unknown report.");
+            return;
+        }
+
+        out().print("Format, csv or binary [csv]: ");
+        String format = in.readLine();
+        format = format == null || format.trim().isEmpty() ? "csv" : format.trim();
+        if (!format.equalsIgnoreCase("csv") && !format.equalsIgnoreCase("binary")) {
+            out().println("Unknown format.");
+            return;
+        }
+        out().print("File to write in " + ReportExporter.EXPORT_DIR + ": ");
+        String path = in.readLine();
+        if (path == null || path.trim().isEmpty()) {
+            out().println("Returning to main menu.");
+            return;
+        }
+
+        File file = ReportExporter.exportFile(path.trim());
+        long rows = ReportExporter.export(esql, file, ReportExporter.Format.valueOf(format.toUpperCase()), query, params);
+        out().println("Exported " + rows + " rows to " + file.getPath() + ".");
+    } catch(Exception e) {
+        err().println(e.getMessage());
+    }
+}
+
+/*
+ * Repairs per plane per month, technician workload and request to repair
+ * times, aggregated by FleetAnalytics
+ **/
+public static void ViewFleetDashboard(AirlineManagement esql) {
+    try {
+        new FleetAnalytics(esql).run(out());
+    } catch(Exception e) {
+        err().println(e.getMessage());
+    }
+}
+
+/*
+ * Writes QueryMetrics.toJson to a file
+ **/
+private static void writeQueryMetrics(AirlineManagement esql, File path) {
+    try (PrintStream file = new PrintStream(path, "UTF-8")) {
+        file.print(esql.getQueryMetrics().toJson());
+        out().println("Query metrics written to " + path.getPath());
+    } catch (IOException e) {
+        err().println("Could not write query metrics: " + e.getMessage());
+    }
+}
 
 public static void MaintenanceRequest(AirlineManagement esql) {
     try {
-        BufferedReader in = new BufferedReader(new InputStreamReader(System.in));
+        BufferedReader in = in();
         String pilotId = promptForValidPilotID(in);
         if (pilotId == null) return;
 
@@ -1222,23 +2117,16 @@ public static void MaintenanceRequest(AirlineManagement esql) {
         if (requestDate == null) return;
 
         // Generate unique RequestID
-        String getMaxId = "SELECT COALESCE(MAX(RequestID), 0) FROM MaintenanceRequest";
-        List<List<String>> maxIdResult = esql.executeQueryAndReturnResult(getMaxId);
-        int newRequestId = 1;
-        if (maxIdResult.size() > 0) {
-            newRequestId = Integer.parseInt(maxIdResult.get(0).get(0)) + 1;
-        }
+        int newRequestId = esql.nextMaintenanceRequestId();
 
-        String insertReq = String.format(
+        String insertReq =
             "INSERT INTO MaintenanceRequest (RequestID, PlaneID, RepairCode, RequestDate, PilotID) " +
-            "VALUES (%d, '%s', '%s', DATE '%s', '%s')",
-            newRequestId, planeId, repairCode, requestDate, pilotId
-        );
-        esql.executeUpdate(insertReq);
-        System.out.println("Maintenance request submitted! Request ID: " + newRequestId);
+            "VALUES (?, ?, ?, CAST(? AS DATE), ?)";
+        esql.executeUpdate(insertReq, newRequestId, planeId, repairCode, requestDate, pilotId);
+        out().println("Maintenance request submitted! Request ID: " + newRequestId);
 
     } catch(Exception e) {
-        System.err.println(e.getMessage());
+        err().println(e.getMessage());
     }
 }
 
@@ -1246,24 +2134,24 @@ public static void MaintenanceRequest(AirlineManagement esql) {
 
 public static void ViewRepairs(AirlineManagement esql) {
     try {
-        BufferedReader in = new BufferedReader(new InputStreamReader(System.in));
+        BufferedReader in = in();
         String planeId = promptForValidPlaneID(in);
         if (planeId == null) {
-            System.out.println("Returning to main menu.");
+            out().println("Returning to main menu.");
             return;
         }
 
-        System.out.println("Enter start date of range:");
+        out().println("Enter start date of range:");
         String startDate = promptForValidDate(in);
         if (startDate == null) {
-            System.out.println("Returning to main menu.");
+            out().println("Returning to main menu.");
             return;
         }
 
-        System.out.println("Enter end date of range:");
+        out().println("Enter end date of range:");
         String endDate = promptForValidDate(in);
         if (endDate == null) {
-            System.out.println("Returning to main menu.");
+            out().println("Returning to main menu.");
             return;
         }
 
@@ -1271,31 +2159,28 @@ public static void ViewRepairs(AirlineManagement esql) {
         String query =
             "SELECT RepairDate, RepairCode, TechnicianID " +
             "FROM Repair " +
-            "WHERE PlaneID = '" + planeId + "' " +
-            "AND RepairDate BETWEEN DATE '" + startDate + "' AND DATE '" + endDate + "' " +
+            "WHERE PlaneID = ? " +
+            "AND RepairDate BETWEEN CAST(? AS DATE) AND CAST(? AS DATE) " +
             "ORDER BY RepairDate";
 
-        List<List<String>> result = esql.executeQueryAndReturnResult(query);
-        if (result.size() == 0) {
-            System.out.println("No repairs found for plane " + planeId + " between " + startDate + " and " + endDate + ".");
-        } else {
-            System.out.println("Repairs for " + planeId + " from " + startDate + " to " + endDate + ":");
-            System.out.println("| RepairDate  | RepairCode | TechnicianID |");
-            System.out.println("|-------------|------------|--------------|");
-            for (List<String> row : result) {
-                System.out.printf("| %-11s | %-10s | %-12s |\n", row.get(0), row.get(1), row.get(2));
+        TableRenderer table = new TableRenderer(out(), "RepairDate", "RepairCode", "TechnicianID");
+        esql.executeQueryStreaming(query, (rs, rowNumber) -> {
+            if (rowNumber == 1) {
+                table.note("Repairs for " + planeId + " from " + startDate + " to " + endDate + ":");
             }
-        }
+            table.row(rs.getString(1), rs.getString(2), rs.getString(3));
+        }, planeId, startDate, endDate);
+        table.finish("No repairs found for plane " + planeId + " between " + startDate + " and " + endDate + ".");
 
     } catch(Exception e) {
-        System.err.println(e.getMessage());
+        err().println(e.getMessage());
     }
 }
 
 
 public static void AddRepairRecord(AirlineManagement esql) {
     try {
-        BufferedReader in = new BufferedReader(new InputStreamReader(System.in));
+        BufferedReader in = in();
         String techId = promptForValidTechnicianID(in);
         if (techId == null) return;
 
@@ -1305,55 +2190,106 @@ public static void AddRepairRecord(AirlineManagement esql) {
         String repairCode = promptForValidRepairCode(in);
 	if (repairCode == null) return;
 
-        System.out.print("Enter Repair Date, ");
+        out().print("Enter Repair Date, ");
         String repairDate = promptForValidDate(in);
 	if (repairDate == null) return;
 
-        String insertRepair = "INSERT INTO Repair (PlaneID, RepairCode, RepairDate, TechnicianID) " +
-                              "VALUES ('" + planeId + "', '" + repairCode + "', DATE '" + repairDate + "', '" + techId + "')";
-        esql.executeUpdate(insertRepair);
-        System.out.println("Repair record added!");
+        int newRepairId = esql.nextRepairId();
+        String insertRepair = "INSERT INTO Repair (RepairID, PlaneID, RepairCode, RepairDate, TechnicianID) " +
+                              "VALUES (?, ?, ?, CAST(? AS DATE), ?)";
+        esql.executeUpdate(insertRepair, newRepairId, planeId, repairCode, repairDate, techId);
+        out().println("Repair record added! Repair ID: " + newRepairId);
+
+    } catch(Exception e) {
+        err().println(e.getMessage());
+    }
+}
+
+/*
+ * Stores many repair records of the logged in technician at once
+ **/
+public static void SubmitRepairBatch(AirlineManagement esql, String technicianId) {
+    try {
+        BufferedReader records = openBatchInput("PlaneID,RepairCode,RepairDate");
+        if (records == null) return;
+        try {
+            int stored = new BatchSubmitter(esql, out()).submitRepairs(technicianId, records);
+            out().println(stored + " repair record(s) added.");
+        } finally {
+            if (records != in()) records.close();
+        }
+    } catch(Exception e) {
+        err().println(e.getMessage());
+    }
+}
 
+/*
+ * Stores many maintenance requests of the logged in pilot at once
+ **/
+public static void SubmitRequestBatch(AirlineManagement esql, String pilotId) {
+    try {
+        BufferedReader records = openBatchInput("PlaneID,RepairCode,RequestDate");
+        if (records == null) return;
+        try {
+            int stored = new BatchSubmitter(esql, out()).submitRequests(pilotId, records);
+            out().println(stored + " maintenance request(s) submitted.");
+        } finally {
+            if (records != in()) records.close();
+        }
     } catch(Exception e) {
-        System.err.println(e.getMessage());
+        err().println(e.getMessage());
     }
 }
 
+/*
+ * Asks for a CSV file of batch records in BatchSubmitter.BATCH_DIR; a blank
+ * answer reads them from the session instead, up to a line holding a single
+ * '.'.  Returns null when the file does not exist.
+ **/
+private static BufferedReader openBatchInput(String format) throws IOException {
+    out().print("Enter a CSV file in " + BatchSubmitter.BATCH_DIR + " (" + format + "), or leave blank to type records: ");
+    String path = in().readLine();
+    path = path == null ? "" : path.trim();
+    if (path.isEmpty()) {
+        out().println("Enter one " + format + " record per line; finish with a line holding '.'");
+        return in();
+    }
+    File file = BatchSubmitter.batchFile(path);
+    if (file == null) {
+        out().println("No such file in " + BatchSubmitter.BATCH_DIR + ": " + path);
+        return null;
+    }
+    return Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8);
+}
+
 public static void ViewPilotRequests(AirlineManagement esql) {
     try {
-	String pilotId = promptForValidPilotID(in);
+	String pilotId = promptForValidPilotID(in());
 	if (pilotId == null) return;
 
-	String query = String.format(
+	String query =
 		       	"SELECT RequestID, PlaneID, RepairCode, RequestDate " +
 		       "FROM MaintenanceRequest " +
-		       "WHERE PilotID = '%s' " +
-		       "ORDER BY RequestDate DESC",
-		       pilotId
-	);
+		       "WHERE PilotID = ? " +
+		       "ORDER BY RequestDate DESC";
 
-	List<List<String>> result = esql.executeQueryAndReturnResult(query);
-
-	if (result.isEmpty()) {
-	   System.out.println("No maintence requests found for pilot ID " + pilotId + ". Please check your input."); 
-	}
-	else {
-	   System.out.println("Maintenance Requests for Pilot " + pilotId + ":");
-	   System.out.printf("| %-12s | %-10s | %-15s | %-12s |\n", "RequestID", "PlaneID", "RepairCode", "RequestDate");
-	   for (List<String> row : result) {
-	        System.out.printf("| %-12s | %-10s | %-15s | %-12s|\n",
-		row.get(0), row.get(1), row.get(2), row.get(3));
+	TableRenderer table = new TableRenderer(out(), "RequestID", "PlaneID", "RepairCode", "RequestDate");
+	esql.executeQueryStreaming(query, (rs, rowNumber) -> {
+	   if (rowNumber == 1) {
+	      table.note("Maintenance Requests for Pilot " + pilotId + ":");
 	   }
-	}
+	   table.row(rs.getString(1), rs.getString(2), rs.getString(3), rs.getString(4));
+	}, pilotId);
+	table.finish("No maintence requests found for pilot ID " + pilotId + ". Please check your input.");
     } catch (Exception e) {
-	   System.err.println("Error viewing maintenance requests: " + e.getMessage());
+	   err().println("Error viewing maintenance requests: " + e.getMessage());
     }
 }
   
 public static String promptForValidDate(BufferedReader in) throws IOException {
     int maxTries = 5;
     for (int attempt = 1; attempt <= maxTries; attempt++) {
-        System.out.print("Enter Date (yyyy-mm-dd) [example: 2025-05-05]: ");
+        out().print("Enter Date (yyyy-mm-dd) [example: 2025-05-05]: ");
         String input = in.readLine().trim();
         // Regex: 2025-05-05 or 2026-12-31 etc.
         if (input.matches("\\d{4}-\\d{2}-\\d{2}")) {
@@ -1374,9 +2310,9 @@ public static String promptForValidDate(BufferedReader in) throws IOException {
                 }
             }
         }
-        System.out.println("Invalid date! Please use yyyy-mm-dd and a year between 2025 and 2026. Example: 2025-05-05");
+        out().println("Invalid date! Please use yyyy-mm-dd and a year between 2025 and 2026. Example: 2025-05-05");
         if (attempt == maxTries) {
-            System.out.println("Too many invalid attempts. Logging out.");
+            out().println("Too many invalid attempts. Logging out.");
             return null;
         }
     }
@@ -1386,7 +2322,7 @@ public static String promptForValidDate(BufferedReader in) throws IOException {
   public static String promptForValidCity(BufferedReader in, String prompt) throws IOException {
     int maxTries = 5;
     for (int attempt = 1; attempt <= maxTries; attempt++) {
-        System.out.print(prompt + " (letters and spaces only, e.g. 'New York'): ");
+        out().print(prompt + " (letters and spaces only, e.g. 'New York'): ");
         String input = in.readLine().trim();
         if (input.matches("[A-Za-z ]{2,15}")) {
             // Optional: capitalize first letter of each word for consistency
@@ -1401,9 +2337,9 @@ public static String promptForValidDate(BufferedReader in) throws IOException {
             }
             return sb.toString().trim();
         }
-        System.out.println("Invalid city! Example: 'New York'. Please use only letters and spaces (2-50 chars).");
+        out().println("Invalid city! Example: 'New York'. Please use only letters and spaces (2-50 chars).");
         if (attempt == maxTries) {
-            System.out.println("Too many invalid attempts. Logging out.");
+            out().println("Too many invalid attempts. Logging out.");
             return null;
         }
     }
@@ -1413,15 +2349,15 @@ public static String promptForValidDate(BufferedReader in) throws IOException {
 public static String promptForValidFirstName(BufferedReader in) throws IOException {
     int maxTries = 5;
     for (int attempt = 1; attempt <= maxTries; attempt++) {
-        System.out.print("Customer First Name: ");
+        out().print("Customer First Name: ");
         String input = in.readLine().trim();
         if (input.matches("[A-Za-z]{2,15}")) {
             // Capitalize first letter
             return Character.toUpperCase(input.charAt(0)) + input.substring(1).toLowerCase();
         }
-        System.out.println("Invalid first name! Example: 'Kevin'. Use only letters (2-30 characters).");
+        out().println("Invalid first name! Example: 'Kevin'. Use only letters (2-30 characters).");
         if (attempt == maxTries) {
-            System.out.println("Too many invalid attempts. Logging out.");
+            out().println("Too many invalid attempts. Logging out.");
             return null;
         }
     }
@@ -1431,15 +2367,15 @@ public static String promptForValidFirstName(BufferedReader in) throws IOExcepti
 public static String promptForValidLastName(BufferedReader in) throws IOException {
     int maxTries = 5;
     for (int attempt = 1; attempt <= maxTries; attempt++) {
-        System.out.print("Customer Last Name: ");
+        out().print("Customer Last Name: ");
         String input = in.readLine().trim();
         if (input.matches("[A-Za-z]{2,30}")) {
             // Capitalize first letter
             return Character.toUpperCase(input.charAt(0)) + input.substring(1).toLowerCase();
         }
-        System.out.println("Invalid last name! Example: 'Hall'. Use only letters (2-30 characters).");
+        out().println("Invalid last name! Example: 'Hall'. Use only letters (2-30 characters).");
         if (attempt == maxTries) {
-            System.out.println("Too many invalid attempts. Logging out.");
+            out().println("Too many invalid attempts. Logging out.");
             return null;
         }
     }
@@ -1449,7 +2385,7 @@ public static String promptForValidLastName(BufferedReader in) throws IOExceptio
 public static String promptForValidFullName(BufferedReader in, String role) throws IOException {
     int maxTries = 5;
     for (int attempt = 1; attempt <= maxTries; attempt++) {
-        System.out.print(role + " Full Name (e.g. 'Jessica Wang'): ");
+        out().print(role + " Full Name (e.g. 'Jessica Wang'): ");
         String input = in.readLine().trim();
         // Accepts two words, each 2-30 letters, separated by space
         if (input.matches("[A-Za-z]{2,30}\\s+[A-Za-z]{2,30}")) {
@@ -1462,9 +2398,9 @@ public static String promptForValidFullName(BufferedReader in, String role) thro
             }
             return formatted.toString().trim();
         }
-        System.out.println("Invalid name! Please enter a first and last name, each 2–30 letters. Example: 'Gina Moore'");
+        out().println("Invalid name! Please enter a first and last name, each 2–30 letters. Example: 'Gina Moore'");
         if (attempt == maxTries) {
-            System.out.println("Too many invalid attempts. Logging out.");
+            out().println("Too many invalid attempts. Logging out.");
             return null;
         }
     }
@@ -1474,17 +2410,17 @@ public static String promptForValidFullName(BufferedReader in, String role) thro
 public static String promptForValidCustomerID(BufferedReader in) throws IOException {
     int maxTries = 5;
     for (int attempt = 1; attempt <= maxTries; attempt++) {
-        System.out.print("Customer ID (1-999): ");
+        out().print("Customer ID: ");
         String input = in.readLine().trim();
-        if (input.matches("\\d{1,3}")) {
+        if (input.matches("\\d{1,9}")) {
             int id = Integer.parseInt(input);
-            if (id >= 1 && id <= 999) {
+            if (id >= 1) {
                 return String.valueOf(id);
             }
         }
-        System.out.println("Invalid Customer ID! Enter a positive integer between 1 and 999 (e.g., 4).");
+        out().println("Invalid Customer ID! Enter a positive integer (e.g., 4).");
         if (attempt == maxTries) {
-            System.out.println("Too many invalid attempts. Logging out.");
+            out().println("Too many invalid attempts. Logging out.");
             return null;
         }
     }
@@ -1494,7 +2430,7 @@ public static String promptForValidCustomerID(BufferedReader in) throws IOExcept
 public static String promptForValidPilotID(BufferedReader in) throws IOException {
     int maxTries = 5;
     for (int attempt = 1; attempt <= maxTries; attempt++) {
-        System.out.print("Pilot ID (P001–P999): ");
+        out().print("Pilot ID (P001–P999): ");
         String input = in.readLine().trim().toUpperCase();
         if (input.matches("P\\d{3}")) {
             int num = Integer.parseInt(input.substring(1));
@@ -1503,9 +2439,9 @@ public static String promptForValidPilotID(BufferedReader in) throws IOException
                 return "P" + String.format("%03d", num);
             }
         }
-        System.out.println("Invalid Pilot ID! Use format P001–P999, e.g., P010.");
+        out().println("Invalid Pilot ID! Use format P001–P999, e.g., P010.");
         if (attempt == maxTries) {
-            System.out.println("Too many invalid attempts. Logging out.");
+            out().println("Too many invalid attempts. Logging out.");
             return null;
         }
     }
@@ -1515,7 +2451,7 @@ public static String promptForValidPilotID(BufferedReader in) throws IOException
 public static String promptForValidTechnicianID(BufferedReader in) throws IOException {
     int maxTries = 5;
     for (int attempt = 1; attempt <= maxTries; attempt++) {
-        System.out.print("Technician ID (T001–T999): ");
+        out().print("Technician ID (T001–T999): ");
         String input = in.readLine().trim().toUpperCase();
         if (input.matches("T\\d{3}")) {
             int num = Integer.parseInt(input.substring(1));
@@ -1524,9 +2460,9 @@ public static String promptForValidTechnicianID(BufferedReader in) throws IOExce
                 return "T" + String.format("%03d", num);
             }
         }
-        System.out.println("Invalid Technician ID! Use format T001–T999, e.g., T101.");
+        out().println("Invalid Technician ID! Use format T001–T999, e.g., T101.");
         if (attempt == maxTries) {
-            System.out.println("Too many invalid attempts. Logging out.");
+            out().println("Too many invalid attempts. Logging out.");
             return null;
         }
     }
@@ -1536,7 +2472,7 @@ public static String promptForValidTechnicianID(BufferedReader in) throws IOExce
 public static String promptForValidFlightNumber(BufferedReader in) throws IOException {
     int maxTries = 5;
     for (int attempt = 1; attempt <= maxTries; attempt++) {
-        System.out.print("Flight Number (F100–F120): ");
+        out().print("Flight Number (F100–F120): ");
         String input = in.readLine().trim().toUpperCase();
         if (input.matches("F\\d{3}")) {
             int num = Integer.parseInt(input.substring(1));
@@ -1544,9 +2480,9 @@ public static String promptForValidFlightNumber(BufferedReader in) throws IOExce
                 return "F" + String.format("%03d", num);
             }
         }
-        System.out.println("Invalid Flight Number! Use format F100–F120, e.g., F105.");
+        out().println("Invalid Flight Number! Use format F100–F120, e.g., F105.");
         if (attempt == maxTries) {
-            System.out.println("Too many invalid attempts. Logging out.");
+            out().println("Too many invalid attempts. Logging out.");
             return null;
         }
     }
@@ -1556,14 +2492,14 @@ public static String promptForValidFlightNumber(BufferedReader in) throws IOExce
 public static String promptForValidGender(BufferedReader in) throws IOException {
     int maxTries = 5;
     for (int attempt = 1; attempt <= maxTries; attempt++) {
-        System.out.print("Gender (M/F/O): ");
+        out().print("Gender (M/F/O): ");
         String input = in.readLine().trim().toUpperCase();
         if (input.equals("M") || input.equals("F") || input.equals("O")) {
             return input;
         }
-        System.out.println("Invalid gender! Enter M, F, or O only.");
+        out().println("Invalid gender! Enter M, F, or O only.");
         if (attempt == maxTries) {
-            System.out.println("Too many invalid attempts. Logging out.");
+            out().println("Too many invalid attempts. Logging out.");
             return null;
         }
     }
@@ -1573,14 +2509,14 @@ public static String promptForValidGender(BufferedReader in) throws IOException
 public static String promptForValidPhone(BufferedReader in) throws IOException {
     int maxTries = 5;
     for (int attempt = 1; attempt <= maxTries; attempt++) {
-        System.out.print("Phone # (format: 123-456-7890): ");
+        out().print("Phone # (format: 123-456-7890): ");
         String input = in.readLine().trim();
         if (input.matches("\\d{3}-\\d{3}-\\d{4}")) {
             return input;
         }
-        System.out.println("Invalid phone number! Use format: 123-456-7890.");
+        out().println("Invalid phone number! Use format: 123-456-7890.");
         if (attempt == maxTries) {
-            System.out.println("Too many invalid attempts. Logging out.");
+            out().println("Too many invalid attempts. Logging out.");
             return null;
         }
     }
@@ -1590,14 +2526,14 @@ public static String promptForValidPhone(BufferedReader in) throws IOException {
 public static String promptForValidZip(BufferedReader in) throws IOException {
     int maxTries = 5;
     for (int attempt = 1; attempt <= maxTries; attempt++) {
-        System.out.print("Zip Code (5 digits): ");
+        out().print("Zip Code (5 digits): ");
         String input = in.readLine().trim();
         if (input.matches("\\d{5}")) {
             return input;
         }
-        System.out.println("Invalid zip code! Use exactly 5 digits, e.g., 92507.");
+        out().println("Invalid zip code! Use exactly 5 digits, e.g., 92507.");
         if (attempt == maxTries) {
-            System.out.println("Too many invalid attempts. Logging out.");
+            out().println("Too many invalid attempts. Logging out.");
             return null;
         }
     }
@@ -1607,15 +2543,15 @@ public static String promptForValidZip(BufferedReader in) throws IOException {
 public static String promptForValidAddress(BufferedReader in) throws IOException {
     int maxTries = 5;
     for (int attempt = 1; attempt <= maxTries; attempt++) {
-        System.out.print("Address: ");
+        out().print("Address: ");
         String input = in.readLine().trim();
         if (input.length() >= 5 && input.length() <= 100 &&
             input.matches("[A-Za-z0-9.,'\\- ]+")) {
             return input;
         }
-        System.out.println("Invalid address! Use letters, numbers, comma, dot, dash, and spaces. 5–100 chars.");
+        out().println("Invalid address! Use letters, numbers, comma, dot, dash, and spaces. 5–100 chars.");
         if (attempt == maxTries) {
-            System.out.println("Too many invalid attempts. Logging out.");
+            out().println("Too many invalid attempts. Logging out.");
             return null;
         }
     }
@@ -1625,14 +2561,14 @@ public static String promptForValidAddress(BufferedReader in) throws IOException
 public static String promptForValidPlaneID(BufferedReader in) throws IOException {
     int maxTries = 5;
     for (int attempt = 1; attempt <= maxTries; attempt++) {
-        System.out.print("Plane ID (e.g., PL001): ");
+        out().print("Plane ID (e.g., PL001): ");
         String input = in.readLine().trim().toUpperCase();
         if (input.matches("PL\\d{3}")) {
             return input;
         }
-        System.out.println("Invalid Plane ID! Use format PLXXX, e.g., PL001.");
+        out().println("Invalid Plane ID! Use format PLXXX, e.g., PL001.");
         if (attempt == maxTries) {
-            System.out.println("Too many invalid attempts. Logging out.");
+            out().println("Too many invalid attempts. Logging out.");
             return null;
         }
     }
@@ -1642,7 +2578,7 @@ public static String promptForValidPlaneID(BufferedReader in) throws IOException
 public static String promptForValidRepairCode(BufferedReader in) throws IOException {
     int maxTries = 5;
     for (int attempt = 1; attempt <= maxTries; attempt++) {
-        System.out.print("Repair Code (RC001–RC999): ");
+        out().print("Repair Code (RC001–RC999): ");
         String input = in.readLine().trim().toUpperCase();
         if (input.matches("RC\\d{3}")) {
             int num = Integer.parseInt(input.substring(2));
@@ -1650,9 +2586,9 @@ public static String promptForValidRepairCode(BufferedReader in) throws IOExcept
                 return "RC" + String.format("%03d", num);
             }
         }
-        System.out.println("Invalid Repair Code! Use format RCXXX, e.g., RC004.");
+        out().println("Invalid Repair Code! Use format RCXXX, e.g., RC004.");
         if (attempt == maxTries) {
-            System.out.println("Too many invalid attempts. Logging out.");
+            out().println("Too many invalid attempts. Logging out.");
             return null;
         }
     }
@@ -1662,17 +2598,17 @@ public static String promptForValidRepairCode(BufferedReader in) throws IOExcept
 public static String promptForValidReservationID(BufferedReader in) throws IOException {
     int maxTries = 5;
     for (int attempt = 1; attempt <= maxTries; attempt++) {
-        System.out.print("Reservation ID (R0001–R9999): ");
+        out().print("Reservation ID (e.g., R0008): ");
         String input = in.readLine().trim().toUpperCase();
-        if (input.matches("R\\d{4}")) {
+        if (input.matches("R\\d{4,9}")) {
             int num = Integer.parseInt(input.substring(1));
-            if (num >= 1 && num <= 9999) {
+            if (num >= 1) {
                 return String.format("R%04d", num);
             }
         }
-        System.out.println("Invalid Reservation ID! Use format R0001–R9999, e.g., R0008.");
+        out().println("Invalid Reservation ID! Use format R followed by at least four digits, e.g., R0008 or R12345.");
         if (attempt == maxTries) {
-            System.out.println("Too many invalid attempts. Logging out.");
+            out().println("Too many invalid attempts. Logging out.");
             return null;
         }
     }
@@ -1682,49 +2618,44 @@ public static String promptForValidReservationID(BufferedReader in) throws IOExc
 
 public static void FindTicketCost(AirlineManagement esql) {
     try {
-	String flightNum = promptForValidFlightNumber(in);
+	String flightNum = promptForValidFlightNumber(in());
 	if (flightNum == null) return;
 
-	String query = String.format(
-	    "SELECT TicketCost FROM FlightInstance WHERE FlightNumber = '%s' LIMIT 1",
-	    flightNum
-	);
+	String query = "SELECT TicketCost FROM FlightInstance WHERE FlightNumber = ? LIMIT 1";
 
-	List<List<String>> result = esql.executeQueryAndReturnResult(query);
+	java.math.BigDecimal cost = esql.executeQueryForObject(query, rs -> rs.getBigDecimal(1), flightNum);
 
-	if (result.isEmpty()) {
-	    System.out.println("No flight found with that flight number. Please check your input.");
+	if (cost == null) {
+	    out().println("No flight found with that flight number. Please check your input.");
 	}
 	else {
-	    System.out.println("Ticket cost for flight " + flightNum + " is: $" + result.get(0).get(0));
+	    out().println("Ticket cost for flight " + flightNum + " is: $" + cost);
 	}
     } catch (Exception e) {
-	    System.err.println("Error finding ticket cost: " + e.getMessage());
+	    err().println("Error finding ticket cost: " + e.getMessage());
     }
 }
 
 public static void FindPlaneType(AirlineManagement esql) {
     try {
-	String flightNum = promptForValidFlightNumber(in);
+	String flightNum = promptForValidFlightNumber(in());
 	if (flightNum == null) return;
 
-	String query = String.format(
+	String query =
 	    "SELECT p.Make, p.Model FROM Flight f JOIN Plane p ON f.PlaneID = p.PlaneID " +
-	    "WHERE f.FlightNumber = '%s'",
-	    flightNum
-	);
+	    "WHERE f.FlightNumber = ?";
 
-	List<List<String>> result = esql.executeQueryAndReturnResult(query);
+	List<List<String>> result = esql.executeQueryAndReturnResult(query, flightNum);
 
 	if (result.isEmpty()) {
-	    System.out.println("No airplane was found for that flight number. Please check your input.");
+	    out().println("No airplane was found for that flight number. Please check your input.");
 	}
 	else {
-	    System.out.println("Plane Make: " + result.get(0).get(0));
-	    System.out.println("Plane Model: " + result.get(0).get(1));
+	    out().println("Plane Make: " + result.get(0).get(0));
+	    out().println("Plane Model: " + result.get(0).get(1));
 	}
     } catch (Exception e) {
-	    System.err.println("Error finding plane info: " + e.getMessage());
+	    err().println("Error finding plane info: " + e.getMessage());
     }
 }
 
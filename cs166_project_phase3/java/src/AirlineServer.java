@@ -0,0 +1,115 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+/**
+ * This class serves the role-based menus to many concurrent clients over a
+ * local socket.  Each client connection is one Session run on its own thread
+ * (a virtual thread when the JVM supports them); all sessions share the
+ * AirlineManagement connection pool.  Clients read and write UTF-8.  When
+ * the JVM is stopped, e.g. with Ctrl-C or kill, the socket is closed and
+ * the pool is shut down.
+ *
+ */
+public class AirlineServer {
+
+   private final AirlineManagement _esql;
+   private final ServerSocket _socket;
+   private final ExecutorService _sessions;
+   private final AtomicInteger _active = new AtomicInteger();
+
+   /**
+    * Creates a new server listening on the loopback interface
+    *
+    * @param esql the shared database handle
+    * @param port the TCP port to listen on
+    * @throws java.io.IOException when the port cannot be bound
+    */
+   public AirlineServer(AirlineManagement esql, int port) throws IOException {
+      this._esql = esql;
+      this._socket = new ServerSocket(port, 128, InetAddress.getLoopbackAddress());
+      this._sessions = AirlineManagement.newTaskExecutor("airline-session");
+   }//end AirlineServer
+
+   /**
+    * Accepts clients until the server socket is closed.
+    */
+   public void serve() {
+      Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+         close();
+         this._esql.cleanup();
+      }, "airline-server-shutdown"));
+      System.out.println("Serving sessions on " + this._socket.getLocalSocketAddress());
+      while (!this._socket.isClosed()) {
+         final Socket client;
+         try {
+            client = this._socket.accept();
+         } catch (IOException e) {
+            if (!this._socket.isClosed())
+               System.err.println("Error accepting session: " + e.getMessage());
+            continue;
+         }
+         this._sessions.execute(() -> runSession(client));
+      }
+   }//end serve
+
+   /**
+    * Stops accepting new clients.  Sessions already running finish normally.
+    */
+   public void close() {
+      try {
+         this._socket.close();
+      } catch (IOException e) {
+         // ignored.
+      }
+      this._sessions.shutdown();
+   }//end close
+
+   /*
+    * Runs the menus for one client with the client's socket as its session
+    **/
+   private void runSession(Socket client) {
+      String who = String.valueOf(client.getRemoteSocketAddress());
+      System.out.println("Session opened: " + who + " (" + this._active.incrementAndGet() + " active)");
+      try {
+         PrintStream out = new PrintStream(new BufferedOutputStream(client.getOutputStream()), false,
+                                          StandardCharsets.UTF_8.name());
+         Session.attach(new Session(client.getInputStream(), out));
+         AirlineManagement.Greeting();
+         AirlineManagement.beforeLogin(this._esql);
+         out.println("Bye !");
+         out.flush();
+      } catch (IOException e) {
+         System.err.println("Session " + who + " failed: " + e.getMessage());
+      } finally {
+         Session.detach();
+         try {
+            client.close();
+         } catch (IOException e) {
+            // ignored.
+         }
+         System.out.println("Session closed: " + who + " (" + this._active.decrementAndGet() + " active)");
+      }
+   }//end runSession
+
+}//end AirlineServer
@@ -0,0 +1,225 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+
+/**
+ * This class writes many repair records or maintenance requests at once.
+ * Records are read as PlaneID,RepairCode,Date lines and written with JDBC
+ * batches of a configurable size, all in one transaction: either every
+ * record is stored or, when a line is invalid or a batch fails, none is.
+ * Repair batches also move Plane.LastRepairDate forward.  Records end at
+ * the end of the input or at a line holding a single '.'; when submitting
+ * fails, the rest of them is read up to there so that it isn't taken for
+ * menu input.
+ *
+ */
+public class BatchSubmitter {
+
+   static final String INSERT_REPAIR =
+      "INSERT INTO Repair (RepairID, PlaneID, RepairCode, RepairDate, TechnicianID) " +
+      "VALUES (?, ?, ?, CAST(? AS DATE), ?)";
+
+   static final String UPDATE_LAST_REPAIR =
+      "UPDATE Plane SET LastRepairDate = CAST(? AS DATE) " +
+      "WHERE PlaneID = ? AND (LastRepairDate IS NULL OR LastRepairDate < CAST(? AS DATE))";
+
+   static final String INSERT_REQUEST =
+      "INSERT INTO MaintenanceRequest (RequestID, PlaneID, RepairCode, RequestDate, PilotID) " +
+      "VALUES (?, ?, ?, CAST(? AS DATE), ?)";
+
+   // records per executeBatch, -Dairline.batch.size=<n>
+   static final int BATCH_SIZE = Integer.getInteger("airline.batch.size", 500);
+
+   // the directory record files named at the menus are read from, -Dairline.batch.dir=<dir>
+   static final File BATCH_DIR = new File(System.getProperty("airline.batch.dir", "batches"));
+
+   private final AirlineManagement _esql;
+   private final PrintStream _progress;
+
+   /**
+    * Creates a new submitter
+    *
+    * @param esql the database to write to
+    * @param progress where the latency of every batch is reported
+    */
+   public BatchSubmitter(AirlineManagement esql, PrintStream progress) {
+      this._esql = esql;
+      this._progress = progress;
+   }//end BatchSubmitter
+
+   /**
+    * Stores one repair record per line, all done by the same technician.
+    *
+    * @param technicianId the technician who did the repairs
+    * @param records lines of PlaneID,RepairCode,RepairDate
+    * @return the number of records stored
+    * @throws java.sql.SQLException when a batch failed; nothing is stored
+    * @throws IllegalArgumentException when a line is invalid; nothing is stored
+    */
+   public int submitRepairs(String technicianId, BufferedReader records) throws SQLException, IOException {
+      return submit(records, true, technicianId);
+   }
+
+   /**
+    * Stores one maintenance request per line, all made by the same pilot.
+    *
+    * @param pilotId the pilot making the requests
+    * @param records lines of PlaneID,RepairCode,RequestDate
+    * @return the number of records stored
+    * @throws java.sql.SQLException when a batch failed; nothing is stored
+    * @throws IllegalArgumentException when a line is invalid; nothing is stored
+    */
+   public int submitRequests(String pilotId, BufferedReader records) throws SQLException, IOException {
+      return submit(records, false, pilotId);
+   }
+
+   /**
+    * Resolves a file name typed by a user to a record file in BATCH_DIR.
+    * Menus reachable from --serve sessions must only read where this
+    * allows.
+    *
+    * @param name a relative path such as repairs.csv or may/repairs.csv
+    * @return the file, or null when there is no such file
+    * @throws IllegalArgumentException when the name is absolute or leaves
+    *         BATCH_DIR, through .. or a symbolic link
+    * @throws java.io.IOException when the file could not be looked up
+    */
+   public static File batchFile(String name) throws IOException {
+      Path relative = ReportExporter.relativeName(name, BATCH_DIR);
+      Path dir, file;
+      try {
+         dir = BATCH_DIR.toPath().toRealPath();
+         file = dir.resolve(relative).toRealPath();
+      } catch (NoSuchFileException e) {
+         return null;
+      }
+      if (!file.startsWith(dir) || file.equals(dir))
+         throw new IllegalArgumentException("File names must stay inside " + BATCH_DIR + ": " + name);
+      return Files.isRegularFile(file) ? file.toFile() : null;
+   }//end batchFile
+
+   private int submit(BufferedReader records, boolean repairs, String personId) throws SQLException, IOException {
+      boolean[] ended = { false };
+      try {
+         return submit(records, repairs, personId, ended);
+      } catch (SQLException | IOException | RuntimeException e) {
+         if (!ended[0])
+            skipRest(records);
+         throw e;
+      }
+   }
+
+   /*
+    * Reads and drops the records left after a failure, up to the '.' line
+    **/
+   private static void skipRest(BufferedReader records) {
+      try {
+         for (String line = records.readLine(); line != null && !line.trim().equals("."); line = records.readLine())
+            ;
+      } catch (IOException e) {
+         // the input is gone; nothing is left to take for menu input
+      }
+   }
+
+   private int submit(BufferedReader records, boolean repairs, String personId, boolean[] ended)
+         throws SQLException, IOException {
+      IOException[] readError = { null };
+      int total = this._esql.inTransaction(conn -> {
+         PreparedStatement insert = conn.prepare(repairs ? INSERT_REPAIR : INSERT_REQUEST);
+         PreparedStatement lastRepair = repairs ? conn.prepare(UPDATE_LAST_REPAIR) : null;
+         int stored = 0, pending = 0, lineNumber = 0, batches = 0;
+         long start = System.nanoTime();
+         try {
+            for (String line = records.readLine(); ; line = records.readLine()) {
+               if (line == null || line.trim().equals(".")) {
+                  ended[0] = true;
+                  break;
+               }
+               ++lineNumber;
+               line = line.trim();
+               if (line.isEmpty() || line.startsWith("#") || line.toUpperCase().startsWith("PLANEID"))
+                  continue;
+               String[] r = parse(line, lineNumber);
+               // a new ID block is reserved on this connection, never on a second one
+               int id = repairs ? this._esql.nextRepairId(conn) : this._esql.nextMaintenanceRequestId(conn);
+               AirlineManagement.bind(insert, new Object[] { Integer.valueOf(id), r[0], r[1], r[2], personId });
+               insert.addBatch();
+               if (repairs) {
+                  AirlineManagement.bind(lastRepair, new Object[] { r[2], r[0], r[2] });
+                  lastRepair.addBatch();
+               }
+               if (++pending == BATCH_SIZE) {
+                  flush(insert, lastRepair, ++batches, pending, start);
+                  stored += pending;
+                  pending = 0;
+                  start = System.nanoTime();
+               }
+            }
+            if (pending > 0) {
+               flush(insert, lastRepair, ++batches, pending, start);
+               stored += pending;
+            }
+            return stored;
+         } catch (IOException e) {
+            readError[0] = e;
+            throw new SQLException("Reading records failed: " + e.getMessage(), e);
+         } finally {
+            // the statements are cached; never leave queued rows behind
+            insert.clearBatch();
+            if (lastRepair != null)
+               lastRepair.clearBatch();
+         }
+      });
+      if (readError[0] != null)
+         throw readError[0];
+      return total;
+   }//end submit
+
+   private void flush(PreparedStatement insert, PreparedStatement lastRepair, int batch, int records,
+                      long startNanos) throws SQLException {
+      insert.executeBatch();
+      if (lastRepair != null)
+         lastRepair.executeBatch();
+      this._progress.println(String.format("Batch %d: %d records in %.1f ms", batch, records,
+                                           (System.nanoTime() - startNanos) / 1e6));
+   }
+
+   /*
+    * Checks one record line with the same rules as the interactive prompts
+    **/
+   private static String[] parse(String line, int lineNumber) {
+      String[] fields = line.split("\\s*,\\s*");
+      if (fields.length != 3)
+         throw new IllegalArgumentException("Line " + lineNumber + ": expected PlaneID,RepairCode,Date but got '" + line + "'");
+      String planeId = fields[0].toUpperCase();
+      String repairCode = fields[1].toUpperCase();
+      if (!planeId.matches("PL\\d{3}"))
+         throw new IllegalArgumentException("Line " + lineNumber + ": invalid Plane ID '" + fields[0] + "'");
+      if (!repairCode.matches("RC\\d{3}"))
+         throw new IllegalArgumentException("Line " + lineNumber + ": invalid repair code '" + fields[1] + "'");
+      if (!fields[2].matches("\\d{4}-\\d{2}-\\d{2}"))
+         throw new IllegalArgumentException("Line " + lineNumber + ": invalid date '" + fields[2] + "', use yyyy-mm-dd");
+      return new String[] { planeId, repairCode, fields[2] };
+   }//end parse
+
+}//end BatchSubmitter
@@ -0,0 +1,256 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.List;
+
+
+/**
+ * This class books seats against the FlightInstance seat inventory.  A
+ * booking is a single statement: the seat is taken with a conditional
+ * UPDATE ... WHERE SeatsSold &lt; SeatsTotal and the reservation is inserted
+ * from its result, so concurrent bookings serialize on the instance row and
+ * can never oversell.  When the flight is full the reservation is inserted
+ * as 'waitlist' instead, in the same statement.  Cancellations and capacity
+ * changes hand freed seats to the waitlist in the same transaction.
+ *
+ */
+public class BookingEngine {
+
+   /**
+    * The reservation created by a successful call to book.
+    */
+   public static final class Booking {
+      public final String reservationId;
+      public final int flightInstanceId;
+      // 'reserved' or 'waitlist'
+      public final String status;
+
+      Booking(String reservationId, int flightInstanceId, String status) {
+         this.reservationId = reservationId;
+         this.flightInstanceId = flightInstanceId;
+         this.status = status;
+      }
+
+      public boolean isConfirmed() {
+         return "reserved".equals(this.status);
+      }
+   }//end Booking
+
+   /**
+    * The result of a successful call to cancel.
+    */
+   public static final class Cancellation {
+      public final int flightInstanceId;
+      // the status the reservation had before it was cancelled
+      public final String previousStatus;
+      // waitlisted reservations that got the freed seat
+      public final List<String> promoted;
+
+      Cancellation(int flightInstanceId, String previousStatus, List<String> promoted) {
+         this.flightInstanceId = flightInstanceId;
+         this.previousStatus = previousStatus;
+         this.promoted = promoted;
+      }
+   }//end Cancellation
+
+   /*
+    * inst:   the instance being booked
+    * open:   the instance, unless it has already flown
+    * seat:   takes one seat if one is left; empty when the flight is full
+    * insert: the reservation, reserved if a seat was taken
+    **/
+   static final String BOOK =
+      "WITH inst AS (" +
+      "   SELECT FlightInstanceID FROM FlightInstance " +
+      "   WHERE FlightNumber = ? AND FlightDate = CAST(? AS DATE)), " +
+      "open AS (" +
+      "   SELECT inst.FlightInstanceID FROM inst " +
+      "   WHERE NOT EXISTS (SELECT 1 FROM Reservation r " +
+      "                     WHERE r.FlightInstanceID = inst.FlightInstanceID AND r.Status = 'flown')), " +
+      "seat AS (" +
+      "   UPDATE FlightInstance fi SET SeatsSold = fi.SeatsSold + 1 FROM open " +
+      "   WHERE fi.FlightInstanceID = open.FlightInstanceID AND fi.SeatsSold < fi.SeatsTotal " +
+      "   RETURNING fi.FlightInstanceID) " +
+      "INSERT INTO Reservation (ReservationID, CustomerID, FlightInstanceID, Status) " +
+      "SELECT ?, ?, open.FlightInstanceID, " +
+      "       CASE WHEN EXISTS (SELECT 1 FROM seat) THEN 'reserved' ELSE 'waitlist' END " +
+      "FROM open " +
+      "RETURNING FlightInstanceID, Status";
+
+   // BOOK for the partitioned schema: the reservation takes the FlightDate
+   // of its instance, which also prunes the flown check to one partition
+   static final String BOOK_PARTITIONED =
+      "WITH inst AS (" +
+      "   SELECT FlightInstanceID, FlightDate FROM FlightInstance " +
+      "   WHERE FlightNumber = ? AND FlightDate = CAST(? AS DATE)), " +
+      "open AS (" +
+      "   SELECT inst.FlightInstanceID, inst.FlightDate FROM inst " +
+      "   WHERE NOT EXISTS (SELECT 1 FROM Reservation r " +
+      "                     WHERE r.FlightInstanceID = inst.FlightInstanceID AND r.FlightDate = inst.FlightDate " +
+      "                       AND r.Status = 'flown')), " +
+      "seat AS (" +
+      "   UPDATE FlightInstance fi SET SeatsSold = fi.SeatsSold + 1 FROM open " +
+      "   WHERE fi.FlightInstanceID = open.FlightInstanceID AND fi.FlightDate = open.FlightDate " +
+      "     AND fi.SeatsSold < fi.SeatsTotal " +
+      "   RETURNING fi.FlightInstanceID) " +
+      "INSERT INTO Reservation (ReservationID, CustomerID, FlightInstanceID, Status, FlightDate) " +
+      "SELECT ?, ?, open.FlightInstanceID, " +
+      "       CASE WHEN EXISTS (SELECT 1 FROM seat) THEN 'reserved' ELSE 'waitlist' END, open.FlightDate " +
+      "FROM open " +
+      "RETURNING FlightInstanceID, Status";
+
+   static final String CANCEL =
+      "WITH old AS (" +
+      "   SELECT ReservationID, FlightInstanceID, Status FROM Reservation " +
+      "   WHERE ReservationID = ? AND CustomerID = ? AND Status IN ('reserved', 'waitlist') FOR UPDATE) " +
+      "UPDATE Reservation r SET Status = 'cancelled' FROM old " +
+      "WHERE r.ReservationID = old.ReservationID " +
+      "RETURNING old.FlightInstanceID, old.Status";
+
+   static final String RELEASE_SEAT =
+      "UPDATE FlightInstance SET SeatsSold = SeatsSold - 1 WHERE FlightInstanceID = ? AND SeatsSold > 0";
+
+   static final String LOCK_SEATS_SOLD =
+      "SELECT SeatsSold FROM FlightInstance WHERE FlightInstanceID = ? FOR UPDATE";
+
+   static final String SET_CAPACITY =
+      "UPDATE FlightInstance SET SeatsTotal = ? WHERE FlightInstanceID = ?";
+
+   private final AirlineManagement _esql;
+   private final WaitlistEngine _waitlist;
+
+   /**
+    * Creates a new booking engine
+    *
+    * @param esql the database holding the seat inventory
+    * @param waitlist receives new waitlist entries and freed seats
+    */
+   public BookingEngine(AirlineManagement esql, WaitlistEngine waitlist) {
+      this._esql = esql;
+      this._waitlist = waitlist;
+   }//end BookingEngine
+
+   /**
+    * Books one seat, or a waitlist place when the flight is full.
+    *
+    * @param customerId the customer making the reservation
+    * @param flightNumber the flight number
+    * @param flightDate the flight date as yyyy-mm-dd
+    * @return the new reservation, or null when the flight instance does not
+    *         exist or has already flown
+    * @throws java.sql.SQLException when the booking failed; nothing is changed
+    */
+   public Booking book(int customerId, String flightNumber, String flightDate) throws SQLException {
+      final String reservationId = this._esql.nextReservationId();
+      Booking booking = this._esql.executeQueryForObject(this._esql.isPartitioned() ? BOOK_PARTITIONED : BOOK,
+         rs -> new Booking(reservationId, rs.getInt(1), rs.getString(2)),
+         flightNumber, flightDate, reservationId, Integer.valueOf(customerId));
+      if (booking != null) {
+         if (!booking.isConfirmed())
+            this._waitlist.enqueue(booking.flightInstanceId, reservationId);
+         changed(booking.flightInstanceId);
+      }
+      return booking;
+   }//end book
+
+   /**
+    * Cancels a reserved or waitlisted reservation.  A freed seat is given to
+    * the oldest waitlisted reservation of the same flight in the same
+    * transaction.
+    *
+    * @param reservationId the reservation to cancel
+    * @param customerId the customer who owns it
+    * @return what was cancelled, or null when the customer has no reserved or
+    *         waitlisted reservation with that ID
+    * @throws java.sql.SQLException when the cancellation failed; nothing is changed
+    */
+   public Cancellation cancel(String reservationId, int customerId) throws SQLException {
+      final int[] instance = { -1 };
+      try {
+         Cancellation cancelled = this._esql.inTransaction(conn -> {
+            ResultSet rs = AirlineManagement.prepare(conn, CANCEL, reservationId, Integer.valueOf(customerId)).executeQuery();
+            if (!rs.next()) {
+               rs.close();
+               return null;
+            }
+            instance[0] = rs.getInt(1);
+            String previous = rs.getString(2);
+            rs.close();
+
+            List<String> promoted = Collections.emptyList();
+            if ("reserved".equals(previous)) {
+               AirlineManagement.prepare(conn, RELEASE_SEAT, instance[0]).executeUpdate();
+               promoted = this._waitlist.promote(conn, instance[0]);
+            }
+            return new Cancellation(instance[0], previous, promoted);
+         });
+         if (cancelled != null && "waitlist".equals(cancelled.previousStatus))
+            this._waitlist.remove(cancelled.flightInstanceId, reservationId);
+         return cancelled;
+      } catch (SQLException e) {
+         if (instance[0] >= 0)
+            this._waitlist.forget(instance[0]);
+         throw e;
+      } finally {
+         if (instance[0] >= 0)
+            changed(instance[0]);
+      }
+   }//end cancel
+
+   /**
+    * Changes the number of seats on a flight instance.  Seats added are given
+    * to the waitlist in the same transaction.
+    *
+    * @param flightInstanceId the instance to change
+    * @param seatsTotal the new number of seats
+    * @return the waitlisted reservations that got one of the new seats
+    * @throws java.sql.SQLException when the change failed; nothing is changed
+    * @throws IllegalArgumentException when the instance does not exist or
+    *         more seats than seatsTotal are already sold
+    */
+   public List<String> updateCapacity(int flightInstanceId, int seatsTotal) throws SQLException {
+      try {
+         return this._esql.inTransaction(conn -> {
+            ResultSet rs = AirlineManagement.prepare(conn, LOCK_SEATS_SOLD, flightInstanceId).executeQuery();
+            Integer sold = rs.next() ? Integer.valueOf(rs.getInt(1)) : null;
+            rs.close();
+            if (sold == null)
+               throw new IllegalArgumentException("No flight instance found with ID " + flightInstanceId + ".");
+            if (seatsTotal < sold)
+               throw new IllegalArgumentException("Cannot reduce capacity below the " + sold + " seats already sold.");
+
+            AirlineManagement.prepare(conn, SET_CAPACITY, seatsTotal, flightInstanceId).executeUpdate();
+            return this._waitlist.promote(conn, flightInstanceId);
+         });
+      } catch (SQLException e) {
+         this._waitlist.forget(flightInstanceId);
+         throw e;
+      } finally {
+         changed(flightInstanceId);
+      }
+   }//end updateCapacity
+
+   /*
+    * Tells the caches that read an instance's seats or reservations that
+    * it changed; called once the changing transaction has ended
+    **/
+   private void changed(int flightInstanceId) {
+      this._esql.getFlightStatsCache().touch(flightInstanceId);
+      this._esql.getManifestEngine().forget(flightInstanceId);
+      this._esql.getDayBoardCache().touch(flightInstanceId);
+   }
+
+}//end BookingEngine
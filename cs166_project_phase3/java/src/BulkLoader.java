@@ -0,0 +1,570 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+
+/**
+ * This class loads a directory of data/*.csv files into empty tables.  The
+ * tables are loaded level by level in foreign key order, the tables of one
+ * level in parallel, each on its own pooled connection.  Every file is
+ * parsed on its own thread while the previous chunk is being sent, and
+ * M/D/YY dates are rewritten to ISO dates on the way.  Rows are sent with
+ * COPY FROM STDIN through the driver's CopyManager; drivers without one get
+ * batched INSERTs instead.  The indexes of create_indexes.sql are dropped
+ * before loading and built afterwards, also when loading failed.  In the
+ * partitioned schema the
+ * partitioned tables are loaded through staging tables (see isStaged).
+ *
+ */
+public class BulkLoader {
+
+   // tables in foreign key order; tables in one level do not reference each other
+   static final String[][] LEVELS = {
+      { "Plane", "Customer", "Pilot", "Technician" },
+      { "Flight", "Repair", "MaintenanceRequest" },
+      { "Schedule", "FlightInstance" },
+      { "Reservation" }
+   };
+
+   static final List<String> DATE_COLUMNS =
+      Arrays.asList("lastrepairdate", "flightdate", "dob", "repairdate", "requestdate");
+
+   // moves the ID sequences past the loaded data, as load_data.sql does
+   static final String[] SEQUENCE_UPDATES = {
+      "SELECT setval('reservation_id_seq', COALESCE(MAX(CAST(SUBSTRING(ReservationID, 2) AS INTEGER)), 0) + 50, false) FROM Reservation",
+      "SELECT setval('customer_id_seq', COALESCE(MAX(CustomerID), 0) + 20, false) FROM Customer",
+      "SELECT setval('maintenance_request_id_seq', COALESCE(MAX(RequestID), 0) + 20, false) FROM MaintenanceRequest",
+      "SELECT setval('repair_id_seq', COALESCE(MAX(RepairID), 0) + 20, false) FROM Repair",
+      "SELECT setval('pilot_id_seq', COALESCE(MAX(CAST(SUBSTRING(PilotID, 2) AS INTEGER)), 0) + 1, false) FROM Pilot",
+      "SELECT setval('technician_id_seq', COALESCE(MAX(CAST(SUBSTRING(TechnicianID, 2) AS INTEGER)), 0) + 1, false) FROM Technician"
+   };
+
+   static final Pattern CREATE_INDEX =
+      Pattern.compile("CREATE\\s+(?:UNIQUE\\s+)?INDEX\\s+(\\w+)\\s+ON\\s+[^;]+;", Pattern.CASE_INSENSITIVE);
+
+   // characters per chunk handed from the parser to COPY, and rows per INSERT batch
+   static final int CHUNK_SIZE = 1 << 16;
+   static final int BATCH_SIZE = 1000;
+
+   private static final String END = new String("<end of data>");
+
+   private final AirlineManagement _esql;
+   private final File _dataDir;
+   private final File _indexFile;
+   private final ExecutorService _workers = AirlineManagement.newTaskExecutor("bulk-load");
+
+   /**
+    * Creates a new loader
+    *
+    * @param esql the database to load into
+    * @param dataDir the directory holding one &lt;Table&gt;.csv per table
+    * @param indexFile create_indexes.sql, or null to leave indexes alone
+    */
+   public BulkLoader(AirlineManagement esql, File dataDir, File indexFile) {
+      this._esql = esql;
+      this._dataDir = dataDir;
+      this._indexFile = indexFile;
+   }//end BulkLoader
+
+   /**
+    * Loads every table, rebuilds the indexes and moves the ID sequences past
+    * the new rows.
+    *
+    * @throws java.lang.Exception when a table is not empty or could not be
+    *         loaded; tables loaded before the failure keep their rows, and
+    *         the dropped indexes are built again.  When that fails too, the
+    *         message names the indexes that are missing.
+    */
+   public void load() throws Exception {
+      // dropped and not built again yet
+      List<String> dropped = new ArrayList<String>();
+      try {
+         long start = System.nanoTime();
+         checkEmpty();
+         List<String> indexes = readIndexes();
+         for (String create : indexes) {
+            this._esql.executeUpdate("DROP INDEX IF EXISTS " + indexName(create));
+            dropped.add(create);
+         }
+
+         long rows = 0;
+         for (String[] level : LEVELS) {
+            List<Future<Long>> loads = new ArrayList<Future<Long>>();
+            for (String table : level)
+               loads.add(this._workers.submit(() -> loadTable(table)));
+            for (Future<Long> load : loads)
+               rows += load.get();
+         }
+         report("All tables", rows, start);
+
+         long indexStart = System.nanoTime();
+         buildIndexes(dropped);
+         if (!indexes.isEmpty())
+            System.out.println(String.format("Built %d indexes in %.1f s", indexes.size(),
+                                             (System.nanoTime() - indexStart) / 1e9));
+
+         for (String update : SEQUENCE_UPDATES)
+            this._esql.executeQuery(update);
+         for (String[] level : LEVELS)
+            for (String table : level)
+               this._esql.executeUpdate("ANALYZE " + table);
+         this._esql.getRouteCache().invalidate();
+         this._esql.getFlightStatsCache().invalidate();
+         this._esql.getIdentityCache().invalidate();
+         this._esql.getManifestEngine().invalidate();
+         this._esql.getDayBoardCache().invalidate();
+         report("Import", rows, start);
+      } catch (Exception e) {
+         if (dropped.isEmpty())
+            throw e;
+         int count = dropped.size();
+         try {
+            // waits for loads of the failed level that are still running
+            buildIndexes(dropped);
+         } catch (Exception rebuild) {
+            List<String> missing = new ArrayList<String>();
+            for (String create : dropped)
+               missing.add(indexName(create));
+            IllegalStateException failed = new IllegalStateException(
+               "Import failed: " + e.getMessage() + "; the indexes " + String.join(", ", missing) +
+               " could not be built again (" + rebuild.getMessage() + ") - run create_indexes.sql", e);
+            failed.addSuppressed(rebuild);
+            throw failed;
+         }
+         System.out.println("Built the " + count + " indexes dropped for the import again");
+         throw e;
+      } finally {
+         this._workers.shutdown();
+      }
+   }//end load
+
+   /*
+    * Runs the CREATE INDEX statements in parallel and takes each one off the
+    * list once its index exists
+    **/
+   private void buildIndexes(List<String> indexes) throws Exception {
+      List<Future<String>> builds = new ArrayList<Future<String>>();
+      for (String create : indexes)
+         builds.add(this._workers.submit(() -> { this._esql.executeUpdate(create); return create; }));
+      Exception failure = null;
+      for (Future<String> build : builds) {
+         try {
+            indexes.remove(build.get());
+         } catch (ExecutionException e) {
+            if (failure == null)
+               failure = e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+         }
+      }
+      if (failure != null)
+         throw failure;
+   }//end buildIndexes
+
+   private void checkEmpty() throws SQLException {
+      for (String[] level : LEVELS)
+         for (String table : level)
+            if (this._esql.executeQuery("SELECT 1 FROM " + table + " LIMIT 1") > 0)
+               throw new IllegalStateException("Table " + table + " is not empty; run create_tables.sql first");
+   }
+
+   /*
+    * @return the CREATE INDEX statements of the index file
+    **/
+   private List<String> readIndexes() throws IOException {
+      List<String> statements = new ArrayList<String>();
+      if (this._indexFile == null)
+         return statements;
+      if (!this._indexFile.isFile()) {
+         System.out.println("No index file at " + this._indexFile + "; indexes are left as they are");
+         return statements;
+      }
+      String sql = new String(Files.readAllBytes(this._indexFile.toPath()), StandardCharsets.UTF_8);
+      Matcher m = CREATE_INDEX.matcher(sql.replaceAll("--[^\n]*", ""));
+      while (m.find())
+         statements.add(m.group().replaceAll("\\s+", " ").replaceAll(";$", ""));
+      return statements;
+   }//end readIndexes
+
+   private static String indexName(String create) {
+      Matcher m = CREATE_INDEX.matcher(create + ";");
+      m.matches();
+      return m.group(1);
+   }
+
+   /*
+    * Streams one CSV file into its table
+    * @return the number of rows loaded
+    **/
+   private long loadTable(String table) throws Exception {
+      long start = System.nanoTime();
+      File file = new File(this._dataDir, table + ".csv");
+      BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8), 1 << 16);
+      try {
+         String header = in.readLine();
+         if (header == null)
+            return 0;
+         List<String> columns = parseLine(header);
+         boolean[] isDate = new boolean[columns.size()];
+         for (int i = 0; i < isDate.length; ++i)
+            isDate[i] = DATE_COLUMNS.contains(columns.get(i).trim().toLowerCase());
+         String columnList = String.join(", ", columns);
+         boolean staged = isStaged(table, columns);
+         String target = staged ? table + "_staging" : table;
+
+         long rows = this._esql.withConnection(conn -> {
+            Object copyApi = copyApi(conn.getConnection());
+            try {
+               if (staged)
+                  execute(conn.getConnection(), "CREATE TEMP TABLE " + target + " AS SELECT " + columnList +
+                          " FROM " + table + " WITH NO DATA");
+               long loaded = copyApi != null
+                  ? copy(copyApi, target, columnList, in, isDate)
+                  : insert(conn.getConnection(), target, columnList, columns.size(), in, isDate);
+               if (staged)
+                  publish(conn.getConnection(), table, columns);
+               return loaded;
+            } catch (SQLException e) {
+               throw e;
+            } catch (Exception e) {
+               throw new SQLException("Loading " + table + " failed: " + e.getMessage(), e);
+            } finally {
+               if (staged)
+                  dropStaging(conn.getConnection(), target);
+            }
+         });
+         report(table, rows, start);
+         return rows;
+      } finally {
+         in.close();
+      }
+   }//end loadTable
+
+   /*
+    * In the partitioned schema (create_tables_partitioned.sql) FlightInstance
+    * needs the partitions of its months before its rows arrive, and
+    * Reservation rows need the FlightDate the CSV files don't have, so those
+    * two tables are copied into a temporary table first
+    **/
+   private boolean isStaged(String table, List<String> columns) throws SQLException {
+      if (!this._esql.isPartitioned())
+         return false;
+      if (table.equals("FlightInstance"))
+         return true;
+      if (table.equals("Reservation")) {
+         for (String column : columns)
+            if (column.trim().equalsIgnoreCase("FlightDate"))
+               return false;
+         return true;
+      }
+      return false;
+   }//end isStaged
+
+   /*
+    * Moves the staged rows into their partitioned table
+    **/
+   private static void publish(Connection connection, String table, List<String> columns) throws SQLException {
+      String staging = table + "_staging";
+      StringBuilder selected = new StringBuilder();
+      for (String column : columns)
+         selected.append(selected.length() == 0 ? "s." : ", s.").append(column.trim());
+      String columnList = String.join(", ", columns);
+      if (table.equals("FlightInstance")) {
+         execute(connection, "SELECT create_flight_partitions(MIN(FlightDate), MAX(FlightDate)) FROM " + staging);
+         execute(connection, "INSERT INTO FlightInstance (" + columnList + ") SELECT " + selected + " FROM " + staging + " s");
+      } else {
+         // a reservation of an unknown instance has no date; fail like the foreign key of the plain schema
+         long orphans = count(connection, "SELECT count(*) FROM " + staging + " s WHERE NOT EXISTS " +
+                              "(SELECT 1 FROM FlightInstance fi WHERE fi.FlightInstanceID = s.FlightInstanceID)");
+         if (orphans > 0)
+            throw new SQLException(orphans + " reservations refer to unknown flight instances; no reservations were loaded");
+         execute(connection, "INSERT INTO Reservation (" + columnList + ", FlightDate) " +
+                             "SELECT " + selected + ", fi.FlightDate FROM " + staging + " s " +
+                             "JOIN FlightInstance fi ON fi.FlightInstanceID = s.FlightInstanceID");
+      }
+      if (!connection.getAutoCommit())
+         connection.commit();
+   }//end publish
+
+   /* best effort: a failed load already has its own exception to report */
+   private static void dropStaging(Connection connection, String staging) {
+      try {
+         if (!connection.getAutoCommit())
+            connection.rollback();
+         execute(connection, "DROP TABLE IF EXISTS " + staging);
+      } catch (SQLException e) {
+         // the pool validates the connection before its next use
+      }
+   }
+
+   private static long count(Connection connection, String sql) throws SQLException {
+      Statement stmt = connection.createStatement();
+      try {
+         ResultSet rs = stmt.executeQuery(sql);
+         rs.next();
+         return rs.getLong(1);
+      } finally {
+         stmt.close();
+      }
+   }
+
+   private static void execute(Connection connection, String sql) throws SQLException {
+      Statement stmt = connection.createStatement();
+      try {
+         stmt.execute(sql);
+      } finally {
+         stmt.close();
+      }
+   }
+
+   /*
+    * Parses the file on a worker thread and feeds the normalized rows to
+    * COPY in chunks
+    **/
+   private long copy(Object copyApi, String table, String columnList, BufferedReader in,
+                     boolean[] isDate) throws Exception {
+      BlockingQueue<String> chunks = new ArrayBlockingQueue<String>(8);
+      long[] rows = { 0 };
+      AtomicBoolean cancelled = new AtomicBoolean();
+      Future<Object> parser = this._workers.submit(() -> {
+         StringBuilder chunk = new StringBuilder(CHUNK_SIZE + 1024);
+         try {
+            for (String line = in.readLine(); line != null; line = in.readLine()) {
+               if (line.isEmpty())
+                  continue;
+               appendRow(chunk, parseLine(line), isDate);
+               rows[0]++;
+               if (chunk.length() >= CHUNK_SIZE) {
+                  put(chunks, chunk.toString(), cancelled);
+                  chunk.setLength(0);
+               }
+            }
+            if (chunk.length() > 0)
+               put(chunks, chunk.toString(), cancelled);
+         } finally {
+            put(chunks, END, cancelled);
+         }
+         return null;
+      });
+
+      Reader queueReader = new Reader() {
+         private String _chunk = "";
+         private int _pos = 0;
+         private boolean _done = false;
+
+         public int read(char[] buf, int off, int len) throws IOException {
+            while (this._pos >= this._chunk.length()) {
+               if (this._done)
+                  return -1;
+               String next;
+               try {
+                  next = chunks.take();
+               } catch (InterruptedException e) {
+                  throw new IOException("Interrupted while loading " + table);
+               }
+               if (next == END) {
+                  this._done = true;
+                  return -1;
+               }
+               this._chunk = next;
+               this._pos = 0;
+            }
+            int n = Math.min(len, this._chunk.length() - this._pos);
+            this._chunk.getChars(this._pos, this._pos + n, buf, off);
+            this._pos += n;
+            return n;
+         }
+
+         public void close() {
+         }
+      };
+
+      String sql = "COPY " + table + " (" + columnList + ") FROM STDIN WITH (FORMAT csv)";
+      try {
+         Method copyIn = copyApi.getClass().getMethod("copyIn", String.class, Reader.class);
+         copyIn.invoke(copyApi, sql, queueReader);
+      } catch (InvocationTargetException e) {
+         Throwable cause = e.getCause();
+         if (cause instanceof SQLException)
+            throw (SQLException) cause;
+         throw new SQLException(cause.getMessage(), cause);
+      } finally {
+         // stops the parser if COPY gave up early
+         cancelled.set(true);
+         chunks.clear();
+      }
+      parser.get();
+      return rows[0];
+   }//end copy
+
+   /*
+    * Fallback for drivers without the COPY API
+    **/
+   private static long insert(Connection connection, String table, String columnList, int columnCount,
+                              BufferedReader in, boolean[] isDate) throws Exception {
+      StringBuilder sql = new StringBuilder("INSERT INTO " + table + " (" + columnList + ") VALUES (");
+      for (int i = 0; i < columnCount; ++i)
+         sql.append(i == 0 ? "?" : ", ?");
+      sql.append(")");
+
+      connection.setAutoCommit(false);
+      PreparedStatement stmt = connection.prepareStatement(sql.toString());
+      try {
+         long rows = 0;
+         for (String line = in.readLine(); line != null; line = in.readLine()) {
+            if (line.isEmpty())
+               continue;
+            List<String> fields = parseLine(line);
+            for (int i = 0; i < columnCount; ++i) {
+               String value = i < fields.size() ? fields.get(i) : null;
+               if (value != null && isDate[i])
+                  value = normalizeDate(value);
+               if (value == null)
+                  stmt.setNull(i + 1, Types.OTHER);
+               else
+                  stmt.setObject(i + 1, value, Types.OTHER);
+            }
+            stmt.addBatch();
+            if (++rows % BATCH_SIZE == 0)
+               stmt.executeBatch();
+         }
+         stmt.executeBatch();
+         connection.commit();
+         return rows;
+      } finally {
+         stmt.close();
+      }
+   }//end insert
+
+   private static void put(BlockingQueue<String> chunks, String chunk, AtomicBoolean cancelled) throws InterruptedException {
+      while (!cancelled.get())
+         if (chunks.offer(chunk, 100, TimeUnit.MILLISECONDS))
+            return;
+   }
+
+   /*
+    * @return the driver's CopyManager, or null when the driver has none
+    **/
+   private static Object copyApi(Connection connection) {
+      try {
+         return connection.getClass().getMethod("getCopyAPI").invoke(connection);
+      } catch (Exception e) {
+         return null;
+      }
+   }
+
+   /*
+    * Splits one CSV line into fields.  Quotes are removed; an empty unquoted
+    * field is null, as in COPY's CSV format.
+    **/
+   static List<String> parseLine(String line) {
+      List<String> fields = new ArrayList<String>();
+      StringBuilder field = new StringBuilder();
+      boolean quoted = false, wasQuoted = false;
+      for (int i = 0; i < line.length(); ++i) {
+         char c = line.charAt(i);
+         if (quoted) {
+            if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+               field.append('"');
+               ++i;
+            } else if (c == '"') {
+               quoted = false;
+            } else {
+               field.append(c);
+            }
+         } else if (c == '"') {
+            quoted = true;
+            wasQuoted = true;
+         } else if (c == ',') {
+            fields.add(field.length() == 0 && !wasQuoted ? null : field.toString());
+            field.setLength(0);
+            wasQuoted = false;
+         } else {
+            field.append(c);
+         }
+      }
+      fields.add(field.length() == 0 && !wasQuoted ? null : field.toString());
+      return fields;
+   }//end parseLine
+
+   private static void appendRow(StringBuilder out, List<String> fields, boolean[] isDate) {
+      for (int i = 0; i < fields.size(); ++i) {
+         if (i > 0)
+            out.append(',');
+         String value = fields.get(i);
+         if (value == null)
+            continue;
+         if (i < isDate.length && isDate[i])
+            value = normalizeDate(value);
+         if (value.isEmpty() || value.indexOf(',') >= 0 || value.indexOf('"') >= 0 ||
+             value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0)
+            out.append('"').append(value.replace("\"", "\"\"")).append('"');
+         else
+            out.append(value);
+      }
+      out.append('\n');
+   }//end appendRow
+
+   /*
+    * Rewrites M/D/YY and M/D/YYYY as YYYY-MM-DD; other values are kept
+    **/
+   static String normalizeDate(String value) {
+      int first = value.indexOf('/');
+      int second = value.indexOf('/', first + 1);
+      if (first < 0 || second < 0)
+         return value;
+      try {
+         int month = Integer.parseInt(value.substring(0, first).trim());
+         int day = Integer.parseInt(value.substring(first + 1, second).trim());
+         int year = Integer.parseInt(value.substring(second + 1).trim());
+         if (year < 100)
+            year += 2000;
+         return String.format("%04d-%02d-%02d", year, month, day);
+      } catch (NumberFormatException e) {
+         return value;
+      }
+   }//end normalizeDate
+
+   private static void report(String what, long rows, long startNanos) {
+      double seconds = (System.nanoTime() - startNanos) / 1e9;
+      System.out.println(String.format("%-20s %10d rows in %7.2f s (%.0f rows/s)", what, rows, seconds,
+                                       seconds > 0 ? rows / seconds : 0.0));
+   }
+
+}//end BulkLoader
@@ -0,0 +1,413 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+
+/**
+ * This class is a small bounded pool of physical PostgreSQL connections.
+ * Connections are validated when borrowed after sitting idle, evicted when
+ * idle for too long (down to the minimum size), and every borrow records how
+ * long the caller had to wait.
+ *
+ */
+public class ConnectionPool {
+
+   /**
+    * A physical connection owned by the pool, together with its statement
+    * cache.  Only the thread that borrowed it may use it until it is released.
+    */
+   public static class PooledConnection {
+      private final Connection _connection;
+      private final StatementCache _statements;
+      private long _lastUsed;
+      private boolean _suspect;
+
+      PooledConnection(Connection connection, int statementCacheSize) {
+         this._connection = connection;
+         this._statements = new StatementCache(connection, statementCacheSize);
+         this._lastUsed = System.currentTimeMillis();
+      }
+
+      public Connection getConnection() {
+         return this._connection;
+      }
+
+      /**
+       * @param sql the SQL template
+       * @return the cached prepared statement for this connection
+       * @throws java.sql.SQLException when the statement cannot be prepared
+       */
+      public PreparedStatement prepare(String sql) throws SQLException {
+         return this._statements.prepare(sql);
+      }
+
+      /**
+       * Flags the connection for validation before it is handed out again,
+       * e.g. after a statement on it failed.
+       */
+      public void markSuspect() {
+         this._suspect = true;
+      }
+   }//end PooledConnection
+
+   private final String _url;
+   private final String _user;
+   private final String _passwd;
+   private final int _minSize;
+   private final int _maxSize;
+   private final long _maxWaitMillis;
+   private final long _idleTimeoutMillis;
+   private final long _validateAfterMillis;
+   private final int _statementCacheSize;
+
+   // guards _idle, _total and _closed
+   private final ReentrantLock _lock = new ReentrantLock();
+   private final Condition _available = this._lock.newCondition();
+   private final ArrayDeque<PooledConnection> _idle = new ArrayDeque<PooledConnection>();
+   private final List<PooledConnection> _all = new ArrayList<PooledConnection>();
+   private int _total = 0;
+   private boolean _closed = false;
+
+   private final Thread _evictor;
+
+   // wait-time and lifecycle metrics
+   private final AtomicLong _borrows = new AtomicLong();
+   private final AtomicLong _waitNanos = new AtomicLong();
+   private final AtomicLong _maxWaitNanos = new AtomicLong();
+   private final AtomicLong _timeouts = new AtomicLong();
+   private final AtomicLong _created = new AtomicLong();
+   private final AtomicLong _destroyed = new AtomicLong();
+   private final AtomicLong _validationFailures = new AtomicLong();
+   private final AtomicLong _retiredHits = new AtomicLong();
+   private final AtomicLong _retiredMisses = new AtomicLong();
+
+   /**
+    * Creates a new pool and opens minSize connections
+    *
+    * @param url the JDBC connection URL
+    * @param user the user name used to login to the database
+    * @param passwd the user login password
+    * @param minSize the number of connections kept open even when idle
+    * @param maxSize the maximum number of open connections
+    * @param maxWaitMillis how long borrow waits for a free connection
+    * @param idleTimeoutMillis how long a connection above minSize may sit idle
+    * @param validateAfterMillis idle time after which a connection is validated on borrow
+    * @param statementCacheSize the number of prepared statements kept per connection
+    * @throws java.sql.SQLException when the initial connections cannot be opened
+    */
+   public ConnectionPool(String url, String user, String passwd, int minSize, int maxSize,
+                         long maxWaitMillis, long idleTimeoutMillis, long validateAfterMillis,
+                         int statementCacheSize) throws SQLException {
+      if (maxSize < 1 || minSize < 0 || minSize > maxSize)
+         throw new IllegalArgumentException("Invalid pool size: min=" + minSize + ", max=" + maxSize);
+      this._url = url;
+      this._user = user;
+      this._passwd = passwd;
+      this._minSize = minSize;
+      this._maxSize = maxSize;
+      this._maxWaitMillis = maxWaitMillis;
+      this._idleTimeoutMillis = idleTimeoutMillis;
+      this._validateAfterMillis = validateAfterMillis;
+      this._statementCacheSize = statementCacheSize;
+
+      for (int i = 0; i < minSize; ++i) {
+         PooledConnection conn = open();
+         this._lock.lock();
+         try {
+            this._total++;
+            this._all.add(conn);
+            this._idle.push(conn);
+         } finally {
+            this._lock.unlock();
+         }
+      }
+
+      this._evictor = new Thread(this::evictLoop, "connection-pool-evictor");
+      this._evictor.setDaemon(true);
+      this._evictor.start();
+   }//end ConnectionPool
+
+   /**
+    * Borrows a connection, opening a new one if the pool is below its maximum
+    * size or waiting up to maxWaitMillis for one to be released.
+    *
+    * @return a validated connection; it must be given back with release
+    * @throws java.sql.SQLException when no connection became available in time
+    */
+   public PooledConnection borrow() throws SQLException {
+      long start = System.nanoTime();
+      long deadline = start + TimeUnit.MILLISECONDS.toNanos(this._maxWaitMillis);
+      while (true) {
+         PooledConnection conn = null;
+         boolean create = false;
+         this._lock.lock();
+         try {
+            while (conn == null && !create) {
+               if (this._closed)
+                  throw new SQLException("Connection pool is closed");
+               if (!this._idle.isEmpty()) {
+                  conn = this._idle.pop();
+               } else if (this._total < this._maxSize) {
+                  this._total++;
+                  create = true;
+               } else {
+                  long remaining = deadline - System.nanoTime();
+                  if (remaining <= 0) {
+                     this._timeouts.incrementAndGet();
+                     throw new SQLException("Timed out after " + this._maxWaitMillis +
+                                            " ms waiting for a database connection");
+                  }
+                  try {
+                     this._available.awaitNanos(remaining);
+                  } catch (InterruptedException e) {
+                     Thread.currentThread().interrupt();
+                     throw new SQLException("Interrupted while waiting for a database connection");
+                  }
+               }
+            }
+         } finally {
+            this._lock.unlock();
+         }
+
+         if (create) {
+            try {
+               conn = open();
+            } catch (SQLException e) {
+               discard(null);
+               throw e;
+            }
+            this._lock.lock();
+            try {
+               this._all.add(conn);
+            } finally {
+               this._lock.unlock();
+            }
+         } else if (!isValid(conn)) {
+            this._validationFailures.incrementAndGet();
+            discard(conn);
+            continue;
+         }
+
+         recordWait(System.nanoTime() - start);
+         return conn;
+      }
+   }//end borrow
+
+   /**
+    * Returns a borrowed connection to the pool.  An open transaction is rolled
+    * back and auto-commit restored so the next borrower starts clean.
+    *
+    * @param conn the connection obtained from borrow
+    */
+   public void release(PooledConnection conn) {
+      try {
+         if (conn._connection.isClosed()) {
+            discard(conn);
+            return;
+         }
+         if (!conn._connection.getAutoCommit()) {
+            conn._connection.rollback();
+            conn._connection.setAutoCommit(true);
+         }
+      } catch (SQLException e) {
+         discard(conn);
+         return;
+      }
+      conn._lastUsed = System.currentTimeMillis();
+      this._lock.lock();
+      try {
+         if (this._closed) {
+            closeQuietly(conn);
+            return;
+         }
+         this._idle.push(conn);
+         this._available.signal();
+      } finally {
+         this._lock.unlock();
+      }
+   }//end release
+
+   /**
+    * Closes every idle connection and refuses further borrows.  Connections
+    * still borrowed are closed when they are released.
+    */
+   public void close() {
+      this._lock.lock();
+      try {
+         this._closed = true;
+         while (!this._idle.isEmpty())
+            closeQuietly(this._idle.pop());
+         this._available.signalAll();
+      } finally {
+         this._lock.unlock();
+      }
+      this._evictor.interrupt();
+   }//end close
+
+   public long getStatementCacheHits() {
+      long hits = this._retiredHits.get();
+      this._lock.lock();
+      try {
+         for (PooledConnection conn : this._all)
+            hits += conn._statements.getHits();
+      } finally {
+         this._lock.unlock();
+      }
+      return hits;
+   }
+
+   public long getStatementCacheMisses() {
+      long misses = this._retiredMisses.get();
+      this._lock.lock();
+      try {
+         for (PooledConnection conn : this._all)
+            misses += conn._statements.getMisses();
+      } finally {
+         this._lock.unlock();
+      }
+      return misses;
+   }
+
+   /**
+    * @return a one-line summary of pool size and borrow wait times
+    */
+   public String getStats() {
+      long borrows = this._borrows.get();
+      int total, idle;
+      this._lock.lock();
+      try {
+         total = this._total;
+         idle = this._idle.size();
+      } finally {
+         this._lock.unlock();
+      }
+      double avgWaitMs = borrows == 0 ? 0.0 : this._waitNanos.get() / 1e6 / borrows;
+      return String.format("%d open (%d idle, max %d), %d borrows, avg wait %.3f ms, max wait %.3f ms, " +
+                           "%d timeouts, %d created, %d closed, %d failed validation",
+                           total, idle, this._maxSize, borrows, avgWaitMs, this._maxWaitNanos.get() / 1e6,
+                           this._timeouts.get(), this._created.get(), this._destroyed.get(),
+                           this._validationFailures.get());
+   }//end getStats
+
+   private PooledConnection open() throws SQLException {
+      Connection connection = DriverManager.getConnection(this._url, this._user, this._passwd);
+      this._created.incrementAndGet();
+      return new PooledConnection(connection, this._statementCacheSize);
+   }
+
+   /*
+    * Validates a connection that failed a statement or sat idle for a while
+    **/
+   private boolean isValid(PooledConnection conn) {
+      long idleFor = System.currentTimeMillis() - conn._lastUsed;
+      if (!conn._suspect && idleFor < this._validateAfterMillis)
+         return true;
+      try {
+         ResultSet rs = conn.prepare("SELECT 1").executeQuery();
+         rs.close();
+         conn._suspect = false;
+         return true;
+      } catch (SQLException e) {
+         return false;
+      }
+   }//end isValid
+
+   /*
+    * Drops a connection from the pool and wakes one waiter so it can open a
+    * replacement.  A null argument only gives back a reserved slot.
+    **/
+   private void discard(PooledConnection conn) {
+      if (conn != null)
+         closeQuietly(conn);
+      this._lock.lock();
+      try {
+         if (conn != null)
+            this._all.remove(conn);
+         this._total--;
+         this._available.signal();
+      } finally {
+         this._lock.unlock();
+      }
+   }//end discard
+
+   private void closeQuietly(PooledConnection conn) {
+      this._retiredHits.addAndGet(conn._statements.getHits());
+      this._retiredMisses.addAndGet(conn._statements.getMisses());
+      conn._statements.clear();
+      try {
+         conn._connection.close();
+      } catch (SQLException e) {
+         // ignored.
+      }
+      this._destroyed.incrementAndGet();
+   }
+
+   private void recordWait(long nanos) {
+      this._borrows.incrementAndGet();
+      this._waitNanos.addAndGet(nanos);
+      long max = this._maxWaitNanos.get();
+      while (nanos > max && !this._maxWaitNanos.compareAndSet(max, nanos))
+         max = this._maxWaitNanos.get();
+   }
+
+   /*
+    * Periodically closes connections idle for longer than idleTimeoutMillis,
+    * never shrinking the pool below minSize
+    **/
+   private void evictLoop() {
+      long interval = Math.max(1000L, this._idleTimeoutMillis / 2);
+      while (true) {
+         try {
+            Thread.sleep(interval);
+         } catch (InterruptedException e) {
+            return;
+         }
+         List<PooledConnection> expired = new ArrayList<PooledConnection>();
+         long now = System.currentTimeMillis();
+         this._lock.lock();
+         try {
+            if (this._closed)
+               return;
+            // idle connections are pushed on the front, so the stalest sit at the back
+            Iterator<PooledConnection> it = this._idle.descendingIterator();
+            while (it.hasNext() && this._total > this._minSize) {
+               PooledConnection conn = it.next();
+               if (now - conn._lastUsed < this._idleTimeoutMillis)
+                  break;
+               it.remove();
+               this._all.remove(conn);
+               this._total--;
+               expired.add(conn);
+            }
+         } finally {
+            this._lock.unlock();
+         }
+         for (PooledConnection conn : expired)
+            closeQuietly(conn);
+      }
+   }//end evictLoop
+
+}//end ConnectionPool
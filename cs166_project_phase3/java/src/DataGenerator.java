@@ -0,0 +1,514 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+
+/**
+ * This class writes a synthetic data set in the format of the data/*.csv
+ * files, at a configurable multiple of their size, so load_data.sql can load
+ * it unchanged.  Every row is derived from the seed and its own ID, which
+ * makes the output identical for the same arguments however many threads
+ * are used.  Rows are streamed to part files in parallel and joined at the
+ * end, so memory use does not grow with the scale factor.
+ *
+ * Scale factor 1 gives 500 customers, 10 flights over 24 days and about
+ * 26,000 reservations; scale factor 30 gives about 25 million reservations.
+ * IDs stay within the formats the menu prompts accept, so flights, planes,
+ * pilots and technicians stop growing at 900, 999, 999 and 999, and the
+ * schedule spans at most the 730 days of 2025 and 2026.
+ *
+ */
+public class DataGenerator {
+
+   /*
+    * Writes the row with the given index (from 0) of an index-based table
+    **/
+   private interface RowWriter {
+      void write(long index, SplittableRandom random, StringBuilder line);
+   }
+
+   static final LocalDate FIRST_DAY = LocalDate.of(2025, 1, 1);
+   static final int MAX_DAYS = 730;
+
+   static final String[] CITIES = {
+      "New York", "Los Angeles", "Chicago", "Dallas", "Atlanta", "Denver", "San Francisco", "Seattle",
+      "Miami", "Boston", "Las Vegas", "Phoenix", "Houston", "Orlando", "Charlotte", "Minneapolis",
+      "Detroit", "Philadelphia", "Salt Lake City", "San Diego", "Portland", "Nashville", "Austin",
+      "Baltimore", "Tampa", "Saint Louis", "Honolulu", "Kansas City", "Cleveland", "Pittsburgh"
+   };
+   static final String[][] MODELS = {
+      { "Boeing", "737" }, { "Airbus", "A320" }, { "Embraer", "E195" }, { "Bombardier", "CRJ900" },
+      { "McDonnell Douglas", "MD-80" }, { "Boeing", "787" }, { "Airbus", "A321" }, { "Airbus", "A350" }
+   };
+   static final int[] SEATS = { 76, 120, 150, 180, 180, 220 };
+   static final String[] FIRST_NAMES = {
+      "James", "Mary", "John", "Patricia", "Robert", "Jennifer", "Michael", "Linda", "William", "Elizabeth",
+      "David", "Barbara", "Richard", "Susan", "Joseph", "Jessica", "Thomas", "Sarah", "Charles", "Karen",
+      "Daniel", "Nancy", "Matthew", "Lisa", "Anthony", "Margaret", "Mark", "Sandra", "Steven", "Ashley",
+      "Andrew", "Emily", "Kevin", "Donna", "Brian", "Michelle", "George", "Carol", "Edward", "Amanda"
+   };
+   static final String[] LAST_NAMES = {
+      "Smith", "Johnson", "Williams", "Brown", "Jones", "Garcia", "Miller", "Davis", "Rodriguez", "Martinez",
+      "Hernandez", "Lopez", "Gonzalez", "Wilson", "Anderson", "Thomas", "Taylor", "Moore", "Jackson", "Martin",
+      "Lee", "Perez", "Thompson", "White", "Harris", "Sanchez", "Clark", "Ramirez", "Lewis", "Robinson",
+      "Walker", "Young", "Allen", "King", "Wright", "Scott", "Torres", "Nguyen", "Hill", "Flores"
+   };
+   static final String[] STREETS = { "Main St", "Oak Ave", "Pine Rd", "Maple Dr", "Cedar Ln", "Lake Blvd", "Hill St" };
+   static final String[] STATES = { "CA", "NY", "TX", "FL", "WA", "IL", "GA", "CO", "MA", "AZ" };
+   static final int REPAIR_CODES = 10;
+
+   private final File _dir;
+   private final long _seed;
+   private final int _threads;
+
+   private final int _planes;
+   private final int _flights;
+   private final int _days;
+   private final int _customers;
+   private final int _pilots;
+   private final int _technicians;
+   private final long _repairs;
+   private final long _requests;
+   // flights after this day have not flown yet
+   private final int _flownDays;
+
+   // per flight: route, plane, popularity and the weekdays it flies
+   private final int[] _origin;
+   private final int[] _destination;
+   private final int[] _seats;
+   private final double[] _popularity;
+   private final boolean[][] _flies;
+
+   /**
+    * Creates a new generator
+    *
+    * @param dir the directory the CSV files are written to
+    * @param scale the multiple of the shipped data set size
+    * @param threads the number of writer threads
+    * @param seed the random seed
+    */
+   public DataGenerator(File dir, int scale, int threads, long seed) {
+      this._dir = dir;
+      this._seed = seed;
+      this._threads = threads;
+      this._planes = Math.min(5 * scale, 999);
+      this._flights = Math.min(10 * scale, 900);
+      this._days = Math.min(24 * scale, MAX_DAYS);
+      this._customers = 500 * scale;
+      this._pilots = Math.min(10 * scale, 999);
+      this._technicians = Math.min(10 * scale, 999);
+      this._repairs = (long) this._planes * this._days / 8 + 1;
+      this._requests = (long) this._planes * this._days / 6 + 1;
+      this._flownDays = this._days * 2 / 3;
+
+      this._origin = new int[this._flights];
+      this._destination = new int[this._flights];
+      this._seats = new int[this._flights];
+      this._popularity = new double[this._flights];
+      this._flies = new boolean[this._flights][7];
+      for (int f = 0; f < this._flights; ++f) {
+         SplittableRandom r = random(1, f);
+         // hub cities at the front of CITIES are picked more often
+         this._origin[f] = skewed(r, CITIES.length, 2.0);
+         do {
+            this._destination[f] = skewed(r, CITIES.length, 1.5);
+         } while (this._destination[f] == this._origin[f]);
+         this._seats[f] = SEATS[r.nextInt(SEATS.length)];
+         this._popularity[f] = 0.55 + 0.6 * Math.pow(r.nextDouble(), 0.7);
+         int daysPerWeek = 4 + r.nextInt(4);
+         while (daysPerWeek > 0) {
+            int d = r.nextInt(7);
+            if (!this._flies[f][d]) {
+               this._flies[f][d] = true;
+               daysPerWeek--;
+            }
+         }
+      }
+   }//end DataGenerator
+
+   /**
+    * Writes all ten CSV files.
+    *
+    * @throws java.lang.Exception when a file could not be written
+    */
+   public void generate() throws Exception {
+      this._dir.mkdirs();
+      ExecutorService workers = Executors.newFixedThreadPool(this._threads);
+      try {
+         writeSmallTables();
+         writeIndexed(workers, "Customer", "CustomerID,FirstName,LastName,Gender,DOB,Address,Phone,Zip",
+                      this._customers, this::customer);
+         writeIndexed(workers, "Repair", "RepairID,PlaneID,RepairCode,RepairDate,TechnicianID",
+                      this._repairs, this::repair);
+         writeIndexed(workers, "MaintenanceRequest", "RequestID,PlaneID,RepairCode,RequestDate,PilotID",
+                      this._requests, this::request);
+         writeFlightInstances(workers);
+      } finally {
+         workers.shutdown();
+      }
+   }//end generate
+
+   /*
+    * Plane, Flight, Schedule, Pilot and Technician have at most a few
+    * thousand rows and are written directly
+    **/
+   private void writeSmallTables() throws IOException {
+      try (Writer w = open(new File(this._dir, "Plane.csv"))) {
+         w.write("PlaneID,Make,Model,Year,LastRepairDate\n");
+         for (int p = 0; p < this._planes; ++p) {
+            SplittableRandom r = random(2, p);
+            String[] model = MODELS[r.nextInt(MODELS.length)];
+            w.write(planeId(p) + "," + model[0] + "," + model[1] + "," + (1995 + r.nextInt(30)) + "," +
+                    FIRST_DAY.plusDays(r.nextInt(this._days)) + "\n");
+         }
+      }
+      try (Writer w = open(new File(this._dir, "Flight.csv"))) {
+         w.write("FlightNumber,PlaneID,DepartureCity,ArrivalCity\n");
+         for (int f = 0; f < this._flights; ++f)
+            w.write(flightNumber(f) + "," + planeId(f % this._planes) + "," +
+                    CITIES[this._origin[f]] + "," + CITIES[this._destination[f]] + "\n");
+      }
+      try (Writer w = open(new File(this._dir, "Schedule.csv"))) {
+         w.write("ScheduleID,FlightNumber,DayOfWeek,DepartureTime,ArrivalTime\n");
+         int scheduleId = 0;
+         for (int f = 0; f < this._flights; ++f) {
+            SplittableRandom r = random(3, f);
+            for (int d = 0; d < 7; ++d) {
+               if (!this._flies[f][d])
+                  continue;
+               int departure = 6 * 60 + r.nextInt(16 * 4) * 15;
+               int arrival = (departure + 60 + r.nextInt(20) * 15) % (24 * 60);
+               w.write(++scheduleId + "," + flightNumber(f) + "," + dayName(d) + "," +
+                       time(departure) + "," + time(arrival) + "\n");
+            }
+         }
+      }
+      try (Writer w = open(new File(this._dir, "Pilot.csv"))) {
+         w.write("PilotID,Name\n");
+         for (int p = 0; p < this._pilots; ++p)
+            w.write(String.format("P%03d", p + 1) + "," + fullName(random(4, p)) + "\n");
+      }
+      try (Writer w = open(new File(this._dir, "Technician.csv"))) {
+         w.write("TechnicianID,Name\n");
+         for (int t = 0; t < this._technicians; ++t)
+            w.write(String.format("T%03d", t + 1) + "," + fullName(random(5, t)) + "\n");
+      }
+      System.out.println(String.format("Plane %d, Flight %d, Pilot %d, Technician %d rows",
+                                       this._planes, this._flights, this._pilots, this._technicians));
+   }//end writeSmallTables
+
+   private void customer(long index, SplittableRandom r, StringBuilder line) {
+      line.append(index + 1).append(',')
+          .append(FIRST_NAMES[r.nextInt(FIRST_NAMES.length)]).append(',')
+          .append(LAST_NAMES[r.nextInt(LAST_NAMES.length)]).append(',')
+          .append(r.nextBoolean() ? 'M' : 'F').append(',')
+          .append(LocalDate.of(1940, 1, 1).plusDays(r.nextInt(65 * 365))).append(',')
+          .append('"').append(1 + r.nextInt(9999)).append(' ').append(STREETS[r.nextInt(STREETS.length)])
+          .append(", ").append(CITIES[r.nextInt(CITIES.length)]).append(", ")
+          .append(STATES[r.nextInt(STATES.length)]).append('"').append(',')
+          .append(100 + r.nextInt(900)).append('-').append(100 + r.nextInt(900)).append('-')
+          .append(1000 + r.nextInt(9000)).append(',');
+      appendPadded(line, r.nextInt(100000), 5);
+   }
+
+   private void repair(long index, SplittableRandom r, StringBuilder line) {
+      line.append(index + 1).append(',')
+          .append(planeId(r.nextInt(this._planes))).append(',')
+          .append(String.format("RC%03d", 1 + skewed(r, REPAIR_CODES, 1.5))).append(',')
+          .append(FIRST_DAY.plusDays(r.nextInt(this._days))).append(',')
+          .append(String.format("T%03d", 1 + r.nextInt(this._technicians)));
+   }
+
+   private void request(long index, SplittableRandom r, StringBuilder line) {
+      line.append(index + 1).append(',')
+          .append(planeId(r.nextInt(this._planes))).append(',')
+          .append(String.format("RC%03d", 1 + skewed(r, REPAIR_CODES, 1.5))).append(',')
+          .append(FIRST_DAY.plusDays(r.nextInt(this._days))).append(',')
+          .append(String.format("P%03d", 1 + r.nextInt(this._pilots)));
+   }
+
+   /*
+    * Splits an index-based table into ranges written by the workers
+    **/
+   private void writeIndexed(ExecutorService workers, String table, String header, long rows,
+                             RowWriter writer) throws Exception {
+      long start = System.nanoTime();
+      int tableNo = table.hashCode();
+      int parts = Math.max(1, (int) Math.min(this._threads * 4L, rows / 10000 + 1));
+      List<Future<File[]>> done = new ArrayList<Future<File[]>>();
+      for (int p = 0; p < parts; ++p) {
+         final long from = rows * p / parts;
+         final long to = rows * (p + 1) / parts;
+         final File part = new File(this._dir, table + ".csv.part" + p);
+         done.add(workers.submit(() -> {
+            try (Writer w = open(part)) {
+               StringBuilder line = new StringBuilder(256);
+               for (long i = from; i < to; ++i) {
+                  line.setLength(0);
+                  writer.write(i, random(tableNo, i), line);
+                  w.append(line).append('\n');
+               }
+            }
+            return new File[] { part };
+         }));
+      }
+      join(table, header, done, 0);
+      report(table, rows, start);
+   }//end writeIndexed
+
+   /*
+    * Writes FlightInstance and Reservation together, by ranges of days.
+    * Instance and reservation IDs are numbered by day, so a first pass
+    * counts the instances and reservations of every day.
+    **/
+   private void writeFlightInstances(ExecutorService workers) throws Exception {
+      long start = System.nanoTime();
+      long[] firstInstance = new long[this._days + 1];
+      long[] firstReservation = new long[this._days + 1];
+      firstInstance[0] = 1;
+      firstReservation[0] = 1;
+      for (int day = 0; day < this._days; ++day) {
+         long instanceId = firstInstance[day];
+         long reservations = 0;
+         int weekday = weekday(day);
+         for (int f = 0; f < this._flights; ++f) {
+            if (!this._flies[f][weekday])
+               continue;
+            reservations += new InstancePlan(f, day, instanceId++).reservations();
+         }
+         firstInstance[day + 1] = instanceId;
+         firstReservation[day + 1] = firstReservation[day] + reservations;
+      }
+
+      int parts = Math.max(1, Math.min(this._threads * 4, this._days));
+      List<Future<File[]>> written = new ArrayList<Future<File[]>>();
+      for (int p = 0; p < parts; ++p) {
+         final int fromDay = this._days * p / parts;
+         final int toDay = this._days * (p + 1) / parts;
+         final File instancePart = new File(this._dir, "FlightInstance.csv.part" + p);
+         final File reservationPart = new File(this._dir, "Reservation.csv.part" + p);
+         written.add(workers.submit(() -> {
+            try (Writer wi = open(instancePart); Writer wr = open(reservationPart)) {
+               StringBuilder line = new StringBuilder(128);
+               for (int day = fromDay; day < toDay; ++day) {
+                  long instanceId = firstInstance[day];
+                  long reservationId = firstReservation[day];
+                  int weekday = weekday(day);
+                  for (int f = 0; f < this._flights; ++f) {
+                     if (!this._flies[f][weekday])
+                        continue;
+                     InstancePlan plan = new InstancePlan(f, day, instanceId++);
+                     plan.writeInstance(line);
+                     wi.append(line).append('\n');
+                     reservationId = plan.writeReservations(wr, line, reservationId);
+                  }
+               }
+            }
+            return new File[] { instancePart, reservationPart };
+         }));
+      }
+      join("FlightInstance", "FlightInstanceID,FlightNumber,FlightDate,DepartedOnTime,ArrivedOnTime," +
+           "SeatsTotal,SeatsSold,NumOfStops,TicketCost", written, 0);
+      join("Reservation", "ReservationID,CustomerID,FlightInstanceID,Status", written, 1);
+      report("FlightInstance", firstInstance[this._days] - 1, start);
+      report("Reservation", firstReservation[this._days] - 1, start);
+   }//end writeFlightInstances
+
+   /*
+    * The seats, demand and reservations of one flight instance.  All draws
+    * come from a generator seeded by the instance ID, so the counting pass
+    * and the writing pass see the same values.
+    **/
+   private final class InstancePlan {
+      final int flight;
+      final int day;
+      final long instanceId;
+      final SplittableRandom random;
+      final int seatsTotal;
+      final int seatsSold;
+      final int waitlisted;
+      final int cancelled;
+
+      InstancePlan(int flight, int day, long instanceId) {
+         this.flight = flight;
+         this.day = day;
+         this.instanceId = instanceId;
+         this.random = random(6, instanceId);
+         this.seatsTotal = DataGenerator.this._seats[flight];
+         // Fridays and Sundays sell better
+         int weekday = weekday(day);
+         double peak = (weekday == 4 || weekday == 6) ? 1.15 : 1.0;
+         double demand = DataGenerator.this._popularity[flight] * peak * (0.75 + 0.5 * this.random.nextDouble());
+         int wanted = (int) Math.round(this.seatsTotal * demand);
+         this.seatsSold = Math.min(wanted, this.seatsTotal);
+         this.waitlisted = Math.min(wanted - this.seatsSold, 30);
+         this.cancelled = this.random.nextInt(1 + this.seatsSold / 30);
+      }
+
+      long reservations() {
+         return this.seatsSold + this.waitlisted + this.cancelled;
+      }
+
+      void writeInstance(StringBuilder line) {
+         boolean flown = this.day < DataGenerator.this._flownDays;
+         line.setLength(0);
+         line.append(this.instanceId).append(',')
+             .append(flightNumber(this.flight)).append(',')
+             .append(FIRST_DAY.plusDays(this.day)).append(',');
+         if (flown)
+            line.append(this.random.nextInt(10) < 8 ? '1' : '0').append(',')
+                .append(this.random.nextInt(10) < 8 ? '1' : '0').append(',');
+         else
+            line.append(',').append(',');
+         int stops = this.random.nextInt(10);
+         line.append(this.seatsTotal).append(',')
+             .append(this.seatsSold).append(',')
+             .append(stops < 7 ? 0 : (stops < 9 ? 1 : 2)).append(',')
+             .append(150 + this.random.nextInt(450)).append('.').append(10 + this.random.nextInt(90));
+      }
+
+      long writeReservations(Writer w, StringBuilder line, long nextId) throws IOException {
+         String sold = this.day < DataGenerator.this._flownDays ? "flown" : "reserved";
+         nextId = writeReservations(w, line, nextId, this.seatsSold, sold);
+         nextId = writeReservations(w, line, nextId, this.waitlisted, "waitlist");
+         return writeReservations(w, line, nextId, this.cancelled, "cancelled");
+      }
+
+      private long writeReservations(Writer w, StringBuilder line, long nextId, int count, String status)
+            throws IOException {
+         for (int i = 0; i < count; ++i) {
+            line.setLength(0);
+            line.append('R');
+            appendPadded(line, nextId++, 4);
+            // frequent fliers: low customer IDs are booked far more often
+            line.append(',').append(1 + skewed(this.random, DataGenerator.this._customers, 2.5))
+                .append(',').append(this.instanceId)
+                .append(',').append(status).append('\n');
+            w.append(line);
+         }
+         return nextId;
+      }
+   }//end InstancePlan
+
+   /*
+    * Writes the header and part file number which of every task, in task
+    * order, into table.csv
+    **/
+   private void join(String table, String header, List<Future<File[]>> parts, int which) throws Exception {
+      File target = new File(this._dir, table + ".csv");
+      try (FileChannel out = FileChannel.open(target.toPath(), StandardOpenOption.CREATE,
+                                              StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+         out.write(ByteBuffer.wrap((header + "\n").getBytes(StandardCharsets.UTF_8)));
+         for (Future<File[]> done : parts) {
+            File part = done.get()[which];
+            try (FileChannel in = FileChannel.open(part.toPath(), StandardOpenOption.READ)) {
+               long size = in.size();
+               for (long pos = 0; pos < size; )
+                  pos += in.transferTo(pos, size - pos, out);
+            }
+            part.delete();
+         }
+      }
+   }//end join
+
+   private static void report(String table, long rows, long startNanos) {
+      double seconds = (System.nanoTime() - startNanos) / 1e9;
+      System.out.println(String.format("%s %d rows in %.1f s (%.0f rows/s)", table, rows, seconds,
+                                       seconds > 0 ? rows / seconds : 0.0));
+   }
+
+   private SplittableRandom random(int stream, long id) {
+      return new SplittableRandom(this._seed * 0x9E3779B97F4A7C15L + stream * 0xBF58476D1CE4E5B9L + id);
+   }
+
+   /*
+    * @return a value in [0, n) that favors small values more as skew grows
+    **/
+   private static int skewed(SplittableRandom r, int n, double skew) {
+      return Math.min(n - 1, (int) (n * Math.pow(r.nextDouble(), skew)));
+   }
+
+   private int weekday(int day) {
+      return FIRST_DAY.plusDays(day).getDayOfWeek().getValue() - 1;
+   }
+
+   private static String dayName(int weekday) {
+      String name = DayOfWeek.of(weekday + 1).name();
+      return name.charAt(0) + name.substring(1).toLowerCase();
+   }
+
+   private static String time(int minutes) {
+      return (minutes / 60) + ":" + String.format("%02d", minutes % 60);
+   }
+
+   private static String planeId(int index) {
+      return String.format("PL%03d", index + 1);
+   }
+
+   private static String flightNumber(int index) {
+      return "F" + (100 + index);
+   }
+
+   private static String fullName(SplittableRandom r) {
+      return FIRST_NAMES[r.nextInt(FIRST_NAMES.length)] + " " + LAST_NAMES[r.nextInt(LAST_NAMES.length)];
+   }
+
+   /*
+    * Appends value with leading zeros up to width digits, like %0<width>d
+    **/
+   private static void appendPadded(StringBuilder line, long value, int width) {
+      long limit = 1;
+      for (int i = 1; i < width; ++i)
+         limit *= 10;
+      for (; limit > 1 && value < limit; limit /= 10)
+         line.append('0');
+      line.append(value);
+   }
+
+   private static Writer open(File file) throws IOException {
+      return new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8), 1 << 16);
+   }
+
+   /**
+    * Usage: java DataGenerator &lt;output dir&gt; &lt;scale factor&gt; [threads] [seed]
+    */
+   public static void main(String[] args) throws Exception {
+      if (args.length < 2 || args.length > 4) {
+         System.err.println("Usage: java [-classpath <classpath>] " + DataGenerator.class.getName() +
+                            " <output dir> <scale factor> [threads] [seed]");
+         return;
+      }
+      int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+      long seed = args.length > 3 ? Long.parseLong(args[3]) : 166L;
+      new DataGenerator(new File(args[0]), Integer.parseInt(args[1]), threads, seed).generate();
+   }//end main
+
+}//end DataGenerator
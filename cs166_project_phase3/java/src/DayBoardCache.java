@@ -0,0 +1,265 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+
+/**
+ * This class keeps the day boards of ViewFlightsOfTheDay: every flight
+ * instance of a date joined with its Flight and Schedule rows, ordered by
+ * flight number and departure time.  Boards of past dates are kept in an
+ * LRU cache; today's board is kept apart and patched in place, one row at
+ * a time, when an instance on it has changed, so showing it never needs
+ * the three-way join again.  Later dates still change with every booking
+ * and are always read from the database.
+ *
+ * Writers call touch with every FlightInstanceID they changed, after their
+ * transaction ended; touching costs no query, the changed rows are read
+ * when today's board is next shown.  Changes made by other processes
+ * sharing the database aren't touched here, so a board is read again once
+ * it is older than TTL_MILLIS.  Call invalidate after changing
+ * FlightInstance, Flight or Schedule any other way.
+ *
+ */
+public class DayBoardCache {
+
+   static final String BOARD =
+      "SELECT " + ScheduledFlightRow.COLUMNS + " " +
+      "FROM " + ScheduledFlightRow.SOURCE + " " +
+      "WHERE fi.FlightDate = CAST(? AS DATE) " +
+      "ORDER BY fi.FlightNumber, s.DepartureTime";
+
+   // followed by the list of FlightInstanceIDs to read
+   static final String ROWS =
+      "SELECT " + ScheduledFlightRow.COLUMNS + " " +
+      "FROM " + ScheduledFlightRow.SOURCE + " " +
+      "WHERE fi.FlightInstanceID IN ";
+
+   // past day boards kept, -Dairline.dayboard.cache=<n>; 0 turns the cache off
+   static final int CACHE_SIZE = Integer.getInteger("airline.dayboard.cache", 64);
+
+   // how long a board is trusted before it is read again, so other processes'
+   // changes show up, -Dairline.dayboard.ttlMillis=<n>; 0 keeps it until invalidate
+   static final long TTL_MILLIS = Long.getLong("airline.dayboard.ttlMillis", 30000L);
+
+   /*
+    * The rows of one date and where each instance sits among them
+    **/
+   private static final class Board {
+      final LocalDate date;
+      final ScheduledFlightRow[] rows;
+      final Map<Integer, Integer> index = new HashMap<Integer, Integer>();
+      final long loadedAt = System.nanoTime();
+
+      Board(LocalDate date, List<ScheduledFlightRow> rows) {
+         this.date = date;
+         this.rows = rows.toArray(new ScheduledFlightRow[0]);
+         for (int i = 0; i < this.rows.length; ++i)
+            this.index.put(this.rows[i].flightInstanceId, i);
+      }
+
+      List<ScheduledFlightRow> rows() {
+         return Collections.unmodifiableList(Arrays.asList(this.rows.clone()));
+      }
+
+      boolean expired() {
+         return TTL_MILLIS > 0 && System.nanoTime() - this.loadedAt > TTL_MILLIS * 1000000L;
+      }
+   }//end Board
+
+   private final AirlineManagement _esql;
+
+   // guards _past, _today, _stale and _generation
+   private final Object _lock = new Object();
+   // serializes patches of today's board, so a slower read never undoes a newer one
+   private final Object _patchLock = new Object();
+
+   // bumped by every change, so a board read before it is never cached after it
+   private long _generation = 0;
+
+   private Board _today;
+
+   // instances on today's board changed since their row was read
+   private final Set<Integer> _stale = new HashSet<Integer>();
+
+   // date -> board of a past date, least recently used first
+   private final LinkedHashMap<LocalDate, Board> _past = new LinkedHashMap<LocalDate, Board>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<LocalDate, Board> eldest) {
+         return size() > CACHE_SIZE;
+      }
+   };
+
+   /**
+    * Creates a new day board cache with no boards loaded
+    *
+    * @param esql the database holding the flight instances
+    */
+   public DayBoardCache(AirlineManagement esql) {
+      this._esql = esql;
+   }//end DayBoardCache
+
+   /**
+    * @param date the flight date
+    * @return the instances of that date joined with Flight and Schedule,
+    *         ordered by flight number and departure time
+    * @throws java.sql.SQLException when the board could not be read
+    */
+   public List<ScheduledFlightRow> board(LocalDate date) throws SQLException {
+      LocalDate today = LocalDate.now();
+      if (date.equals(today)) {
+         List<ScheduledFlightRow> patched = patchToday(today);
+         if (patched != null)
+            return patched;
+      }
+
+      long generation;
+      synchronized (this._lock) {
+         rollOver(today);
+         Board cached = this._past.get(date);
+         if (cached != null && !cached.expired())
+            return cached.rows();
+         generation = this._generation;
+      }
+
+      List<ScheduledFlightRow> rows = this._esql.executeQueryForList(BOARD, ScheduledFlightRow.MAPPER, date.toString());
+      if (date.isAfter(today))
+         return Collections.unmodifiableList(rows);
+
+      Board board = new Board(date, rows);
+      synchronized (this._lock) {
+         if (generation == this._generation) {
+            if (date.equals(today)) {
+               // every change touched so far is in the rows just read
+               this._today = board;
+               this._stale.clear();
+            } else if (CACHE_SIZE > 0) {
+               this._past.put(date, board);
+            }
+         }
+      }
+      return board.rows();
+   }//end board
+
+   /**
+    * Records that an instance changed: a past board holding it is dropped,
+    * and its row on today's board is read again before the board is next
+    * shown.  Call after the changing transaction has ended.
+    */
+   public void touch(int flightInstanceId) {
+      synchronized (this._lock) {
+         ++this._generation;
+         Iterator<Board> it = this._past.values().iterator();
+         while (it.hasNext())
+            if (it.next().index.containsKey(flightInstanceId))
+               it.remove();
+         if (this._today != null && this._today.index.containsKey(flightInstanceId))
+            this._stale.add(flightInstanceId);
+      }
+   }//end touch
+
+   /**
+    * Drops every board.
+    */
+   public void invalidate() {
+      synchronized (this._lock) {
+         ++this._generation;
+         this._today = null;
+         this._stale.clear();
+         this._past.clear();
+      }
+   }
+
+   /*
+    * Today's board with its stale rows read again, or null when it has to
+    * be read whole: not loaded, expired, or a changed instance no longer
+    * fits its place on it.
+    **/
+   private List<ScheduledFlightRow> patchToday(LocalDate today) {
+      synchronized (this._patchLock) {
+         Board board;
+         List<Integer> ids;
+         synchronized (this._lock) {
+            rollOver(today);
+            board = this._today;
+            if (board == null || board.expired())
+               return null;
+            if (this._stale.isEmpty())
+               return board.rows();
+            ids = new ArrayList<Integer>(this._stale);
+            this._stale.clear();
+         }
+
+         String[] marks = new String[ids.size()];
+         Arrays.fill(marks, "?");
+         List<ScheduledFlightRow> rows;
+         try {
+            rows = this._esql.executeQueryForList(ROWS + "(" + String.join(", ", marks) + ")",
+                                                  ScheduledFlightRow.MAPPER, ids.toArray());
+         } catch (SQLException e) {
+            // the board is read whole instead, which reports the failure
+            return drop(board);
+         }
+
+         synchronized (this._lock) {
+            if (this._today != board)
+               return null;
+            Set<Integer> missing = new HashSet<Integer>(ids);
+            for (ScheduledFlightRow row : rows) {
+               missing.remove(row.flightInstanceId);
+               if (row.flightDate == null || !board.date.equals(row.flightDate.toLocalDate()))
+                  // moved to another date; the positions no longer hold
+                  return drop(board);
+               board.rows[board.index.get(row.flightInstanceId)] = row;
+            }
+            // deleted, or its Flight or Schedule row is gone
+            if (!missing.isEmpty())
+               return drop(board);
+            return board.rows();
+         }
+      }
+   }//end patchToday
+
+   private List<ScheduledFlightRow> drop(Board board) {
+      synchronized (this._lock) {
+         if (this._today == board) {
+            this._today = null;
+            this._stale.clear();
+         }
+      }
+      return null;
+   }
+
+   /* keeps yesterday's board with the past ones once the day rolled over */
+   private void rollOver(LocalDate today) {
+      if (this._today == null || this._today.date.equals(today))
+         return;
+      // yesterday's board no longer changes, unless it missed a patch
+      if (CACHE_SIZE > 0 && this._stale.isEmpty())
+         this._past.put(this._today.date, this._today);
+      this._today = null;
+      this._stale.clear();
+   }
+
+}//end DayBoardCache
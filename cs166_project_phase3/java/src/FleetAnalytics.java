@@ -0,0 +1,413 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.io.PrintStream;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Supplier;
+
+
+/**
+ * This class computes the fleet maintenance dashboard: repairs per plane
+ * per month, technician workload and the time from a MaintenanceRequest to
+ * the Repair that fixed it.  Repair and MaintenanceRequest are each
+ * streamed once, at the same time, into compact columns of dictionary
+ * codes; the aggregation is then split into fork/join tasks whose partial
+ * counts are summed, so it uses every core the common pool has.
+ *
+ * A request is matched to the first repair of the same plane and repair
+ * code on or after the request date.
+ *
+ */
+public class FleetAnalytics {
+
+   static final String REPAIRS =
+      "SELECT PlaneID, RepairCode, RepairDate, TechnicianID FROM Repair " +
+      "WHERE PlaneID IS NOT NULL AND RepairCode IS NOT NULL AND RepairDate IS NOT NULL";
+
+   static final String REQUESTS =
+      "SELECT PlaneID, RepairCode, RequestDate FROM MaintenanceRequest " +
+      "WHERE PlaneID IS NOT NULL AND RepairCode IS NOT NULL AND RequestDate IS NOT NULL";
+
+   // rows per fork/join leaf
+   static final int LEAF_SIZE = 1 << 16;
+
+   // rows of each dashboard table
+   static final int TOP = Integer.getInteger("airline.analytics.top", 20);
+   // month columns of the per plane table
+   static final int MONTHS = 12;
+   // request-to-repair waits are counted per day up to this many days
+   static final int MAX_WAIT_DAYS = 366;
+
+   /*
+    * String -> dense int code, safe to fill from both streams at once
+    **/
+   private static final class Dictionary {
+      final ConcurrentHashMap<String, Integer> codes = new ConcurrentHashMap<String, Integer>();
+      final List<String> names = new ArrayList<String>();
+
+      int code(String name) {
+         Integer code = this.codes.get(name);
+         if (code != null)
+            return code;
+         synchronized (this) {
+            code = this.codes.get(name);
+            if (code == null) {
+               code = this.names.size();
+               this.names.add(name);
+               this.codes.put(name, code);
+            }
+            return code;
+         }
+      }
+
+      int size() {
+         return this.names.size();
+      }
+
+      String name(int code) {
+         return this.names.get(code);
+      }
+   }//end Dictionary
+
+   /*
+    * A growable column of ints
+    **/
+   private static final class IntColumn {
+      int[] values = new int[1024];
+      int size = 0;
+
+      void add(int value) {
+         if (this.size == this.values.length)
+            this.values = Arrays.copyOf(this.values, this.values.length + (this.values.length >> 1));
+         this.values[this.size++] = value;
+      }
+   }
+
+   /*
+    * Partial counts of one range of rows; added together going up the tree
+    **/
+   private static final class Totals {
+      final long[] planeMonth;     // plane * months + month
+      final long[] technician;
+      final long[] codeRequests;
+      final long[] codeMatched;
+      final long[] codeWaitDays;
+      final long[] waitHistogram;  // matched requests per whole day waited
+
+      Totals(int planeMonths, int technicians, int codes) {
+         this.planeMonth = new long[planeMonths];
+         this.technician = new long[technicians];
+         this.codeRequests = new long[codes];
+         this.codeMatched = new long[codes];
+         this.codeWaitDays = new long[codes];
+         this.waitHistogram = new long[MAX_WAIT_DAYS + 1];
+      }
+
+      Totals add(Totals other) {
+         add(this.planeMonth, other.planeMonth);
+         add(this.technician, other.technician);
+         add(this.codeRequests, other.codeRequests);
+         add(this.codeMatched, other.codeMatched);
+         add(this.codeWaitDays, other.codeWaitDays);
+         add(this.waitHistogram, other.waitHistogram);
+         return this;
+      }
+
+      private static void add(long[] into, long[] from) {
+         for (int i = 0; i < into.length; ++i)
+            into[i] += from[i];
+      }
+   }//end Totals
+
+   private final AirlineManagement _esql;
+
+   private final Dictionary _planes = new Dictionary();
+   private final Dictionary _codes = new Dictionary();
+   private final Dictionary _technicians = new Dictionary();
+
+   // one entry per repair
+   private final IntColumn _repairPlane = new IntColumn();
+   private final IntColumn _repairCode = new IntColumn();
+   private final IntColumn _repairDay = new IntColumn();
+   private final IntColumn _repairTechnician = new IntColumn();   // -1 when unknown
+
+   // one entry per request
+   private final IntColumn _requestPlane = new IntColumn();
+   private final IntColumn _requestCode = new IntColumn();
+   private final IntColumn _requestDay = new IntColumn();
+
+   private int _firstDay = Integer.MAX_VALUE;
+   private int _lastDay = Integer.MIN_VALUE;
+
+   /**
+    * Creates a new dashboard over the current tables; call run once.
+    *
+    * @param esql the database holding Repair and MaintenanceRequest
+    */
+   public FleetAnalytics(AirlineManagement esql) {
+      this._esql = esql;
+   }//end FleetAnalytics
+
+   /**
+    * Reads both tables, aggregates them and prints the dashboard.
+    *
+    * @param out where the dashboard is printed
+    * @throws java.sql.SQLException when a table could not be read
+    */
+   public void run(PrintStream out) throws SQLException {
+      long start = System.nanoTime();
+      // each handler runs on its own query thread; only the dictionaries are shared
+      CompletableFuture<Integer> repairs = this._esql.executeQueryStreamingAsync(REPAIRS, (rs, row) -> {
+         int day = (int) rs.getDate(3).toLocalDate().toEpochDay();
+         String technician = rs.getString(4);
+         this._repairPlane.add(this._planes.code(rs.getString(1)));
+         this._repairCode.add(this._codes.code(rs.getString(2)));
+         this._repairDay.add(day);
+         this._repairTechnician.add(technician == null ? -1 : this._technicians.code(technician));
+      });
+      CompletableFuture<Integer> requests = this._esql.executeQueryStreamingAsync(REQUESTS, (rs, row) -> {
+         int day = (int) rs.getDate(3).toLocalDate().toEpochDay();
+         this._requestPlane.add(this._planes.code(rs.getString(1)));
+         this._requestCode.add(this._codes.code(rs.getString(2)));
+         this._requestDay.add(day);
+      });
+      AirlineManagement.await(repairs);
+      AirlineManagement.await(requests);
+      long loaded = System.nanoTime();
+
+      Totals totals = aggregate();
+      print(out, totals, (loaded - start) / 1e6, (System.nanoTime() - loaded) / 1e6);
+   }//end run
+
+   /*
+    * Fork/join over both tables: repairs are counted per plane-month and
+    * technician, requests are matched against repairs sorted by
+    * (plane, code, day)
+    **/
+   private Totals aggregate() {
+      int repairs = this._repairPlane.size;
+      int requests = this._requestPlane.size;
+      for (int i = 0; i < repairs; ++i) {
+         this._firstDay = Math.min(this._firstDay, this._repairDay.values[i]);
+         this._lastDay = Math.max(this._lastDay, this._repairDay.values[i]);
+      }
+
+      // month index of every day in the repair range
+      int[] monthOfDay = new int[repairs == 0 ? 0 : this._lastDay - this._firstDay + 1];
+      int months = 0;
+      if (repairs > 0) {
+         YearMonth first = YearMonth.from(LocalDate.ofEpochDay(this._firstDay));
+         for (int d = 0; d < monthOfDay.length; ++d)
+            monthOfDay[d] = (int) first.until(YearMonth.from(LocalDate.ofEpochDay(this._firstDay + d)), ChronoUnit.MONTHS);
+         months = monthOfDay.length == 0 ? 0 : monthOfDay[monthOfDay.length - 1] + 1;
+      }
+      final int monthCount = months;
+
+      // (plane, code, day) packed so that sorting the longs sorts by all three
+      int codes = this._codes.size();
+      long[] sortedRepairs = new long[repairs];
+      for (int i = 0; i < repairs; ++i)
+         sortedRepairs[i] = pack(this._repairPlane.values[i], this._repairCode.values[i], codes, this._repairDay.values[i]);
+      Arrays.parallelSort(sortedRepairs);
+
+      int planeMonths = this._planes.size() * monthCount;
+      int technicians = this._technicians.size();
+      final int[] repairPlane = this._repairPlane.values, repairDay = this._repairDay.values, repairTech = this._repairTechnician.values;
+      final int[] requestPlane = this._requestPlane.values, requestCode = this._requestCode.values, requestDay = this._requestDay.values;
+      final int firstDay = this._firstDay;
+
+      Supplier<Totals> empty = () -> new Totals(planeMonths, technicians, codes);
+      Range repairTask = new Range(0, repairs, empty, (t, from, to) -> {
+         for (int i = from; i < to; ++i) {
+            t.planeMonth[repairPlane[i] * monthCount + monthOfDay[repairDay[i] - firstDay]]++;
+            if (repairTech[i] >= 0)
+               t.technician[repairTech[i]]++;
+         }
+      });
+      Range requestTask = new Range(0, requests, empty, (t, from, to) -> {
+         for (int i = from; i < to; ++i) {
+            int code = requestCode[i];
+            t.codeRequests[code]++;
+            long wanted = pack(requestPlane[i], code, codes, requestDay[i]);
+            int at = Arrays.binarySearch(sortedRepairs, wanted);
+            if (at < 0)
+               at = -at - 1;
+            // the first repair of the same plane and code on or after the request
+            if (at < sortedRepairs.length && (sortedRepairs[at] >>> 32) == (wanted >>> 32)) {
+               int waited = (int) sortedRepairs[at] - (int) wanted;
+               t.codeMatched[code]++;
+               t.codeWaitDays[code] += waited;
+               t.waitHistogram[Math.min(waited, MAX_WAIT_DAYS)]++;
+            }
+         }
+      });
+      ForkJoinPool pool = ForkJoinPool.commonPool();
+      return pool.invoke(repairTask).add(pool.invoke(requestTask));
+   }//end aggregate
+
+   /*
+    * The work on one slice of rows
+    **/
+   private interface Leaf {
+      void run(Totals t, int from, int to);
+   }
+
+   /*
+    * Splits [from, to) in halves down to LEAF_SIZE rows and sums the leaves
+    **/
+   private static final class Range extends RecursiveTask<Totals> {
+      private static final long serialVersionUID = 1L;
+
+      final int from;
+      final int to;
+      final Supplier<Totals> empty;
+      final Leaf leaf;
+
+      Range(int from, int to, Supplier<Totals> empty, Leaf leaf) {
+         this.from = from;
+         this.to = to;
+         this.empty = empty;
+         this.leaf = leaf;
+      }
+
+      @Override
+      protected Totals compute() {
+         if (this.to - this.from <= LEAF_SIZE) {
+            Totals t = this.empty.get();
+            this.leaf.run(t, this.from, this.to);
+            return t;
+         }
+         int mid = (this.from + this.to) >>> 1;
+         Range left = new Range(this.from, mid, this.empty, this.leaf);
+         left.fork();
+         Totals right = new Range(mid, this.to, this.empty, this.leaf).compute();
+         return left.join().add(right);
+      }
+   }//end Range
+
+   /* plane and code in the high word, the day (offset so it sorts unsigned) in the low word */
+   private static long pack(int plane, int code, int codes, int day) {
+      long key = (long) plane * codes + code;
+      return (key << 32) | ((day - (long) Integer.MIN_VALUE) & 0xffffffffL);
+   }
+
+   private void print(PrintStream out, Totals t, double loadMillis, double aggregateMillis) {
+      int repairs = this._repairPlane.size;
+      int requests = this._requestPlane.size;
+      long matched = 0, waitDays = 0;
+      for (int c = 0; c < t.codeMatched.length; ++c) {
+         matched += t.codeMatched[c];
+         waitDays += t.codeWaitDays[c];
+      }
+
+      TableRenderer summary = new TableRenderer(out, "Metric", "Value");
+      summary.note("FLEET MAINTENANCE DASHBOARD");
+      summary.row("Repairs", repairs);
+      summary.row("Maintenance requests", requests);
+      summary.row("Requests matched to a repair", matched);
+      summary.row("Requests still open", requests - matched);
+      summary.row("Mean days request -> repair", matched == 0 ? "-" : String.format("%.1f", (double) waitDays / matched));
+      summary.row("Median days request -> repair", matched == 0 ? "-" : String.valueOf(median(t.waitHistogram, matched)));
+      summary.row("Planes / technicians / codes", this._planes.size() + " / " + this._technicians.size() + " / " + this._codes.size());
+      summary.row("Read / aggregate ms", String.format("%.0f / %.0f", loadMillis, aggregateMillis));
+      summary.finish();
+
+      printPlaneMonths(out, t);
+      printTechnicians(out, t, repairs);
+      printCodes(out, t);
+   }//end print
+
+   private void printPlaneMonths(PrintStream out, Totals t) {
+      int planes = this._planes.size();
+      if (planes == 0 || t.planeMonth.length == 0)
+         return;
+      int months = t.planeMonth.length / planes;
+      int firstShown = Math.max(0, months - MONTHS);
+      YearMonth first = YearMonth.from(LocalDate.ofEpochDay(this._firstDay));
+
+      String[] columns = new String[2 + months - firstShown];
+      columns[0] = "Plane";
+      columns[1] = "Total";
+      for (int m = firstShown; m < months; ++m)
+         columns[2 + m - firstShown] = first.plusMonths(m).toString();
+
+      long[] totals = new long[planes];
+      List<Integer> order = new ArrayList<Integer>();
+      for (int p = 0; p < planes; ++p) {
+         for (int m = 0; m < months; ++m)
+            totals[p] += t.planeMonth[p * months + m];
+         order.add(p);
+      }
+      Collections.sort(order, (a, b) -> Long.compare(totals[b], totals[a]));
+
+      TableRenderer table = new TableRenderer(out, columns);
+      table.note("\nRepairs per plane per month (top " + Math.min(TOP, planes) + " planes):");
+      for (int p : order.subList(0, Math.min(TOP, planes))) {
+         Object[] row = new Object[columns.length];
+         row[0] = this._planes.name(p);
+         row[1] = totals[p];
+         for (int m = firstShown; m < months; ++m)
+            row[2 + m - firstShown] = t.planeMonth[p * months + m];
+         table.row(row);
+      }
+      table.finish();
+   }//end printPlaneMonths
+
+   private void printTechnicians(PrintStream out, Totals t, int repairs) {
+      List<Integer> order = new ArrayList<Integer>();
+      for (int i = 0; i < t.technician.length; ++i)
+         order.add(i);
+      Collections.sort(order, (a, b) -> Long.compare(t.technician[b], t.technician[a]));
+
+      TableRenderer table = new TableRenderer(out, "TechnicianID", "Repairs", "Share");
+      table.note("\nTechnician workload (top " + Math.min(TOP, order.size()) + "):");
+      for (int i : order.subList(0, Math.min(TOP, order.size())))
+         table.row(this._technicians.name(i), t.technician[i],
+                   String.format("%.1f%%", repairs == 0 ? 0.0 : 100.0 * t.technician[i] / repairs));
+      table.finish("No repairs recorded.");
+   }//end printTechnicians
+
+   private void printCodes(PrintStream out, Totals t) {
+      TableRenderer table = new TableRenderer(out, "RepairCode", "Requests", "Matched", "Mean days");
+      table.note("\nRequest to repair time by repair code:");
+      for (int c = 0; c < this._codes.size(); ++c) {
+         if (t.codeRequests[c] == 0)
+            continue;
+         table.row(this._codes.name(c), t.codeRequests[c], t.codeMatched[c],
+                   t.codeMatched[c] == 0 ? "-" : String.format("%.1f", (double) t.codeWaitDays[c] / t.codeMatched[c]));
+      }
+      table.finish("No maintenance requests recorded.");
+   }//end printCodes
+
+   private static int median(long[] histogram, long count) {
+      long seen = 0;
+      for (int d = 0; d < histogram.length; ++d) {
+         seen += histogram[d];
+         if (seen * 2 >= count)
+            return d;
+      }
+      return histogram.length - 1;
+   }
+
+}//end FleetAnalytics
@@ -0,0 +1,71 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+
+/**
+ * One FlightInstance row read with typed getters.  Select COLUMNS (table
+ * alias fi) and map the result with MAPPER.
+ *
+ */
+public final class FlightInstanceRow {
+
+   public static final String COLUMNS =
+      "fi.FlightInstanceID, fi.FlightNumber, fi.FlightDate, fi.DepartedOnTime, fi.ArrivedOnTime, " +
+      "fi.SeatsTotal, fi.SeatsSold, fi.NumOfStops, fi.TicketCost";
+
+   public static final AirlineManagement.RowMapper<FlightInstanceRow> MAPPER = rs -> new FlightInstanceRow(rs, 1);
+
+   public final int flightInstanceId;
+   public final String flightNumber;
+   public final Date flightDate;
+   // null until the flight has departed / arrived
+   public final Boolean departedOnTime;
+   public final Boolean arrivedOnTime;
+   public final int seatsTotal;
+   public final int seatsSold;
+   public final int numOfStops;
+   public final BigDecimal ticketCost;
+
+   /**
+    * Reads the COLUMNS of the current row, starting at column index first
+    */
+   FlightInstanceRow(ResultSet rs, int first) throws SQLException {
+      this.flightInstanceId = rs.getInt(first);
+      this.flightNumber = rs.getString(first + 1);
+      this.flightDate = rs.getDate(first + 2);
+      this.departedOnTime = getBoolean(rs, first + 3);
+      this.arrivedOnTime = getBoolean(rs, first + 4);
+      this.seatsTotal = rs.getInt(first + 5);
+      this.seatsSold = rs.getInt(first + 6);
+      this.numOfStops = rs.getInt(first + 7);
+      this.ticketCost = rs.getBigDecimal(first + 8);
+   }
+
+   public int seatsAvailable() {
+      return this.seatsTotal - this.seatsSold;
+   }
+
+   /**
+    * @return the column as TRUE, FALSE or null without allocating
+    */
+   static Boolean getBoolean(ResultSet rs, int column) throws SQLException {
+      boolean value = rs.getBoolean(column);
+      return rs.wasNull() ? null : Boolean.valueOf(value);
+   }
+
+}//end FlightInstanceRow
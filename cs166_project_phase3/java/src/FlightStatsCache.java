@@ -0,0 +1,482 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+
+/**
+ * This class answers the FlightStatsRow report and per-instance seat counts
+ * from memory.  The instances of a flight are loaded once, sorted by date,
+ * into a Fenwick tree of (departed on time, arrived on time, sold, unsold),
+ * so a date range costs two prefix sums instead of a scan of FlightInstance.
+ *
+ * Writers call touch with every FlightInstanceID they changed, after their
+ * transaction ended.  Touched instances are re-read, with one indexed query,
+ * before the next answer about their flight, so answers equal the SQL
+ * queries for every change made through this program.  Changes made by
+ * other processes sharing the database aren't touched here; an instance is
+ * therefore trusted for TTL_MILLIS after it was read, and a question about
+ * a date range holding an older one re-reads the instances of that range
+ * only.  Call invalidate after changing FlightInstance any other way.
+ *
+ * Each flight is loaded and answered under its own lock, so sessions asking
+ * about different flights never wait for each other's round trips.  Touched
+ * and expired instances are read with a FlightDate range, which lets a
+ * partitioned FlightInstance skip the months that can't hold them.
+ *
+ */
+public class FlightStatsCache {
+
+   /**
+    * The seat counts of one flight instance.
+    */
+   public static final class InstanceSeats {
+      public final int flightInstanceId;
+      public final int seatsTotal;
+      public final int seatsSold;
+
+      InstanceSeats(int flightInstanceId, int seatsTotal, int seatsSold) {
+         this.flightInstanceId = flightInstanceId;
+         this.seatsTotal = seatsTotal;
+         this.seatsSold = seatsSold;
+      }
+
+      public int seatsAvailable() {
+         return this.seatsTotal - this.seatsSold;
+      }
+   }//end InstanceSeats
+
+   // the values the SQL aggregates see: NULLs count as 0 like COUNT/SUM do
+   static final String COLUMNS =
+      "FlightInstanceID, FlightNumber, FlightDate, " +
+      "CASE WHEN DepartedOnTime THEN 1 ELSE 0 END, CASE WHEN ArrivedOnTime THEN 1 ELSE 0 END, " +
+      "COALESCE(SeatsSold, 0), COALESCE(SeatsTotal - SeatsSold, 0), COALESCE(SeatsTotal, 0)";
+
+   static final String LOAD_FLIGHT =
+      "SELECT " + COLUMNS + " FROM FlightInstance " +
+      "WHERE FlightNumber = ? AND FlightDate IS NOT NULL " +
+      "ORDER BY FlightDate, FlightInstanceID";
+
+   static final String LOAD_RANGE =
+      "SELECT " + COLUMNS + " FROM FlightInstance " +
+      "WHERE FlightNumber = ? AND FlightDate BETWEEN CAST(? AS DATE) AND CAST(? AS DATE) " +
+      "ORDER BY FlightDate, FlightInstanceID";
+
+   // touched instances re-read per round trip
+   static final int REFRESH_CHUNK = 500;
+
+   // how long a read instance is trusted before its date range is read
+   // again, so other processes' changes show up,
+   // -Dairline.stats.ttlMillis=<n>; 0 keeps it until invalidate
+   static final long TTL_MILLIS = Long.getLong("airline.stats.ttlMillis", 5000L);
+
+   // touches kept for loads in progress before old ones are dropped
+   static final int UNPLACED_LIMIT = 4096;
+
+   // counters kept per instance, in tree order
+   private static final int DEPARTED = 0, ARRIVED = 1, SOLD = 2, UNSOLD = 3, COUNTERS = 4;
+
+   /*
+    * One instance as read by COLUMNS
+    **/
+   private static final class Instance {
+      final int id;
+      final String flightNumber;
+      final long day;
+      final long[] counters;
+      final int seatsTotal;
+      final long readAt;
+
+      Instance(int id, String flightNumber, long day, long[] counters, int seatsTotal, long readAt) {
+         this.id = id;
+         this.flightNumber = flightNumber;
+         this.day = day;
+         this.counters = counters;
+         this.seatsTotal = seatsTotal;
+         this.readAt = readAt;
+      }
+   }
+
+   /*
+    * The instances of one flight, sorted by date, and their Fenwick tree
+    **/
+   private static final class FlightTotals {
+      final long[] days;
+      final int[] ids;
+      final int[] seatsTotal;
+      final long[] readAt;     // System.nanoTime when each instance was read
+      final long[] counters;   // COUNTERS values per instance
+      final long[] tree;       // 1-based, COUNTERS values per node
+      final Map<Integer, Integer> positions = new HashMap<Integer, Integer>();
+      final long builtAt = System.nanoTime();
+
+      FlightTotals(List<Instance> instances) {
+         int n = instances.size();
+         this.days = new long[n];
+         this.ids = new int[n];
+         this.seatsTotal = new int[n];
+         this.readAt = new long[n];
+         this.counters = new long[n * COUNTERS];
+         this.tree = new long[(n + 1) * COUNTERS];
+         for (int i = 0; i < n; ++i) {
+            Instance fi = instances.get(i);
+            this.days[i] = fi.day;
+            this.ids[i] = fi.id;
+            this.positions.put(fi.id, i);
+            update(i, fi);
+         }
+      }
+
+      /* takes the values of a newer read of the instance at position */
+      void update(int position, Instance fi) {
+         this.seatsTotal[position] = fi.seatsTotal;
+         this.readAt[position] = fi.readAt;
+         for (int c = 0; c < COUNTERS; ++c) {
+            long delta = fi.counters[c] - this.counters[position * COUNTERS + c];
+            this.counters[position * COUNTERS + c] = fi.counters[c];
+            if (delta != 0)
+               for (int node = position + 1; node < this.days.length + 1; node += node & -node)
+                  this.tree[node * COUNTERS + c] += delta;
+         }
+      }
+
+      /* the instance at position as it was last read */
+      Instance instance(int position, String flightNumber) {
+         return new Instance(this.ids[position], flightNumber, this.days[position],
+                             Arrays.copyOfRange(this.counters, position * COUNTERS, (position + 1) * COUNTERS),
+                             this.seatsTotal[position], this.readAt[position]);
+      }
+
+      /* sums of the first count instances, added into sums */
+      void prefix(int count, long[] sums, int sign) {
+         for (int node = count; node > 0; node -= node & -node)
+            for (int c = 0; c < COUNTERS; ++c)
+               sums[c] += sign * this.tree[node * COUNTERS + c];
+      }
+
+      /* the number of instances dated before day */
+      int before(long day) {
+         int lo = 0, hi = this.days.length;
+         while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (this.days[mid] < day)
+               lo = mid + 1;
+            else
+               hi = mid;
+         }
+         return lo;
+      }
+   }//end FlightTotals
+
+   /*
+    * A flight's totals and its instances touched since they were read.  The
+    * totals are loaded, refreshed and read under the Flight's own lock.
+    **/
+   private static final class Flight {
+      final String number;
+      final Set<Integer> touched = ConcurrentHashMap.newKeySet();
+      FlightTotals totals;               // null until loaded
+      volatile boolean stale = false;    // load it again before the next answer
+
+      Flight(String number) {
+         this.number = number;
+      }
+   }//end Flight
+
+   private final AirlineManagement _esql;
+
+   // flights by FlightNumber, and the flight of every loaded instance
+   private final Map<String, Flight> _flights = new ConcurrentHashMap<String, Flight>();
+   private final Map<Integer, Flight> _instanceFlights = new ConcurrentHashMap<Integer, Flight>();
+
+   // the start of every load in progress, and the time of touches that came
+   // while one was, for instances no loaded flight held yet: the load may
+   // have read their rows before the change
+   private final Map<Flight, Long> _loading = new ConcurrentHashMap<Flight, Long>();
+   private final Map<Integer, Long> _unplaced = new ConcurrentHashMap<Integer, Long>();
+
+   /**
+    * Creates a new, empty cache
+    *
+    * @param esql the database holding the FlightInstance table
+    */
+   public FlightStatsCache(AirlineManagement esql) {
+      this._esql = esql;
+   }//end FlightStatsCache
+
+   /**
+    * Same result as selecting FlightStatsRow.COLUMNS from the instances of a
+    * flight with FlightDate BETWEEN from AND to.
+    *
+    * @param flightNumber the flight
+    * @param from the first day of the range
+    * @param to the last day of the range
+    * @return the totals of the range; all 0 when it has no instances
+    * @throws java.sql.SQLException when the flight could not be loaded
+    */
+   public FlightStatsRow stats(String flightNumber, LocalDate from, LocalDate to) throws SQLException {
+      Flight flight = this._flights.computeIfAbsent(flightNumber, Flight::new);
+      synchronized (flight) {
+         FlightTotals totals = current(flight, from.toEpochDay(), to.toEpochDay());
+         long[] sums = new long[COUNTERS];
+         int first = totals.before(from.toEpochDay());
+         int end = totals.before(to.toEpochDay() + 1);
+         if (end > first) {
+            totals.prefix(end, sums, 1);
+            totals.prefix(first, sums, -1);
+         }
+         return new FlightStatsRow(sums[DEPARTED], sums[ARRIVED], sums[SOLD], sums[UNSOLD]);
+      }
+   }//end stats
+
+   /**
+    * @param flightNumber the flight
+    * @param date the flight date
+    * @return the seat counts of the flight's instance on that date, or null
+    *         when there is none
+    * @throws java.sql.SQLException when the flight could not be loaded
+    */
+   public InstanceSeats seats(String flightNumber, LocalDate date) throws SQLException {
+      Flight flight = this._flights.computeIfAbsent(flightNumber, Flight::new);
+      synchronized (flight) {
+         FlightTotals totals = current(flight, date.toEpochDay(), date.toEpochDay());
+         int i = totals.before(date.toEpochDay());
+         if (i == totals.days.length || totals.days[i] != date.toEpochDay())
+            return null;
+         return new InstanceSeats(totals.ids[i], totals.seatsTotal[i], (int) totals.counters[i * COUNTERS + SOLD]);
+      }
+   }//end seats
+
+   /**
+    * Records that a FlightInstance row was changed.  Call after the changing
+    * transaction ended, whether it committed or not.
+    */
+   public void touch(int flightInstanceId) {
+      if (this._instanceFlights.get(flightInstanceId) == null && !this._loading.isEmpty()) {
+         this._unplaced.put(flightInstanceId, System.nanoTime());
+         if (this._unplaced.size() > UNPLACED_LIMIT)
+            pruneUnplaced();
+      }
+      // looked up again: a load may have placed it meanwhile
+      Flight flight = this._instanceFlights.get(flightInstanceId);
+      if (flight != null)
+         flight.touched.add(flightInstanceId);
+   }//end touch
+
+   /**
+    * Drops everything loaded; the next lookups reload.  Call after changing
+    * FlightInstance other than through touch-ing writers.
+    */
+   public void invalidate() {
+      this._flights.clear();
+      this._instanceFlights.clear();
+      this._unplaced.clear();
+   }
+
+   /*
+    * Brings the flight up to date for a question about fromDay..toDay: loads
+    * it if needed, re-reads its touched instances, and re-reads the range
+    * when an instance in it is older than TTL_MILLIS.  An instance is taken
+    * off the touched set before it is read, so a touch arriving meanwhile is
+    * read again on the next call and no committed change is ever missed.
+    * Called with the flight's lock held.
+    **/
+   private FlightTotals current(Flight flight, long fromDay, long toDay) throws SQLException {
+      if (flight.totals == null || flight.stale)
+         load(flight);
+      refresh(flight);
+      if (flight.stale)
+         load(flight);
+      FlightTotals totals = flight.totals;
+      int first = totals.before(fromDay);
+      int end = totals.before(toDay + 1);
+      if (fromDay <= toDay && expired(totals, first, end))
+         reread(flight, first, end, fromDay, toDay);
+      return flight.totals;
+   }//end current
+
+   private void load(Flight flight) throws SQLException {
+      long start = System.nanoTime();
+      this._loading.put(flight, start);
+      try {
+         flight.stale = false;
+         List<Instance> instances = this._esql.executeQueryForList(LOAD_FLIGHT, FlightStatsCache::read, flight.number);
+         place(flight, new FlightTotals(instances), start);
+      } finally {
+         this._loading.remove(flight);
+      }
+   }//end load
+
+   /*
+    * Re-reads the instances of the flight dated fromDay..toDay, which are
+    * those at positions first..end; instances added there since are placed
+    * in the tree, removed ones make the whole flight load again
+    **/
+   private void reread(Flight flight, int first, int end, long fromDay, long toDay) throws SQLException {
+      long start = System.nanoTime();
+      this._loading.put(flight, start);
+      try {
+         FlightTotals totals = flight.totals;
+         List<Instance> rows = this._esql.executeQueryForList(LOAD_RANGE, FlightStatsCache::read, flight.number,
+            LocalDate.ofEpochDay(fromDay).toString(), LocalDate.ofEpochDay(toDay).toString());
+         boolean same = rows.size() == end - first;
+         for (int i = 0; same && i < rows.size(); ++i)
+            same = rows.get(i).id == totals.ids[first + i];
+         if (same) {
+            for (int i = 0; i < rows.size(); ++i)
+               totals.update(first + i, rows.get(i));
+            return;
+         }
+         Set<Integer> found = new HashSet<Integer>();
+         for (Instance fi : rows)
+            found.add(fi.id);
+         for (int i = first; i < end; ++i)
+            if (!found.contains(totals.ids[i])) {
+               // deleted or moved to another date
+               load(flight);
+               return;
+            }
+         List<Instance> instances = new ArrayList<Instance>();
+         for (int i = 0; i < first; ++i)
+            if (!found.contains(totals.ids[i]))
+               instances.add(totals.instance(i, flight.number));
+         instances.addAll(rows);
+         for (int i = end; i < totals.ids.length; ++i)
+            if (!found.contains(totals.ids[i]))
+               instances.add(totals.instance(i, flight.number));
+         place(flight, new FlightTotals(instances), start);
+      } finally {
+         this._loading.remove(flight);
+      }
+   }//end reread
+
+   /*
+    * Installs new totals of the flight and maps their instances to it.
+    * Touches of them that came after start were possibly not seen by the
+    * read, so they are touched again.
+    **/
+   private void place(Flight flight, FlightTotals totals, long start) {
+      FlightTotals old = flight.totals;
+      flight.totals = totals;
+      if (this._flights.get(flight.number) != flight)
+         return;   // invalidated meanwhile
+      if (old != null)
+         for (int id : old.ids)
+            if (!totals.positions.containsKey(id))
+               this._instanceFlights.remove(id, flight);
+      for (int id : totals.ids) {
+         this._instanceFlights.put(id, flight);
+         Long touched = this._unplaced.remove(id);
+         if (touched != null && touched - start >= 0)
+            flight.touched.add(id);
+      }
+   }//end place
+
+   /*
+    * Re-reads the touched instances of the flight, within the dates they had
+    * when last read
+    **/
+   private void refresh(Flight flight) throws SQLException {
+      if (flight.touched.isEmpty())
+         return;
+      List<Integer> ids = new ArrayList<Integer>(flight.touched);
+      flight.touched.removeAll(ids);
+      FlightTotals totals = flight.totals;
+      // touched before their instance left the flight; nothing to read
+      ids.removeIf(id -> !totals.positions.containsKey(id));
+      try {
+         for (int start = 0; start < ids.size(); start += REFRESH_CHUNK) {
+            List<Integer> chunk = ids.subList(start, Math.min(ids.size(), start + REFRESH_CHUNK));
+            String[] marks = new String[chunk.size()];
+            Arrays.fill(marks, "?");
+            long firstDay = Long.MAX_VALUE, lastDay = Long.MIN_VALUE;
+            List<Object> params = new ArrayList<Object>(chunk);
+            for (Integer id : chunk) {
+               long day = totals.days[totals.positions.get(id)];
+               firstDay = Math.min(firstDay, day);
+               lastDay = Math.max(lastDay, day);
+            }
+            params.add(LocalDate.ofEpochDay(firstDay).toString());
+            params.add(LocalDate.ofEpochDay(lastDay).toString());
+            List<Instance> rows = this._esql.executeQueryForList(
+               "SELECT " + COLUMNS + " FROM FlightInstance WHERE FlightInstanceID IN (" + String.join(", ", marks) + ") " +
+               "AND FlightDate BETWEEN CAST(? AS DATE) AND CAST(? AS DATE)",
+               FlightStatsCache::read, params.toArray());
+
+            Set<Integer> missing = new HashSet<Integer>(chunk);
+            for (Instance fi : rows) {
+               missing.remove(fi.id);
+               int position = totals.positions.get(fi.id);
+               if (!fi.flightNumber.equals(flight.number) || totals.days[position] != fi.day) {
+                  // moved to another flight or date
+                  flight.stale = true;
+                  Flight other = this._flights.get(fi.flightNumber);
+                  if (other != null)
+                     other.stale = true;
+               } else {
+                  totals.update(position, fi);
+               }
+            }
+            // deleted, or moved out of the dates read: load the flight again
+            if (!missing.isEmpty())
+               flight.stale = true;
+         }
+      } catch (SQLException e) {
+         // nothing was lost; read them again next time
+         flight.touched.addAll(ids);
+         throw e;
+      }
+   }//end refresh
+
+   /* true when an instance at first..end, or the range when it has none, is older than TTL_MILLIS */
+   private static boolean expired(FlightTotals totals, int first, int end) {
+      if (TTL_MILLIS <= 0)
+         return false;
+      long oldest = System.nanoTime() - TTL_MILLIS * 1000000L;
+      if (first == end)
+         return totals.builtAt - oldest < 0;
+      for (int i = first; i < end; ++i)
+         if (totals.readAt[i] - oldest < 0)
+            return true;
+      return false;
+   }
+
+   /* drops the touches no load in progress started before */
+   private void pruneUnplaced() {
+      long oldest = System.nanoTime();
+      for (Long start : this._loading.values())
+         oldest = Math.min(oldest, start);
+      final long limit = oldest;
+      this._unplaced.values().removeIf(touched -> touched - limit < 0);
+   }
+
+   private static Instance read(ResultSet rs) throws SQLException {
+      Date date = rs.getDate(3);
+      long day = date == null ? Long.MIN_VALUE : date.toLocalDate().toEpochDay();
+      return new Instance(rs.getInt(1), rs.getString(2), day,
+                          new long[] { rs.getLong(4), rs.getLong(5), rs.getLong(6), rs.getLong(7) },
+                          rs.getInt(8), System.nanoTime());
+   }
+
+}//end FlightStatsCache
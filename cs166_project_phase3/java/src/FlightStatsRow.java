@@ -0,0 +1,48 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+
+/**
+ * On-time and ticket totals for one flight over a date range.  SUMs over
+ * no rows (SQL NULL) read as 0, which is what the report prints.
+ * COLUMNS is the reference definition; FlightStatsCache keeps the same
+ * totals in memory.
+ *
+ */
+public final class FlightStatsRow {
+
+   public static final String COLUMNS =
+      "COUNT(CASE WHEN DepartedOnTime THEN 1 END) AS NumDeparted, " +
+      "COUNT(CASE WHEN ArrivedOnTime THEN 1 END) AS NumArrived, " +
+      "SUM(SeatsSold) AS TotalSold, " +
+      "SUM(SeatsTotal - SeatsSold) AS TotalUnsold";
+
+   public static final AirlineManagement.RowMapper<FlightStatsRow> MAPPER =
+      rs -> new FlightStatsRow(rs.getLong(1), rs.getLong(2), rs.getLong(3), rs.getLong(4));
+
+   public final long numDeparted;
+   public final long numArrived;
+   public final long totalSold;
+   public final long totalUnsold;
+
+   public FlightStatsRow(long numDeparted, long numArrived, long totalSold, long totalUnsold) {
+      this.numDeparted = numDeparted;
+      this.numArrived = numArrived;
+      this.totalSold = totalSold;
+      this.totalUnsold = totalUnsold;
+   }
+
+}//end FlightStatsRow
@@ -0,0 +1,115 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+
+/**
+ * This class hands out numeric IDs from blocks reserved in a PostgreSQL
+ * sequence.  The sequence is created with INCREMENT BY blockSize, so one
+ * nextval call reserves the whole range (value - blockSize, value] for this
+ * JVM; IDs inside the range are then issued from memory with an atomic
+ * counter.  IDs are unique across JVMs but may have gaps.
+ *
+ * Callers that hold a pooled connection, e.g. inside a transaction, must
+ * pass it to nextId: reserving a block on a second connection can wait
+ * forever for the pool they are holding.
+ *
+ */
+public class IdAllocator {
+
+   /*
+    * A reserved range of IDs; next runs past end once the block is used up
+    **/
+   private static final class Block {
+      final AtomicLong next;
+      final long end;
+
+      Block(long first, long end) {
+         this.next = new AtomicLong(first);
+         this.end = end;
+      }
+   }
+
+   static final String NEXT_BLOCK = "SELECT nextval(CAST(? AS REGCLASS))";
+
+   private final AirlineManagement _esql;
+   private final String _sequence;
+   private final int _blockSize;
+   private final AtomicReference<Block> _block = new AtomicReference<Block>(new Block(1, 0));
+
+   /**
+    * Creates a new allocator
+    *
+    * @param esql the database the sequence lives in
+    * @param sequence the sequence name
+    * @param blockSize must equal the sequence's INCREMENT BY
+    */
+   public IdAllocator(AirlineManagement esql, String sequence, int blockSize) {
+      this._esql = esql;
+      this._sequence = sequence;
+      this._blockSize = blockSize;
+   }//end IdAllocator
+
+   /**
+    * @return the next unused ID
+    * @throws java.sql.SQLException when a new block could not be reserved
+    */
+   public long nextId() throws SQLException {
+      return nextId(null);
+   }
+
+   /**
+    * Like nextId, but reserves a new block on the caller's connection.
+    * nextval is not transactional, so the block stays reserved when the
+    * caller's transaction rolls back.
+    *
+    * @param conn the connection the caller holds, or null to borrow one
+    * @return the next unused ID
+    * @throws java.sql.SQLException when a new block could not be reserved
+    */
+   public long nextId(ConnectionPool.PooledConnection conn) throws SQLException {
+      while (true) {
+         Block block = this._block.get();
+         long id = block.next.getAndIncrement();
+         if (id <= block.end)
+            return id;
+         refill(block, conn);
+      }
+   }//end nextId
+
+   /*
+    * Reserves the next block unless another thread already replaced the
+    * exhausted one.  No lock is held across nextval: a thread waiting for it
+    * could hold the last pooled connection the reserving thread needs.  When
+    * two threads reserve at once, the block of the one that loses is skipped.
+    **/
+   private void refill(Block exhausted, ConnectionPool.PooledConnection conn) throws SQLException {
+      if (this._block.get() != exhausted)
+         return;
+      long last;
+      if (conn == null) {
+         last = this._esql.executeQueryForObject(NEXT_BLOCK, rs -> rs.getLong(1), this._sequence);
+      } else {
+         ResultSet rs = AirlineManagement.prepare(conn, NEXT_BLOCK, this._sequence).executeQuery();
+         rs.next();
+         last = rs.getLong(1);
+         rs.close();
+      }
+      this._block.compareAndSet(exhausted, new Block(last - this._blockSize + 1, last));
+   }//end refill
+
+}//end IdAllocator
@@ -0,0 +1,206 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.io.PrintStream;
+import java.sql.SQLException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+
+
+/**
+ * This class answers LogIn from memory.  It keeps pilot and technician
+ * names mapped to their IDs and customer IDs mapped to their names, loaded
+ * once in the background at startup.  CreateUser adds new users as they are
+ * inserted, and a lookup that misses reads the one row from the database
+ * (through the Name indexes for pilots and technicians) and keeps it, so
+ * users added by another program can log in too.  An entry is read again
+ * once it is older than TTL_MILLIS, so users renamed or deleted by another
+ * program can't log in with their old names for longer than that.
+ *
+ */
+public class IdentityCache {
+
+   static final String LOAD_CUSTOMERS = "SELECT CustomerID, FirstName, LastName FROM Customer";
+   static final String LOAD_PILOTS = "SELECT PilotID, Name FROM Pilot ORDER BY PilotID";
+   static final String LOAD_TECHNICIANS = "SELECT TechnicianID, Name FROM Technician ORDER BY TechnicianID";
+
+   static final String FIND_CUSTOMER = "SELECT FirstName, LastName FROM Customer WHERE CustomerID = ?";
+   // with duplicate names the lowest ID wins, as when loading
+   static final String FIND_PILOT = "SELECT PilotID FROM Pilot WHERE Name = ? ORDER BY PilotID LIMIT 1";
+   static final String FIND_TECHNICIAN = "SELECT TechnicianID FROM Technician WHERE Name = ? ORDER BY TechnicianID LIMIT 1";
+
+   // how long an entry is trusted before its row is read again,
+   // -Dairline.identity.ttlMillis=<n>; 0 keeps it until invalidate
+   static final long TTL_MILLIS = Long.getLong("airline.identity.ttlMillis", 60000L);
+
+   /*
+    * A cached value and when it was read
+    **/
+   private static final class Entry<T> {
+      final T value;
+      final long readAt = System.nanoTime();
+
+      Entry(T value) {
+         this.value = value;
+      }
+
+      boolean expired() {
+         return TTL_MILLIS > 0 && System.nanoTime() - this.readAt > TTL_MILLIS * 1000000L;
+      }
+   }//end Entry
+
+   private final AirlineManagement _esql;
+
+   // CustomerID -> { FirstName, LastName }
+   private final ConcurrentHashMap<Integer, Entry<String[]>> _customers = new ConcurrentHashMap<Integer, Entry<String[]>>();
+   // Name -> ID
+   private final ConcurrentHashMap<String, Entry<String>> _pilots = new ConcurrentHashMap<String, Entry<String>>();
+   private final ConcurrentHashMap<String, Entry<String>> _technicians = new ConcurrentHashMap<String, Entry<String>>();
+
+   /**
+    * Creates a new, empty cache
+    *
+    * @param esql the database holding the Customer, Pilot and Technician tables
+    */
+   public IdentityCache(AirlineManagement esql) {
+      this._esql = esql;
+   }//end IdentityCache
+
+   /**
+    * Loads all three tables on a background thread.  Logins arriving before
+    * it is done take the database path.
+    *
+    * @param log where a failed load is reported
+    */
+   public void warm(PrintStream log) {
+      ExecutorService loader = AirlineManagement.newTaskExecutor("identity-load");
+      loader.execute(() -> {
+         try {
+            load();
+         } catch (SQLException e) {
+            log.println("Loading users failed, logins will query the database: " + e.getMessage());
+         }
+      });
+      loader.shutdown();
+   }//end warm
+
+   /**
+    * Reads all customers, pilots and technicians.
+    *
+    * @throws java.sql.SQLException when a table could not be read
+    */
+   public void load() throws SQLException {
+      this._esql.executeQueryStreaming(LOAD_PILOTS, (rs, row) -> putName(this._pilots, rs.getString(2), rs.getString(1)));
+      this._esql.executeQueryStreaming(LOAD_TECHNICIANS, (rs, row) -> putName(this._technicians, rs.getString(2), rs.getString(1)));
+      this._esql.executeQueryStreaming(LOAD_CUSTOMERS, (rs, row) ->
+         this._customers.put(rs.getInt(1), new Entry<String[]>(new String[] { rs.getString(2), rs.getString(3) })));
+   }//end load
+
+   /**
+    * @param customerId the ID the customer entered
+    * @param firstName the first name the customer entered
+    * @param lastName the last name the customer entered
+    * @return true when a customer with that ID has exactly that name
+    * @throws java.sql.SQLException when the customer had to be read and could not be
+    */
+   public boolean isCustomer(int customerId, String firstName, String lastName) throws SQLException {
+      Entry<String[]> entry = this._customers.get(customerId);
+      if (entry == null || entry.expired()) {
+         String[] names = this._esql.executeQueryForObject(FIND_CUSTOMER,
+            rs -> new String[] { rs.getString(1), rs.getString(2) }, Integer.valueOf(customerId));
+         if (names == null) {
+            this._customers.remove(customerId);
+            return false;
+         }
+         entry = new Entry<String[]>(names);
+         this._customers.put(customerId, entry);
+      }
+      return firstName.equals(entry.value[0]) && lastName.equals(entry.value[1]);
+   }//end isCustomer
+
+   /**
+    * @param name the full name the pilot entered
+    * @return the pilot's PilotID, or null when no pilot has that name
+    * @throws java.sql.SQLException when the pilot had to be read and could not be
+    */
+   public String findPilot(String name) throws SQLException {
+      return find(this._pilots, FIND_PILOT, name);
+   }
+
+   /**
+    * @param name the full name the technician entered
+    * @return the technician's TechnicianID, or null when no technician has that name
+    * @throws java.sql.SQLException when the technician had to be read and could not be
+    */
+   public String findTechnician(String name) throws SQLException {
+      return find(this._technicians, FIND_TECHNICIAN, name);
+   }
+
+   /**
+    * Records a customer that was just inserted.
+    */
+   public void addCustomer(int customerId, String firstName, String lastName) {
+      this._customers.put(customerId, new Entry<String[]>(new String[] { firstName, lastName }));
+   }
+
+   /**
+    * Records a pilot that was just inserted.
+    */
+   public void addPilot(String pilotId, String name) {
+      putName(this._pilots, name, pilotId);
+   }
+
+   /**
+    * Records a technician that was just inserted.
+    */
+   public void addTechnician(String technicianId, String name) {
+      putName(this._technicians, name, technicianId);
+   }
+
+   /**
+    * Forgets everything; lookups go to the database until load is called
+    * again.  Call after changing or deleting users other than through
+    * CreateUser.
+    */
+   public void invalidate() {
+      this._customers.clear();
+      this._pilots.clear();
+      this._technicians.clear();
+   }
+
+   private String find(ConcurrentHashMap<String, Entry<String>> ids, String query, String name) throws SQLException {
+      Entry<String> entry = ids.get(name);
+      if (entry == null || entry.expired()) {
+         // the query answers with the lowest ID itself
+         String id = this._esql.executeQueryForObject(query, rs -> rs.getString(1), name);
+         if (id == null) {
+            ids.remove(name);
+            return null;
+         }
+         entry = new Entry<String>(id);
+         ids.put(name, entry);
+      }
+      return entry.value;
+   }//end find
+
+   /*
+    * Keeps the lowest ID for a name shared by several people; an expired
+    * entry gives way to the newer one
+    **/
+   private static void putName(ConcurrentHashMap<String, Entry<String>> ids, String name, String id) {
+      if (name != null && id != null)
+         ids.merge(name, new Entry<String>(id),
+                   (old, added) -> old.value.compareTo(added.value) < 0 && !old.expired() ? old : added);
+   }
+
+}//end IdentityCache
@@ -0,0 +1,270 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+
+/**
+ * This class finds connecting itineraries of up to MAX_LEGS flights
+ * between two cities.  The route graph is the RouteCache (departures per
+ * city and day of week, sorted by time); seats come from one query of the
+ * FlightInstance rows of the days the trip can span.  The search is a
+ * depth-first walk forward in time that keeps the K earliest arrivals and
+ * prunes every partial trip that can no longer beat them, so no SQL runs
+ * per candidate leg.
+ *
+ * A connection needs at least MIN_CONNECTION minutes on the ground and at
+ * most MAX_LAYOVER; every leg needs a flight instance with a free seat.
+ *
+ */
+public class ItineraryEngine {
+
+   /**
+    * One flight of an itinerary.
+    */
+   public static final class Leg {
+      public final RouteCache.Departure departure;
+      public final LocalDate date;
+      public final int flightInstanceId;
+      public final int seatsAvailable;
+      public final BigDecimal ticketCost;
+      // minutes from midnight of the travel date
+      final int departs;
+      final int arrives;
+
+      Leg(RouteCache.Departure departure, LocalDate date, Seats seats, int departs, int arrives) {
+         this.departure = departure;
+         this.date = date;
+         this.flightInstanceId = seats.flightInstanceId;
+         this.seatsAvailable = seats.available;
+         this.ticketCost = seats.ticketCost;
+         this.departs = departs;
+         this.arrives = arrives;
+      }
+   }//end Leg
+
+   /**
+    * A trip of one or more legs, each connecting to the next.
+    */
+   public static final class Itinerary {
+      public final List<Leg> legs;
+
+      Itinerary(List<Leg> legs) {
+         this.legs = Collections.unmodifiableList(new ArrayList<Leg>(legs));
+      }
+
+      /**
+       * @return minutes from the first departure to the last arrival
+       */
+      public int durationMinutes() {
+         return arrives() - this.legs.get(0).departs;
+      }
+
+      /**
+       * @return the sum of the legs' ticket costs, or null when one is unknown
+       */
+      public BigDecimal totalCost() {
+         BigDecimal total = BigDecimal.ZERO;
+         for (Leg leg : this.legs) {
+            if (leg.ticketCost == null)
+               return null;
+            total = total.add(leg.ticketCost);
+         }
+         return total;
+      }
+
+      int arrives() {
+         return this.legs.get(this.legs.size() - 1).arrives;
+      }
+   }//end Itinerary
+
+   /*
+    * The seat inventory of one flight instance
+    **/
+   private static final class Seats {
+      final int flightInstanceId;
+      final int available;
+      final BigDecimal ticketCost;
+
+      Seats(int flightInstanceId, int available, BigDecimal ticketCost) {
+         this.flightInstanceId = flightInstanceId;
+         this.available = available;
+         this.ticketCost = ticketCost;
+      }
+   }
+
+   static final String SEATS =
+      "SELECT FlightNumber, FlightDate, FlightInstanceID, SeatsTotal - SeatsSold, TicketCost " +
+      "FROM FlightInstance " +
+      "WHERE FlightDate BETWEEN CAST(? AS DATE) AND CAST(? AS DATE)";
+
+   public static final int MAX_LEGS = 3;
+
+   // minutes on the ground between legs, -Dairline.itinerary.minConnection=<minutes>
+   static final int MIN_CONNECTION = Integer.getInteger("airline.itinerary.minConnection", 45);
+   // -Dairline.itinerary.maxLayover=<minutes>
+   static final int MAX_LAYOVER = Integer.getInteger("airline.itinerary.maxLayover", 12 * 60);
+
+   private static final int DAY = 24 * 60;
+
+   // earliest arrival, then fewest legs, then shortest trip
+   private static final Comparator<Itinerary> BEST_FIRST =
+      Comparator.comparingInt(Itinerary::arrives)
+                .thenComparingInt(i -> i.legs.size())
+                .thenComparingInt(Itinerary::durationMinutes);
+
+   private final RouteCache _routes;
+   private final AirlineManagement _esql;
+
+   /**
+    * Creates a new itinerary engine
+    *
+    * @param esql the database holding the flight instances
+    * @param routes the route graph
+    */
+   public ItineraryEngine(AirlineManagement esql, RouteCache routes) {
+      this._esql = esql;
+      this._routes = routes;
+   }//end ItineraryEngine
+
+   /**
+    * @param origin the departure city
+    * @param destination the arrival city
+    * @param date the day of the first departure
+    * @param maxLegs the most flights per itinerary, at most MAX_LEGS
+    * @param count how many itineraries to return
+    * @return up to count itineraries, earliest arrival first
+    * @throws java.sql.SQLException when the routes or seats could not be read
+    */
+   public List<Itinerary> search(String origin, String destination, LocalDate date, int maxLegs, int count) throws SQLException {
+      maxLegs = Math.max(1, Math.min(MAX_LEGS, maxLegs));
+      // every leg may run into the next day
+      Map<String, Seats> seats = seats(date, date.plusDays(maxLegs));
+
+      Search search = new Search(destination, date, maxLegs, count, seats);
+      Set<String> visited = new HashSet<String>();
+      visited.add(origin);
+      search.extend(origin, Integer.MIN_VALUE, new ArrayList<Leg>(), visited);
+
+      Collections.sort(search.found, BEST_FIRST);
+      return search.found;
+   }//end search
+
+   /*
+    * State of one search: the best itineraries so far
+    **/
+   private final class Search {
+      final String destination;
+      final LocalDate date;
+      final int maxLegs;
+      final int count;
+      final Map<String, Seats> seats;
+      final List<Itinerary> found = new ArrayList<Itinerary>();
+
+      Search(String destination, LocalDate date, int maxLegs, int count, Map<String, Seats> seats) {
+         this.destination = destination;
+         this.date = date;
+         this.maxLegs = maxLegs;
+         this.count = count;
+         this.seats = seats;
+      }
+
+      /* the arrival an itinerary must beat to be kept */
+      int bound() {
+         if (this.found.size() < this.count)
+            return Integer.MAX_VALUE;
+         return this.found.get(this.found.size() - 1).arrives();
+      }
+
+      /*
+       * Tries every leg leaving city at or after earliest (MIN_VALUE for the
+       * first leg, which must leave on the travel date)
+       **/
+      void extend(String city, int earliest, List<Leg> legs, Set<String> visited) throws SQLException {
+         boolean first = legs.isEmpty();
+         int latest = first ? DAY - 1 : earliest - MIN_CONNECTION + MAX_LAYOVER;
+         int fromDay = first ? 0 : Math.floorDiv(earliest, DAY);
+         int toDay = first ? 0 : Math.floorDiv(latest, DAY);
+
+         for (int day = fromDay; day <= toDay; ++day) {
+            LocalDate legDate = this.date.plusDays(day);
+            for (RouteCache.Departure d : ItineraryEngine.this._routes.departuresFrom(city, legDate)) {
+               if (d.departureTime == null || d.arrivalTime == null)
+                  continue;
+               int departs = day * DAY + minutes(d.departureTime);
+               if (!first && departs < earliest)
+                  continue;
+               if (departs > latest || departs >= bound())
+                  break;
+               if (visited.contains(d.arrivalCity))
+                  continue;
+               Seats s = this.seats.get(seatKey(d.flightNumber, legDate));
+               if (s == null || s.available <= 0)
+                  continue;
+
+               int arrives = departs + Math.floorMod(minutes(d.arrivalTime) - minutes(d.departureTime), DAY);
+               if (arrives >= bound())
+                  continue;
+               legs.add(new Leg(d, legDate, s, departs, arrives));
+               if (d.arrivalCity.equals(this.destination)) {
+                  keep(new Itinerary(legs));
+               } else if (legs.size() < this.maxLegs) {
+                  visited.add(d.arrivalCity);
+                  extend(d.arrivalCity, arrives + MIN_CONNECTION, legs, visited);
+                  visited.remove(d.arrivalCity);
+               }
+               legs.remove(legs.size() - 1);
+            }
+         }
+      }//end extend
+
+      void keep(Itinerary itinerary) {
+         int at = Collections.binarySearch(this.found, itinerary, BEST_FIRST);
+         this.found.add(at < 0 ? -at - 1 : at, itinerary);
+         if (this.found.size() > this.count)
+            this.found.remove(this.found.size() - 1);
+      }
+   }//end Search
+
+   /*
+    * FlightNumber and date -> seats of every instance in the date range
+    **/
+   private Map<String, Seats> seats(LocalDate from, LocalDate to) throws SQLException {
+      Map<String, Seats> seats = new HashMap<String, Seats>();
+      this._esql.executeQueryStreaming(SEATS, (rs, row) ->
+         seats.put(seatKey(rs.getString(1), rs.getDate(2).toLocalDate()),
+                   new Seats(rs.getInt(3), rs.getInt(4), rs.getBigDecimal(5))),
+         from.toString(), to.toString());
+      return seats;
+   }//end seats
+
+   private static String seatKey(String flightNumber, LocalDate date) {
+      return flightNumber + ' ' + date;
+   }
+
+   private static int minutes(Time time) {
+      return time.toLocalTime().toSecondOfDay() / 60;
+   }
+
+}//end ItineraryEngine
@@ -0,0 +1,227 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * This class reads the passenger manifest of a flight instance: every
+ * reservation with its customer, grouped by status.  The instance and all
+ * of its reservations come back from one streaming query, so a manifest
+ * costs one round trip however busy the flight is.  Manifests of departed
+ * flights are kept in a small LRU cache; writers call forget when they
+ * change a reservation of an instance.  Changes made by other processes
+ * sharing the database aren't forgotten here, so a cached manifest is read
+ * again once it is older than TTL_MILLIS.
+ *
+ */
+public class ManifestEngine {
+
+   /**
+    * One reservation on the manifest.
+    */
+   public static final class Passenger {
+      public final String reservationId;
+      public final String customerId;
+      public final String firstName;
+      public final String lastName;
+      public final String status;
+
+      Passenger(String reservationId, String customerId, String firstName, String lastName, String status) {
+         this.reservationId = reservationId;
+         this.customerId = customerId;
+         this.firstName = firstName;
+         this.lastName = lastName;
+         this.status = status;
+      }
+   }//end Passenger
+
+   /**
+    * The reservations of one flight instance, ordered by status and then
+    * by reservation number.
+    */
+   public static final class Manifest {
+      public final int flightInstanceId;
+      // true once the flight has departed; its manifest no longer changes
+      public final boolean departed;
+      public final List<Passenger> passengers;
+      final long loadedAt = System.nanoTime();
+
+      Manifest(int flightInstanceId, boolean departed, List<Passenger> passengers) {
+         this.flightInstanceId = flightInstanceId;
+         this.departed = departed;
+         this.passengers = Collections.unmodifiableList(passengers);
+      }
+
+      /**
+       * @return the passengers with that status, in reservation order
+       */
+      public List<Passenger> withStatus(String status) {
+         List<Passenger> result = new ArrayList<Passenger>();
+         for (Passenger p : this.passengers)
+            if (status.equals(p.status))
+               result.add(p);
+         return result;
+      }
+
+      /**
+       * @return the passengers without that status, in manifest order
+       */
+      public List<Passenger> withoutStatus(String status) {
+         List<Passenger> result = new ArrayList<Passenger>();
+         for (Passenger p : this.passengers)
+            if (!status.equals(p.status))
+               result.add(p);
+         return result;
+      }
+   }//end Manifest
+
+   /*
+    * One row per reservation, or a single row of NULLs after the instance
+    * columns when it has none.  Reservations whose customer is missing are
+    * left out, as the inner join of the old per-status queries did.
+    **/
+   static final String MANIFEST =
+      "SELECT fi.FlightInstanceID, " +
+      "       (fi.DepartedOnTime IS NOT NULL OR EXISTS (SELECT 1 FROM Reservation f " +
+      "          WHERE f.FlightInstanceID = fi.FlightInstanceID AND f.Status = 'flown')), " +
+      "       r.ReservationID, c.CustomerID, c.FirstName, c.LastName, r.Status " +
+      "FROM FlightInstance fi " +
+      "LEFT JOIN (Reservation r JOIN Customer c ON c.CustomerID = r.CustomerID) " +
+      "       ON r.FlightInstanceID = fi.FlightInstanceID " +
+      "WHERE fi.FlightNumber = ? AND fi.FlightDate = CAST(? AS DATE) " +
+      "ORDER BY fi.FlightInstanceID, r.Status, CAST(SUBSTRING(r.ReservationID, 2) AS INTEGER)";
+
+   // the same for the partitioned schema: the reservations are matched on
+   // the instance's FlightDate too, which prunes them to one partition
+   static final String MANIFEST_PARTITIONED =
+      "SELECT fi.FlightInstanceID, " +
+      "       (fi.DepartedOnTime IS NOT NULL OR EXISTS (SELECT 1 FROM Reservation f " +
+      "          WHERE f.FlightInstanceID = fi.FlightInstanceID AND f.FlightDate = fi.FlightDate " +
+      "            AND f.Status = 'flown')), " +
+      "       r.ReservationID, c.CustomerID, c.FirstName, c.LastName, r.Status " +
+      "FROM FlightInstance fi " +
+      "LEFT JOIN (Reservation r JOIN Customer c ON c.CustomerID = r.CustomerID) " +
+      "       ON r.FlightInstanceID = fi.FlightInstanceID AND r.FlightDate = fi.FlightDate " +
+      "WHERE fi.FlightNumber = ? AND fi.FlightDate = CAST(? AS DATE) " +
+      "ORDER BY fi.FlightInstanceID, r.Status, CAST(SUBSTRING(r.ReservationID, 2) AS INTEGER)";
+
+   // departed manifests kept, -Dairline.manifest.cache=<n>; 0 turns the cache off
+   static final int CACHE_SIZE = Integer.getInteger("airline.manifest.cache", 256);
+
+   // how long a departed manifest is trusted before it is read again, so other
+   // processes' changes show up, -Dairline.manifest.ttlMillis=<n>; 0 keeps it
+   // until forgotten
+   static final long TTL_MILLIS = Long.getLong("airline.manifest.ttlMillis", 60000L);
+
+   private final AirlineManagement _esql;
+
+   // bumped by forget, so a manifest read before a change is never cached after it
+   private long _generation = 0;
+
+   // "FlightNumber date" -> manifest, least recently used first
+   private final LinkedHashMap<String, Manifest> _departed = new LinkedHashMap<String, Manifest>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, Manifest> eldest) {
+         return size() > CACHE_SIZE;
+      }
+   };
+
+   /**
+    * Creates a new manifest engine with an empty cache
+    *
+    * @param esql the database holding the reservations
+    */
+   public ManifestEngine(AirlineManagement esql) {
+      this._esql = esql;
+   }//end ManifestEngine
+
+   /**
+    * @param flightNumber the flight number
+    * @param flightDate the flight date as yyyy-mm-dd
+    * @return the manifest of the flight on that date, or null when there is
+    *         no such instance
+    * @throws java.sql.SQLException when the manifest could not be read
+    */
+   public Manifest manifest(String flightNumber, String flightDate) throws SQLException {
+      String key = flightNumber + ' ' + flightDate;
+      long generation;
+      synchronized (this._departed) {
+         Manifest cached = this._departed.get(key);
+         if (cached != null && !expired(cached))
+            return cached;
+         generation = this._generation;
+      }
+
+      final int[] instance = { -1 };
+      final boolean[] departed = { false };
+      final List<Passenger> passengers = new ArrayList<Passenger>();
+      this._esql.executeQueryStreaming(this._esql.isPartitioned() ? MANIFEST_PARTITIONED : MANIFEST, (rs, rowNumber) -> {
+         if (rowNumber == 1) {
+            instance[0] = rs.getInt(1);
+            departed[0] = rs.getBoolean(2);
+         } else if (rs.getInt(1) != instance[0]) {
+            // a second instance on the same date; the first one is reported
+            return;
+         }
+         if (rs.getString(3) != null)
+            passengers.add(new Passenger(rs.getString(3), rs.getString(4), rs.getString(5), rs.getString(6), rs.getString(7)));
+      }, flightNumber, flightDate);
+      if (instance[0] < 0)
+         return null;
+
+      Manifest manifest = new Manifest(instance[0], departed[0], passengers);
+      if (manifest.departed && CACHE_SIZE > 0) {
+         synchronized (this._departed) {
+            if (generation == this._generation)
+               this._departed.put(key, manifest);
+         }
+      }
+      return manifest;
+   }//end manifest
+
+   private static boolean expired(Manifest manifest) {
+      return TTL_MILLIS > 0 && System.nanoTime() - manifest.loadedAt > TTL_MILLIS * 1000000L;
+   }
+
+   /**
+    * Drops the cached manifest of an instance.  Call after changing one of
+    * its reservations.
+    */
+   public void forget(int flightInstanceId) {
+      synchronized (this._departed) {
+         ++this._generation;
+         Iterator<Manifest> it = this._departed.values().iterator();
+         while (it.hasNext())
+            if (it.next().flightInstanceId == flightInstanceId)
+               it.remove();
+      }
+   }//end forget
+
+   /**
+    * Drops every cached manifest.
+    */
+   public void invalidate() {
+      synchronized (this._departed) {
+         ++this._generation;
+         this._departed.clear();
+      }
+   }
+
+}//end ManifestEngine
@@ -0,0 +1,44 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+
+/**
+ * One Plane row read with typed getters.  Select COLUMNS and map the result
+ * with MAPPER.
+ *
+ */
+public final class PlaneRow {
+
+   public static final String COLUMNS = "PlaneID, Make, Model, Year, LastRepairDate";
+
+   public static final AirlineManagement.RowMapper<PlaneRow> MAPPER = PlaneRow::new;
+
+   public final String planeId;
+   public final String make;
+   public final String model;
+   public final int year;
+   public final Date lastRepairDate;
+
+   PlaneRow(ResultSet rs) throws SQLException {
+      this.planeId = rs.getString(1);
+      this.make = rs.getString(2);
+      this.model = rs.getString(3);
+      this.year = rs.getInt(4);
+      this.lastRepairDate = rs.getDate(5);
+   }
+
+}//end PlaneRow
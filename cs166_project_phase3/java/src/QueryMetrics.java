@@ -0,0 +1,220 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.regex.Pattern;
+
+
+/**
+ * This class keeps latency, row and error counts per SQL template for the
+ * execute* methods of AirlineManagement.  Latencies go into a log-linear
+ * histogram (16 buckets per power of two microseconds, about 6% precision,
+ * like HdrHistogram with 1 significant digit), so percentiles cost no
+ * allocation per query.  Statements slower than a threshold are logged as
+ * they finish.
+ *
+ * SQL with inline literals is grouped by its text with the literals
+ * replaced by '?', so ad hoc statements share one template.
+ *
+ */
+public class QueryMetrics {
+
+   // statements at least this slow are logged, -Dairline.slowQueryMillis=<ms>; negative turns it off
+   static final long SLOW_QUERY_MILLIS = Long.getLong("airline.slowQueryMillis", 200L);
+
+   private static final int SUB_BUCKETS = 16;
+   private static final int BUCKETS = 40 * SUB_BUCKETS;
+
+   private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^']|'')*'");
+   private static final Pattern NUMBER_LITERAL = Pattern.compile("(?<![\\w.])\\d+(?:\\.\\d+)?(?![\\w.])");
+
+   /**
+    * The counters of one SQL template.
+    */
+   public static final class Template {
+      public final String sql;
+      final AtomicLong _count = new AtomicLong();
+      final AtomicLong _errors = new AtomicLong();
+      final AtomicLong _rows = new AtomicLong();
+      final AtomicLong _totalMicros = new AtomicLong();
+      final AtomicLong _maxMicros = new AtomicLong();
+      final AtomicLongArray _histogram = new AtomicLongArray(BUCKETS);
+      final AtomicReference<String> _lastError = new AtomicReference<String>();
+
+      Template(String sql) {
+         this.sql = sql;
+      }
+
+      public long count() { return this._count.get(); }
+      public long errors() { return this._errors.get(); }
+      public long rows() { return this._rows.get(); }
+      public long totalMicros() { return this._totalMicros.get(); }
+      public long maxMicros() { return this._maxMicros.get(); }
+      public String lastError() { return this._lastError.get(); }
+
+      /**
+       * @param fraction e.g. 0.99 for the 99th percentile
+       * @return the latency in microseconds below which that fraction of
+       *         the executions finished, to the histogram's precision
+       */
+      public long percentileMicros(double fraction) {
+         long total = 0;
+         for (int i = 0; i < BUCKETS; ++i)
+            total += this._histogram.get(i);
+         if (total == 0)
+            return 0;
+         long rank = (long) Math.ceil(fraction * total);
+         long seen = 0;
+         for (int i = 0; i < BUCKETS; ++i) {
+            seen += this._histogram.get(i);
+            if (seen >= rank)
+               return Math.min(bucketTop(i), maxMicros());
+         }
+         return maxMicros();
+      }
+   }//end Template
+
+   private final ConcurrentHashMap<String, Template> _templates = new ConcurrentHashMap<String, Template>();
+   // SQL as executed -> template, for statements without literals only
+   private final ConcurrentHashMap<String, Template> _bySql = new ConcurrentHashMap<String, Template>();
+   private final PrintStream _slowLog;
+
+   /**
+    * Creates an empty set of metrics
+    *
+    * @param slowLog where statements over SLOW_QUERY_MILLIS are reported
+    */
+   public QueryMetrics(PrintStream slowLog) {
+      this._slowLog = slowLog;
+   }//end QueryMetrics
+
+   /**
+    * Records one finished execution.
+    *
+    * @param sql the statement as executed
+    * @param nanos how long it took
+    * @param rows the rows returned or changed
+    * @param error the failure, or null when it succeeded
+    */
+   public void record(String sql, long nanos, int rows, Exception error) {
+      Template t = template(sql);
+      long micros = nanos / 1000;
+      t._count.incrementAndGet();
+      t._rows.addAndGet(rows);
+      t._totalMicros.addAndGet(micros);
+      t._maxMicros.accumulateAndGet(micros, Math::max);
+      t._histogram.incrementAndGet(bucket(micros));
+      if (error != null) {
+         t._errors.incrementAndGet();
+         t._lastError.set(error.getMessage());
+      }
+      if (SLOW_QUERY_MILLIS >= 0 && micros >= SLOW_QUERY_MILLIS * 1000)
+         this._slowLog.println(String.format("[slow query] %.1f ms, %d rows%s: %s", micros / 1000.0, rows,
+                                             error == null ? "" : ", failed", t.sql));
+   }//end record
+
+   /**
+    * @return every template seen so far, the most total time first
+    */
+   public List<Template> snapshot() {
+      List<Template> templates = new ArrayList<Template>(this._templates.values());
+      Collections.sort(templates, (a, b) -> Long.compare(b.totalMicros(), a.totalMicros()));
+      return templates;
+   }
+
+   /**
+    * Forgets every template.
+    */
+   public void reset() {
+      this._templates.clear();
+      this._bySql.clear();
+   }
+
+   /**
+    * @return the snapshot as a JSON array, one object per template, with
+    *         latencies in microseconds
+    */
+   public String toJson() {
+      StringBuilder json = new StringBuilder("[");
+      for (Template t : snapshot()) {
+         if (json.length() > 1)
+            json.append(',');
+         json.append("\n  {\"sql\": ").append(quote(t.sql))
+             .append(", \"count\": ").append(t.count())
+             .append(", \"errors\": ").append(t.errors())
+             .append(", \"rows\": ").append(t.rows())
+             .append(", \"totalMicros\": ").append(t.totalMicros())
+             .append(", \"p50Micros\": ").append(t.percentileMicros(0.50))
+             .append(", \"p95Micros\": ").append(t.percentileMicros(0.95))
+             .append(", \"p99Micros\": ").append(t.percentileMicros(0.99))
+             .append(", \"maxMicros\": ").append(t.maxMicros())
+             .append(", \"lastError\": ").append(t.lastError() == null ? "null" : quote(t.lastError()))
+             .append('}');
+      }
+      return json.append("\n]\n").toString();
+   }//end toJson
+
+   private Template template(String sql) {
+      Template t = this._bySql.get(sql);
+      if (t != null)
+         return t;
+      String normalized = NUMBER_LITERAL.matcher(STRING_LITERAL.matcher(sql).replaceAll("?")).replaceAll("?");
+      t = this._templates.computeIfAbsent(normalized, Template::new);
+      if (normalized.equals(sql))
+         this._bySql.putIfAbsent(sql, t);
+      return t;
+   }//end template
+
+   /*
+    * Log-linear buckets: values below 16 us get one bucket each, then every
+    * power of two is split into 16 equal buckets
+    **/
+   static int bucket(long micros) {
+      if (micros < SUB_BUCKETS)
+         return (int) Math.max(0, micros);
+      int exponent = 63 - Long.numberOfLeadingZeros(micros);   // >= 4
+      int sub = (int) (micros >>> (exponent - 4)) - SUB_BUCKETS;
+      return Math.min(BUCKETS - 1, (exponent - 3) * SUB_BUCKETS + sub);
+   }
+
+   /* the largest value that falls into bucket i */
+   static long bucketTop(int i) {
+      if (i < SUB_BUCKETS)
+         return i;
+      int exponent = i / SUB_BUCKETS + 3;
+      long sub = i % SUB_BUCKETS + SUB_BUCKETS;
+      return ((sub + 1) << (exponent - 4)) - 1;
+   }
+
+   private static String quote(String s) {
+      StringBuilder q = new StringBuilder("\"");
+      for (int i = 0; i < s.length(); ++i) {
+         char c = s.charAt(i);
+         if (c == '"' || c == '\\')
+            q.append('\\').append(c);
+         else if (c < 0x20)
+            q.append(String.format("\\u%04x", (int) c));
+         else
+            q.append(c);
+      }
+      return q.append('"').toString();
+   }
+
+}//end QueryMetrics
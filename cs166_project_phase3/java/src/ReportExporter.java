@@ -0,0 +1,520 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+
+/**
+ * This class writes query results to a file that other tools can map and
+ * read directly instead of parsing report text.  Rows are copied from the
+ * ResultSet as it streams, into a window of the file mapped with
+ * FileChannel.map, so the file grows without a write call per row.
+ *
+ * Two formats are written:
+ *
+ * CSV: a header row of name:TYPE, then one line per row.
+ *
+ * BINARY (little-endian): a header of
+ *    int magic 'AIRX', short version, short column count,
+ *    long row count, long index offset,
+ *    per column: byte type, short name length, UTF-8 name;
+ * then blocks of up to BLOCK_ROWS rows, each
+ *    int rows, and per column: a null bitmap of (rows + 7) / 8 bytes
+ *    (bit i of byte i / 8 set when row i is null) followed by the
+ *    values: rows fixed-width values, or for TEXT and DECIMAL rows + 1
+ *    int end offsets (the first is 0) and the UTF-8 bytes;
+ * and at the index offset an int block count and a long file offset per
+ * block.  Null values are written as 0 or as an empty string.
+ *
+ */
+public class ReportExporter implements AutoCloseable {
+
+   public enum Format { BINARY, CSV }
+
+   /**
+    * The column types of the binary format, with their width in bytes
+    * (0 for variable).  DATE is days since 1970-01-01 and TIME is
+    * seconds since midnight.  DECIMAL is the exact value as plain decimal
+    * text, e.g. 1234.50, since NUMERIC doesn't fit a double.
+    */
+   public enum Type {
+      INT(1, 4), LONG(2, 8), DOUBLE(3, 8), BOOLEAN(4, 1), DATE(5, 4), TIME(6, 4), TEXT(7, 0), DECIMAL(8, 0);
+
+      public final int code;
+      public final int width;
+
+      Type(int code, int width) {
+         this.code = code;
+         this.width = width;
+      }
+   }//end Type
+
+   /**
+    * One column of the export schema.
+    */
+   public static final class Column {
+      public final String name;
+      public final Type type;
+
+      public Column(String name, Type type) {
+         this.name = name;
+         this.type = type;
+      }
+   }//end Column
+
+   static final int MAGIC = 0x58524941;   // "AIRX" in little-endian byte order
+   static final short VERSION = 2;   // 2 added DECIMAL
+
+   // header position of the row count, followed by the index offset; both are written by close
+   private static final int ROW_COUNT_AT = 8;
+
+   // rows per binary block, -Dairline.export.blockRows=<n>
+   static final int BLOCK_ROWS = Math.max(1, Integer.getInteger("airline.export.blockRows", 4096));
+
+   // bytes mapped at a time
+   static final int WINDOW = 8 << 20;
+
+   // the directory files named at the menus are written to, -Dairline.export.dir=<dir>
+   static final File EXPORT_DIR = new File(System.getProperty("airline.export.dir", "exports"));
+
+   private final FileChannel _channel;
+   private final Format _format;
+   private final List<Column> _columns;
+
+   // the mapped part of the file; _windowStart is its offset in the file
+   private MappedByteBuffer _window;
+   private long _windowStart = 0;
+
+   private long _rows = 0;
+   private boolean _closed = false;
+
+   // BINARY: the values of the block being filled, one buffer per column
+   private ByteBuffer[] _values;
+   private byte[][] _nulls;
+   private int[][] _textEnds;
+   private int _blockRows = 0;
+   private final List<Long> _blocks = new ArrayList<Long>();
+
+   // CSV: one line, encoded into the window when complete
+   private final StringBuilder _line = new StringBuilder(256);
+
+   /**
+    * Creates the file, replacing an existing one, and writes the schema
+    * header.
+    *
+    * @param file the file to write
+    * @param format the file format
+    * @param columns the schema
+    * @throws java.io.IOException when the file could not be created
+    */
+   public ReportExporter(File file, Format format, List<Column> columns) throws IOException {
+      this._format = format;
+      this._columns = Collections.unmodifiableList(new ArrayList<Column>(columns));
+      this._channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                                       StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+      try {
+         if (format == Format.BINARY)
+            binaryHeader();
+         else
+            csvHeader();
+      } catch (IOException | RuntimeException e) {
+         this._channel.close();
+         throw e;
+      }
+   }//end ReportExporter
+
+   /**
+    * @param metaData the shape of a result set
+    * @return a column per result column, named by its label
+    * @throws java.sql.SQLException when the metadata could not be read
+    */
+   public static List<Column> columns(ResultSetMetaData metaData) throws SQLException {
+      List<Column> columns = new ArrayList<Column>();
+      for (int i = 1; i <= metaData.getColumnCount(); ++i)
+         columns.add(new Column(metaData.getColumnLabel(i), type(metaData.getColumnType(i))));
+      return columns;
+   }//end columns
+
+   /**
+    * Resolves a file name typed by a user to a file in EXPORT_DIR, creating
+    * the directories on the way.  Menus reachable from --serve sessions
+    * must only write where this allows.
+    *
+    * @param name a relative path such as flights.csv or may/flights.csv
+    * @return the file to write
+    * @throws IllegalArgumentException when the name is absolute or leaves
+    *         EXPORT_DIR, through .. or a symbolic link
+    * @throws java.io.IOException when the directories could not be created
+    */
+   public static File exportFile(String name) throws IOException {
+      Path relative = relativeName(name, EXPORT_DIR);
+      Path dir = Files.createDirectories(EXPORT_DIR.toPath()).toRealPath();
+      Path file = dir.resolve(relative).normalize();
+      Path parent;
+      try {
+         // refuses a symbolic link on the way
+         parent = Files.createDirectories(file.getParent()).toRealPath();
+      } catch (FileAlreadyExistsException e) {
+         parent = null;
+      }
+      if (parent == null || !file.startsWith(dir) || !parent.startsWith(dir) || file.equals(dir)
+          || Files.isSymbolicLink(file))
+         throw new IllegalArgumentException("File names must stay inside " + EXPORT_DIR + ": " + name);
+      return parent.resolve(file.getFileName()).toFile();
+   }//end exportFile
+
+   /*
+    * Parses a file name typed by a user that must stay inside dir: it may
+    * be neither absolute nor contain '..'
+    **/
+   static Path relativeName(String name, File dir) {
+      Path relative;
+      try {
+         relative = Paths.get(name);
+      } catch (InvalidPathException e) {
+         throw new IllegalArgumentException("Invalid file name: " + name);
+      }
+      if (relative.isAbsolute() || relative.getRoot() != null)
+         throw new IllegalArgumentException("Give a file name relative to " + dir + ", not " + name);
+      for (Path part : relative)
+         if (part.toString().equals(".."))
+            throw new IllegalArgumentException("File names may not contain '..': " + name);
+      return relative;
+   }//end relativeName
+
+   /**
+    * Runs a query and exports its rows as they stream.  When it returns no
+    * rows the file still replaces the old one, with the header and schema
+    * only.
+    *
+    * @param esql the database to query
+    * @param file the file to write
+    * @param format the file format
+    * @param query the query template with '?' placeholders
+    * @param params the values bound to the placeholders, in order
+    * @return the number of rows exported
+    * @throws java.sql.SQLException when the query failed
+    * @throws java.io.IOException when the file could not be written
+    */
+   public static long export(AirlineManagement esql, File file, Format format, String query, Object... params)
+         throws SQLException, IOException {
+      final ReportExporter[] exporter = { null };
+      boolean done = false;
+      try {
+         esql.executeQueryStreaming(query, (rs, rowNumber) -> {
+            try {
+               if (rowNumber == 1)
+                  exporter[0] = new ReportExporter(file, format, columns(rs.getMetaData()));
+               exporter[0].row(rs);
+            } catch (IOException e) {
+               throw new UncheckedIOException(e);
+            }
+         }, params);
+         done = true;
+      } catch (UncheckedIOException e) {
+         throw e.getCause();
+      } finally {
+         if (exporter[0] != null) {
+            exporter[0].close();
+            // don't leave half a report behind
+            if (!done)
+               file.delete();
+         }
+      }
+      if (exporter[0] == null) {
+         // no row carried the metadata; ask for the shape of the empty result
+         List<Column> columns = esql.withConnection(conn -> {
+            ResultSet rs = AirlineManagement.prepare(conn, "SELECT * FROM (" + query + ") AS q LIMIT 0", params).executeQuery();
+            try {
+               return columns(rs.getMetaData());
+            } finally {
+               rs.close();
+            }
+         });
+         new ReportExporter(file, format, columns).close();
+         return 0;
+      }
+      return exporter[0].rows();
+   }//end export
+
+   /**
+    * Adds the current row of a result set whose columns match the schema.
+    *
+    * @throws java.sql.SQLException when a value could not be read
+    * @throws java.io.IOException when the file could not be grown
+    */
+   public void row(ResultSet rs) throws SQLException, IOException {
+      if (this._format == Format.BINARY)
+         binaryRow(rs);
+      else
+         csvRow(rs);
+      ++this._rows;
+   }//end row
+
+   /**
+    * @return the number of rows added so far
+    */
+   public long rows() {
+      return this._rows;
+   }
+
+   /**
+    * Writes the last block and the block index, fills in the header, cuts
+    * the file to its length and closes it.
+    */
+   @Override
+   public void close() throws IOException {
+      if (this._closed)
+         return;
+      this._closed = true;
+      try {
+         long end;
+         if (this._format == Format.BINARY) {
+            flushBlock();
+            long indexOffset = position();
+            ensure(4 + 8L * this._blocks.size());
+            this._window.putInt(this._blocks.size());
+            for (long block : this._blocks)
+               this._window.putLong(block);
+            end = position();
+
+            ByteBuffer patch = ByteBuffer.allocate(16).order(ByteOrder.LITTLE_ENDIAN);
+            patch.putLong(this._rows).putLong(indexOffset).flip();
+            this._channel.write(patch, ROW_COUNT_AT);
+         } else {
+            end = position();
+         }
+         if (this._window != null)
+            this._window.force();
+         this._window = null;
+         this._channel.truncate(end);
+      } finally {
+         this._channel.close();
+      }
+   }//end close
+
+   /*
+    * Makes room for n more bytes at the current position, mapping the next
+    * window of the file when the current one is full
+    **/
+   private void ensure(long n) throws IOException {
+      if (this._window != null && this._window.remaining() >= n)
+         return;
+      long at = position();
+      this._window = this._channel.map(FileChannel.MapMode.READ_WRITE, at, Math.max(WINDOW, n));
+      this._window.order(ByteOrder.LITTLE_ENDIAN);
+      this._windowStart = at;
+   }//end ensure
+
+   private long position() {
+      return this._window == null ? 0 : this._windowStart + this._window.position();
+   }
+
+   private void binaryHeader() throws IOException {
+      byte[][] names = new byte[this._columns.size()][];
+      int size = 24;
+      for (int c = 0; c < names.length; ++c) {
+         names[c] = this._columns.get(c).name.getBytes(StandardCharsets.UTF_8);
+         size += 3 + names[c].length;
+      }
+      ensure(size);
+      this._window.putInt(MAGIC).putShort(VERSION).putShort((short) names.length)
+                  .putLong(0).putLong(0);
+      for (int c = 0; c < names.length; ++c) {
+         this._window.put((byte) this._columns.get(c).type.code);
+         this._window.putShort((short) names[c].length).put(names[c]);
+      }
+
+      this._values = new ByteBuffer[names.length];
+      this._nulls = new byte[names.length][(BLOCK_ROWS + 7) / 8];
+      this._textEnds = new int[names.length][];
+      for (int c = 0; c < names.length; ++c) {
+         Type type = this._columns.get(c).type;
+         this._values[c] = ByteBuffer.allocate(type.width == 0 ? 16 * BLOCK_ROWS : type.width * BLOCK_ROWS)
+                                     .order(ByteOrder.LITTLE_ENDIAN);
+         if (type.width == 0)
+            this._textEnds[c] = new int[BLOCK_ROWS];
+      }
+   }//end binaryHeader
+
+   private void binaryRow(ResultSet rs) throws SQLException, IOException {
+      int row = this._blockRows;
+      for (int c = 0; c < this._columns.size(); ++c) {
+         ByteBuffer values = this._values[c];
+         int i = c + 1;
+         switch (this._columns.get(c).type) {
+            case INT: values.putInt(rs.getInt(i)); break;
+            case LONG: values.putLong(rs.getLong(i)); break;
+            case DOUBLE: values.putDouble(rs.getDouble(i)); break;
+            case BOOLEAN: values.put((byte) (rs.getBoolean(i) ? 1 : 0)); break;
+            case DATE: {
+               Date d = rs.getDate(i);
+               values.putInt(d == null ? 0 : (int) d.toLocalDate().toEpochDay());
+               break;
+            }
+            case TIME: {
+               Time t = rs.getTime(i);
+               values.putInt(t == null ? 0 : t.toLocalTime().toSecondOfDay());
+               break;
+            }
+            case TEXT:
+            case DECIMAL: {
+               String s = text(rs, i, this._columns.get(c).type);
+               if (s != null) {
+                  byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+                  if (values.remaining() < bytes.length)
+                     values = this._values[c] = grow(values, bytes.length);
+                  values.put(bytes);
+               }
+               this._textEnds[c][row] = values.position();
+               break;
+            }
+         }
+         if (rs.wasNull())
+            this._nulls[c][row >>> 3] |= (byte) (1 << (row & 7));
+      }
+      if (++this._blockRows == BLOCK_ROWS)
+         flushBlock();
+   }//end binaryRow
+
+   /*
+    * Copies the buffered block into the file and starts an empty one
+    **/
+   private void flushBlock() throws IOException {
+      int rows = this._blockRows;
+      if (rows == 0)
+         return;
+      int bitmap = (rows + 7) / 8;
+      long size = 4;
+      for (int c = 0; c < this._columns.size(); ++c)
+         size += bitmap + (this._columns.get(c).type.width == 0 ? 4L * (rows + 1) : 0) + this._values[c].position();
+
+      ensure(size);
+      this._blocks.add(position());
+      MappedByteBuffer out = this._window;
+      out.putInt(rows);
+      for (int c = 0; c < this._columns.size(); ++c) {
+         out.put(this._nulls[c], 0, bitmap);
+         Arrays.fill(this._nulls[c], (byte) 0);
+         if (this._columns.get(c).type.width == 0) {
+            out.putInt(0);
+            for (int r = 0; r < rows; ++r)
+               out.putInt(this._textEnds[c][r]);
+         }
+         ByteBuffer values = this._values[c];
+         values.flip();
+         out.put(values);
+         values.clear();
+      }
+      this._blockRows = 0;
+   }//end flushBlock
+
+   private static ByteBuffer grow(ByteBuffer buffer, int needed) {
+      ByteBuffer bigger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + needed))
+                                    .order(ByteOrder.LITTLE_ENDIAN);
+      buffer.flip();
+      bigger.put(buffer);
+      return bigger;
+   }
+
+   private void csvHeader() throws IOException {
+      for (int c = 0; c < this._columns.size(); ++c) {
+         if (c > 0)
+            this._line.append(',');
+         Column column = this._columns.get(c);
+         csvValue(column.name + ':' + column.type);
+      }
+      writeLine();
+   }//end csvHeader
+
+   private void csvRow(ResultSet rs) throws SQLException, IOException {
+      for (int c = 0; c < this._columns.size(); ++c) {
+         if (c > 0)
+            this._line.append(',');
+         int i = c + 1;
+         if (this._columns.get(c).type == Type.BOOLEAN) {
+            boolean b = rs.getBoolean(i);
+            if (!rs.wasNull())
+               this._line.append(b);
+         } else {
+            String s = text(rs, i, this._columns.get(c).type);
+            if (s != null)
+               csvValue(s);
+         }
+      }
+      writeLine();
+   }//end csvRow
+
+   /* the value of a variable-width column; DECIMAL without exponent or rounding */
+   private static String text(ResultSet rs, int i, Type type) throws SQLException {
+      if (type == Type.DECIMAL) {
+         BigDecimal d = rs.getBigDecimal(i);
+         return d == null ? null : d.toPlainString();
+      }
+      return rs.getString(i);
+   }
+
+   private void csvValue(String s) {
+      if (s.isEmpty() || s.indexOf(',') >= 0 || s.indexOf('"') >= 0 || s.indexOf('\n') >= 0 || s.indexOf('\r') >= 0)
+         this._line.append('"').append(s.replace("\"", "\"\"")).append('"');
+      else
+         this._line.append(s);
+   }
+
+   private void writeLine() throws IOException {
+      this._line.append('\n');
+      byte[] bytes = this._line.toString().getBytes(StandardCharsets.UTF_8);
+      this._line.setLength(0);
+      ensure(bytes.length);
+      this._window.put(bytes);
+   }
+
+   /* the binary type of a JDBC column type */
+   static Type type(int sqlType) {
+      switch (sqlType) {
+         case Types.TINYINT: case Types.SMALLINT: case Types.INTEGER: return Type.INT;
+         case Types.BIGINT: return Type.LONG;
+         case Types.REAL: case Types.FLOAT: case Types.DOUBLE: return Type.DOUBLE;
+         case Types.NUMERIC: case Types.DECIMAL: return Type.DECIMAL;
+         case Types.BIT: case Types.BOOLEAN: return Type.BOOLEAN;
+         case Types.DATE: return Type.DATE;
+         case Types.TIME: return Type.TIME;
+         default: return Type.TEXT;
+      }
+   }//end type
+
+}//end ReportExporter
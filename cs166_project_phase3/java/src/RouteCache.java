@@ -0,0 +1,191 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.sql.SQLException;
+import java.sql.Time;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * This class is a read-through cache of the Flight and Schedule tables,
+ * indexed as (origin, destination) -&gt; day of week -&gt; departures sorted by
+ * departure time, and the same by origin alone for connection searches.
+ * Both tables are small and rarely change, so they are read once and kept
+ * until invalidate is called by whoever changes them.
+ *
+ */
+public class RouteCache {
+
+   /**
+    * One scheduled departure of a flight on a day of the week.
+    */
+   public static final class Departure {
+      public final String flightNumber;
+      public final String departureCity;
+      public final String arrivalCity;
+      public final DayOfWeek dayOfWeek;
+      public final Time departureTime;
+      public final Time arrivalTime;
+
+      Departure(String flightNumber, String departureCity, String arrivalCity, DayOfWeek dayOfWeek,
+                Time departureTime, Time arrivalTime) {
+         this.flightNumber = flightNumber;
+         this.departureCity = departureCity;
+         this.arrivalCity = arrivalCity;
+         this.dayOfWeek = dayOfWeek;
+         this.departureTime = departureTime;
+         this.arrivalTime = arrivalTime;
+      }
+   }//end Departure
+
+   static final String LOAD =
+      "SELECT f.FlightNumber, f.DepartureCity, f.ArrivalCity, s.DayNum, s.DepartureTime, s.ArrivalTime " +
+      "FROM Flight f JOIN Schedule s ON s.FlightNumber = f.FlightNumber " +
+      "WHERE s.DayNum IS NOT NULL";
+
+   private static final Comparator<Departure> BY_DEPARTURE_TIME =
+      Comparator.comparing((Departure d) -> d.departureTime, Comparator.nullsLast(Comparator.naturalOrder()))
+                .thenComparing(d -> d.flightNumber);
+
+   /*
+    * Both indexes of one load, swapped in together
+    **/
+   private static final class Routes {
+      // route key -> day of week -> departures
+      final Map<String, EnumMap<DayOfWeek, List<Departure>>> byRoute;
+      // departure city -> day of week -> departures
+      final Map<String, EnumMap<DayOfWeek, List<Departure>>> byOrigin;
+
+      Routes(Map<String, EnumMap<DayOfWeek, List<Departure>>> byRoute,
+             Map<String, EnumMap<DayOfWeek, List<Departure>>> byOrigin) {
+         this.byRoute = byRoute;
+         this.byOrigin = byOrigin;
+      }
+   }
+
+   private final AirlineManagement _esql;
+
+   // null until loaded
+   private volatile Routes _routes = null;
+
+   /**
+    * Creates a new, empty cache
+    *
+    * @param esql the database holding the Flight and Schedule tables
+    */
+   public RouteCache(AirlineManagement esql) {
+      this._esql = esql;
+   }//end RouteCache
+
+   /**
+    * @param origin the departure city
+    * @param destination the arrival city
+    * @param date the day of travel
+    * @return the departures scheduled on that route for the date's day of
+    *         the week, earliest first; never null
+    * @throws java.sql.SQLException when the tables could not be loaded
+    */
+   public List<Departure> departures(String origin, String destination, LocalDate date) throws SQLException {
+      return onDay(routes().byRoute.get(routeKey(origin, destination)), date);
+   }//end departures
+
+   /**
+    * @param origin the departure city
+    * @param date the day of travel
+    * @return every departure from the city scheduled for the date's day of
+    *         the week, to any destination, earliest first; never null
+    * @throws java.sql.SQLException when the tables could not be loaded
+    */
+   public List<Departure> departuresFrom(String origin, LocalDate date) throws SQLException {
+      return onDay(routes().byOrigin.get(origin), date);
+   }//end departuresFrom
+
+   /**
+    * Drops the cached tables; the next lookup reloads them.  Call after
+    * changing Flight or Schedule.
+    */
+   public void invalidate() {
+      this._routes = null;
+   }
+
+   private static List<Departure> onDay(EnumMap<DayOfWeek, List<Departure>> days, LocalDate date) {
+      List<Departure> departures = days == null ? null : days.get(date.getDayOfWeek());
+      return departures == null ? Collections.<Departure>emptyList() : departures;
+   }
+
+   private Routes routes() throws SQLException {
+      Routes routes = this._routes;
+      if (routes == null) {
+         synchronized (this) {
+            routes = this._routes;
+            if (routes == null) {
+               routes = load();
+               this._routes = routes;
+            }
+         }
+      }
+      return routes;
+   }//end routes
+
+   private Routes load() throws SQLException {
+      List<Departure> all = this._esql.executeQueryForList(LOAD, rs -> new Departure(
+         rs.getString(1), rs.getString(2), rs.getString(3),
+         DayOfWeek.of(rs.getInt(4)),
+         rs.getTime(5), rs.getTime(6)));
+
+      Map<String, EnumMap<DayOfWeek, List<Departure>>> byRoute = new HashMap<String, EnumMap<DayOfWeek, List<Departure>>>();
+      Map<String, EnumMap<DayOfWeek, List<Departure>>> byOrigin = new HashMap<String, EnumMap<DayOfWeek, List<Departure>>>();
+      for (Departure d : all) {
+         add(byRoute, routeKey(d.departureCity, d.arrivalCity), d);
+         add(byOrigin, d.departureCity, d);
+      }
+      sort(byRoute);
+      sort(byOrigin);
+      return new Routes(byRoute, byOrigin);
+   }//end load
+
+   private static void add(Map<String, EnumMap<DayOfWeek, List<Departure>>> index, String key, Departure d) {
+      EnumMap<DayOfWeek, List<Departure>> days = index.get(key);
+      if (days == null) {
+         days = new EnumMap<DayOfWeek, List<Departure>>(DayOfWeek.class);
+         index.put(key, days);
+      }
+      List<Departure> departures = days.get(d.dayOfWeek);
+      if (departures == null) {
+         departures = new ArrayList<Departure>();
+         days.put(d.dayOfWeek, departures);
+      }
+      departures.add(d);
+   }
+
+   private static void sort(Map<String, EnumMap<DayOfWeek, List<Departure>>> index) {
+      for (EnumMap<DayOfWeek, List<Departure>> days : index.values())
+         for (Map.Entry<DayOfWeek, List<Departure>> e : days.entrySet()) {
+            Collections.sort(e.getValue(), BY_DEPARTURE_TIME);
+            e.setValue(Collections.unmodifiableList(e.getValue()));
+         }
+   }
+
+   private static String routeKey(String origin, String destination) {
+      return origin + '\u0000' + destination;
+   }
+
+}//end RouteCache
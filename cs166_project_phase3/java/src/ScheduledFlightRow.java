@@ -0,0 +1,77 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Time;
+
+
+/**
+ * One flight instance joined with its Flight route and the Schedule entry
+ * for its day of the week.  Select COLUMNS FROM SOURCE and map the result
+ * with MAPPER.
+ *
+ */
+public final class ScheduledFlightRow {
+
+   public static final String COLUMNS =
+      "fi.FlightInstanceID, fi.FlightNumber, f.DepartureCity, f.ArrivalCity, fi.FlightDate, " +
+      "s.DepartureTime, s.ArrivalTime, fi.NumOfStops, fi.DepartedOnTime, fi.ArrivedOnTime, " +
+      "fi.SeatsTotal, fi.SeatsSold";
+
+   public static final String SOURCE =
+      "FlightInstance fi " +
+      "JOIN Flight f ON fi.FlightNumber = f.FlightNumber " +
+      "JOIN Schedule s ON fi.FlightNumber = s.FlightNumber " +
+      "AND s.DayNum = fi.FlightDow";
+
+   public static final AirlineManagement.RowMapper<ScheduledFlightRow> MAPPER = ScheduledFlightRow::new;
+
+   public final int flightInstanceId;
+   public final String flightNumber;
+   public final String departureCity;
+   public final String arrivalCity;
+   public final Date flightDate;
+   public final Time departureTime;
+   public final Time arrivalTime;
+   public final int numOfStops;
+   // null until the flight has departed / arrived
+   public final Boolean departedOnTime;
+   public final Boolean arrivedOnTime;
+   public final int seatsTotal;
+   public final int seatsSold;
+
+   ScheduledFlightRow(ResultSet rs) throws SQLException {
+      this.flightInstanceId = rs.getInt(1);
+      this.flightNumber = rs.getString(2);
+      this.departureCity = rs.getString(3);
+      this.arrivalCity = rs.getString(4);
+      this.flightDate = rs.getDate(5);
+      this.departureTime = rs.getTime(6);
+      this.arrivalTime = rs.getTime(7);
+      this.numOfStops = rs.getInt(8);
+      this.departedOnTime = FlightInstanceRow.getBoolean(rs, 9);
+      this.arrivedOnTime = FlightInstanceRow.getBoolean(rs, 10);
+      this.seatsTotal = rs.getInt(11);
+      this.seatsSold = rs.getInt(12);
+   }
+
+   /**
+    * @return "Yes", "No" or "N/A" for an on-time flag
+    */
+   public static String yesNo(Boolean flag) {
+      return flag == null ? "N/A" : (flag.booleanValue() ? "Yes" : "No");
+   }
+
+}//end ScheduledFlightRow
@@ -0,0 +1,122 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+
+
+/**
+ * This class holds the reader and writers of one interactive user.  The
+ * console user reads System.in; in server mode every client connection gets
+ * its own Session, attached to the thread that serves it.
+ *
+ */
+public class Session {
+
+   // the terminal the program was started from
+   private static final Session CONSOLE = new Session(new InputStreamReader(System.in), System.out, System.err);
+
+   // session served by the current thread, if any
+   private static final ThreadLocal<Session> CURRENT = new ThreadLocal<Session>();
+
+   private final BufferedReader _in;
+   private final PrintStream _out;
+   private final PrintStream _err;
+   private volatile boolean _closed = false;
+
+   /**
+    * Creates a new session
+    *
+    * @param in the user's input
+    * @param out where menus and results are written
+    * @param err where error messages are written
+    */
+   public Session(Reader in, PrintStream out, PrintStream err) {
+      this._in = new SessionReader(in);
+      this._out = out;
+      this._err = err;
+   }//end Session
+
+   /**
+    * Creates a new session that reads one stream and writes menus and errors
+    * to another, e.g. the two halves of a socket.  The input is decoded as
+    * UTF-8, whatever the platform charset; out should encode UTF-8 too.
+    */
+   public Session(InputStream in, PrintStream out) {
+      this(new InputStreamReader(in, StandardCharsets.UTF_8), out, out);
+   }
+
+   /**
+    * @return the session attached to the current thread, or the console
+    */
+   public static Session current() {
+      Session session = CURRENT.get();
+      return session == null ? CONSOLE : session;
+   }
+
+   /**
+    * Makes the session current for the calling thread until detach is called.
+    */
+   public static void attach(Session session) {
+      CURRENT.set(session);
+   }
+
+   public static void detach() {
+      CURRENT.remove();
+   }
+
+   public BufferedReader in() {
+      return this._in;
+   }
+
+   public PrintStream out() {
+      return this._out;
+   }
+
+   public PrintStream err() {
+      return this._err;
+   }
+
+   /**
+    * @return true once the user's input reached end of stream
+    */
+   public boolean isClosed() {
+      return this._closed;
+   }
+
+   /*
+    * Flushes pending prompts before blocking for input, and remembers when
+    * the user went away so menu loops can stop.
+    **/
+   private class SessionReader extends BufferedReader {
+      SessionReader(Reader in) {
+         super(in);
+      }
+
+      public String readLine() throws IOException {
+         Session.this._out.flush();
+         if (Session.this._err != Session.this._out)
+            Session.this._err.flush();
+         String line = super.readLine();
+         if (line == null)
+            Session.this._closed = true;
+         return line;
+      }
+   }//end SessionReader
+
+}//end Session
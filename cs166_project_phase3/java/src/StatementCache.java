@@ -0,0 +1,138 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * This class keeps a bounded, least-recently-used cache of PreparedStatements
+ * for a single physical connection.  Statements are keyed by their SQL
+ * template (the query text with '?' placeholders), so the same menu action
+ * reuses the same statement and the server can reuse its plan.
+ *
+ */
+public class StatementCache {
+
+   // connection that owns every cached statement
+   private final Connection _connection;
+
+   // maximum number of statements kept open
+   private final int _capacity;
+
+   // SQL template -> prepared statement, kept in access order for LRU eviction
+   private final LinkedHashMap<String, PreparedStatement> _statements;
+
+   private final AtomicLong _hits = new AtomicLong();
+   private final AtomicLong _misses = new AtomicLong();
+   private final AtomicLong _evictions = new AtomicLong();
+
+   /**
+    * Creates a new statement cache for the given connection
+    *
+    * @param connection the physical connection statements are prepared on
+    * @param capacity the maximum number of statements kept open
+    */
+   public StatementCache(Connection connection, int capacity) {
+      this._connection = connection;
+      this._capacity = capacity;
+      this._statements = new LinkedHashMap<String, PreparedStatement>(16, 0.75f, true) {
+         protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+            if (size() <= StatementCache.this._capacity)
+               return false;
+            closeQuietly(eldest.getValue());
+            StatementCache.this._evictions.incrementAndGet();
+            return true;
+         }
+      };
+   }//end StatementCache
+
+   /**
+    * Returns the cached statement for a SQL template, preparing it on a miss.
+    * Parameters left over from a previous use are cleared.
+    *
+    * @param sql the SQL template
+    * @return a prepared statement owned by this cache; callers must not close it
+    * @throws java.sql.SQLException when the statement cannot be prepared
+    */
+   public synchronized PreparedStatement prepare(String sql) throws SQLException {
+      PreparedStatement stmt = this._statements.get(sql);
+      if (stmt != null) {
+         this._hits.incrementAndGet();
+         stmt.clearParameters();
+         return stmt;
+      }
+      this._misses.incrementAndGet();
+      stmt = this._connection.prepareStatement(sql);
+      useServerPrepare(stmt);
+      this._statements.put(sql, stmt);
+      return stmt;
+   }//end prepare
+
+   public long getHits() {
+      return this._hits.get();
+   }
+
+   public long getMisses() {
+      return this._misses.get();
+   }
+
+   public long getEvictions() {
+      return this._evictions.get();
+   }
+
+   public synchronized int size() {
+      return this._statements.size();
+   }
+
+   /**
+    * Closes every cached statement.  The connection itself is left open.
+    */
+   public synchronized void clear() {
+      for (PreparedStatement stmt : this._statements.values())
+         closeQuietly(stmt);
+      this._statements.clear();
+   }//end clear
+
+   /*
+    * Asks the driver to plan the statement on the server.  The 7.3 driver
+    * exposes setUseServerPrepare, newer drivers use setPrepareThreshold; the
+    * calls are made reflectively so either jar can be on the classpath.
+    **/
+   private static void useServerPrepare(PreparedStatement stmt) {
+      try {
+         stmt.getClass().getMethod("setUseServerPrepare", boolean.class).invoke(stmt, Boolean.TRUE);
+         return;
+      } catch (Exception e) {
+         // not the 7.3 driver, try the newer API.
+      }
+      try {
+         stmt.getClass().getMethod("setPrepareThreshold", int.class).invoke(stmt, Integer.valueOf(1));
+      } catch (Exception e) {
+         // ignored, the statement still works client-side.
+      }
+   }//end useServerPrepare
+
+   private static void closeQuietly(PreparedStatement stmt) {
+      try {
+         stmt.close();
+      } catch (SQLException e) {
+         // ignored.
+      }
+   }
+
+}//end StatementCache
@@ -0,0 +1,288 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * This class prints report rows as an aligned table, CSV or JSON.  Rows
+ * are formatted into one buffer per thread and written in chunks of
+ * CHUNK_SIZE characters instead of one print call per cell.  Table column
+ * widths come from the first SAMPLE_ROWS rows; later rows that are wider
+ * push their own cell out instead of being cut.
+ *
+ * The format is chosen with -Dairline.output=table|csv|json.  Titles and
+ * messages given to note are only printed as a table, so CSV and JSON
+ * output can be piped straight to a file.  A thread can have one report
+ * open at a time, since they share the buffer.
+ *
+ */
+public class TableRenderer {
+
+   public enum Format { TABLE, CSV, JSON }
+
+   // -Dairline.output=table|csv|json
+   static final Format FORMAT = format(System.getProperty("airline.output", "table"));
+
+   // rows read before table column widths are fixed, -Dairline.output.sample=<n>
+   static final int SAMPLE_ROWS = Integer.getInteger("airline.output.sample", 100);
+
+   static final int CHUNK_SIZE = 64 * 1024;
+   static final int MAX_WIDTH = 60;
+
+   // one formatting buffer per session thread, reused by every report
+   private static final ThreadLocal<StringBuilder> BUFFER = ThreadLocal.withInitial(() -> new StringBuilder(CHUNK_SIZE + 1024));
+
+   private final PrintStream _out;
+   private final Format _format;
+   private final String[] _columns;
+   private final StringBuilder _buffer;
+
+   // rows held back until the table widths are known; null afterwards
+   private List<Object[]> _sample = new ArrayList<Object[]>();
+   private int[] _widths;
+   private int _rows = 0;
+
+   /**
+    * Creates a renderer in the configured FORMAT
+    *
+    * @param out where the report goes
+    * @param columns the column headers
+    */
+   public TableRenderer(PrintStream out, String... columns) {
+      this(out, FORMAT, columns);
+   }
+
+   /**
+    * @param out where the report goes
+    * @param format the output format
+    * @param columns the column headers
+    */
+   public TableRenderer(PrintStream out, Format format, String... columns) {
+      this._out = out;
+      this._format = format;
+      this._columns = columns;
+      this._buffer = BUFFER.get();
+      this._buffer.setLength(0);
+      if (format != Format.TABLE)
+         this._sample = null;
+      if (format == Format.CSV)
+         csv(columns);
+      else if (format == Format.JSON)
+         this._buffer.append('[');
+   }//end TableRenderer
+
+   /**
+    * @return true when the report is printed as an aligned table
+    */
+   public boolean isTable() {
+      return this._format == Format.TABLE;
+   }
+
+   /**
+    * Prints a title or message line, in table format only.
+    */
+   public TableRenderer note(String line) {
+      if (isTable()) {
+         flushSample();
+         this._buffer.append(line).append('\n');
+         maybeWrite();
+      }
+      return this;
+   }//end note
+
+   /**
+    * Adds one row; values are printed with String.valueOf, numbers are
+    * right-aligned in a table and unquoted in JSON.
+    */
+   public void row(Object... values) {
+      ++this._rows;
+      if (this._sample != null) {
+         this._sample.add(values.clone());
+         if (this._sample.size() >= SAMPLE_ROWS)
+            flushSample();
+         return;
+      }
+      switch (this._format) {
+         case TABLE: tableRow(values); break;
+         case CSV: csv(values); break;
+         case JSON: jsonRow(values); break;
+      }
+      maybeWrite();
+   }//end row
+
+   /**
+    * Writes everything still buffered.
+    *
+    * @return the number of rows added
+    */
+   public int finish() {
+      return finish(null);
+   }
+
+   /**
+    * Writes everything still buffered, or the message when there were no
+    * rows and the report is a table.
+    *
+    * @param emptyMessage printed instead of an empty table; may be null
+    * @return the number of rows added
+    */
+   public int finish(String emptyMessage) {
+      if (this._rows == 0 && emptyMessage != null && isTable())
+         this._buffer.append(emptyMessage).append('\n');
+      flushSample();
+      if (this._format == Format.JSON)
+         this._buffer.append(this._rows == 0 ? "]\n" : "\n]\n");
+      write();
+      return this._rows;
+   }//end finish
+
+   /*
+    * Fixes the column widths from the sampled rows and formats them
+    **/
+   private void flushSample() {
+      if (this._sample == null)
+         return;
+      List<Object[]> sample = this._sample;
+      this._sample = null;
+      if (sample.isEmpty()) {
+         // keep waiting for rows, the header is only printed above some
+         this._sample = sample;
+         return;
+      }
+      this._widths = new int[this._columns.length];
+      for (int c = 0; c < this._columns.length; ++c)
+         this._widths[c] = Math.min(MAX_WIDTH, this._columns[c].length());
+      for (Object[] row : sample)
+         for (int c = 0; c < this._columns.length && c < row.length; ++c)
+            this._widths[c] = Math.max(this._widths[c], Math.min(MAX_WIDTH, String.valueOf(row[c]).length()));
+
+      tableRow(this._columns);
+      this._buffer.append('|');
+      for (int width : this._widths) {
+         for (int i = 0; i < width + 2; ++i)
+            this._buffer.append('-');
+         this._buffer.append('|');
+      }
+      this._buffer.append('\n');
+      for (Object[] row : sample)
+         tableRow(row);
+      maybeWrite();
+   }//end flushSample
+
+   private void tableRow(Object[] values) {
+      StringBuilder b = this._buffer;
+      b.append('|');
+      for (int c = 0; c < this._widths.length; ++c) {
+         Object value = c < values.length ? values[c] : "";
+         String text = String.valueOf(value);
+         int pad = this._widths[c] - text.length();
+         b.append(' ');
+         if (value instanceof Number)
+            spaces(b, pad);
+         b.append(text);
+         if (!(value instanceof Number))
+            spaces(b, pad);
+         b.append(" |");
+      }
+      b.append('\n');
+   }//end tableRow
+
+   private void csv(Object[] values) {
+      StringBuilder b = this._buffer;
+      for (int c = 0; c < values.length; ++c) {
+         if (c > 0)
+            b.append(',');
+         if (values[c] == null)
+            continue;
+         String text = String.valueOf(values[c]);
+         if (text.indexOf(',') < 0 && text.indexOf('"') < 0 && text.indexOf('\n') < 0 && text.indexOf('\r') < 0) {
+            b.append(text);
+         } else {
+            b.append('"');
+            for (int i = 0; i < text.length(); ++i) {
+               char ch = text.charAt(i);
+               if (ch == '"')
+                  b.append('"');
+               b.append(ch);
+            }
+            b.append('"');
+         }
+      }
+      b.append('\n');
+   }//end csv
+
+   private void jsonRow(Object[] values) {
+      StringBuilder b = this._buffer;
+      b.append(this._rows == 1 ? "\n  {" : ",\n  {");
+      for (int c = 0; c < this._columns.length; ++c) {
+         if (c > 0)
+            b.append(", ");
+         jsonString(b, this._columns[c]);
+         b.append(": ");
+         Object value = c < values.length ? values[c] : null;
+         if (value == null)
+            b.append("null");
+         else if (value instanceof Number || value instanceof Boolean)
+            b.append(value);
+         else
+            jsonString(b, String.valueOf(value));
+      }
+      b.append('}');
+   }//end jsonRow
+
+   private static void jsonString(StringBuilder b, String s) {
+      b.append('"');
+      for (int i = 0; i < s.length(); ++i) {
+         char ch = s.charAt(i);
+         if (ch == '"' || ch == '\\')
+            b.append('\\').append(ch);
+         else if (ch < 0x20)
+            b.append(String.format("\\u%04x", (int) ch));
+         else
+            b.append(ch);
+      }
+      b.append('"');
+   }
+
+   private static Format format(String name) {
+      for (Format f : Format.values())
+         if (f.name().equalsIgnoreCase(name))
+            return f;
+      System.err.println("Unknown airline.output '" + name + "', using table");
+      return Format.TABLE;
+   }
+
+   private static void spaces(StringBuilder b, int count) {
+      for (int i = 0; i < count; ++i)
+         b.append(' ');
+   }
+
+   private void maybeWrite() {
+      if (this._buffer.length() >= CHUNK_SIZE)
+         write();
+   }
+
+   private void write() {
+      if (this._buffer.length() == 0)
+         return;
+      this._out.print(this._buffer);
+      this._out.flush();
+      this._buffer.setLength(0);
+      if (this._buffer.capacity() > 4 * CHUNK_SIZE)
+         this._buffer.trimToSize();
+   }//end write
+
+}//end TableRenderer
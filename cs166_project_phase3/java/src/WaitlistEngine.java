@@ -0,0 +1,180 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+
+/**
+ * This class promotes waitlisted reservations when seats free up.  It keeps
+ * an ordered queue of waitlisted ReservationIDs per FlightInstanceID; a
+ * queue is loaded from the database the first time its instance frees a
+ * seat and is then kept current by the booking engine.  Promotion runs in
+ * the caller's transaction when a cancellation or capacity change frees
+ * seats, so nothing ever polls the Reservation table.
+ *
+ */
+public class WaitlistEngine {
+
+   /*
+    * Waitlisted ReservationIDs of one instance, oldest first
+    **/
+   private static final class InstanceQueue {
+      LinkedHashSet<String> ids = new LinkedHashSet<String>();
+      boolean loaded = false;
+   }
+
+   static final String LOCK_INSTANCE =
+      "SELECT SeatsTotal - SeatsSold FROM FlightInstance WHERE FlightInstanceID = ? FOR UPDATE";
+
+   static final String LOAD_QUEUE =
+      "SELECT ReservationID FROM Reservation " +
+      "WHERE FlightInstanceID = ? AND Status = 'waitlist' " +
+      "ORDER BY CAST(SUBSTRING(ReservationID, 2) AS INTEGER)";
+
+   // the Status guard skips entries cancelled or promoted by another JVM
+   static final String PROMOTE =
+      "UPDATE Reservation SET Status = 'reserved' WHERE ReservationID = ? AND Status = 'waitlist'";
+
+   static final String TAKE_SEATS =
+      "UPDATE FlightInstance SET SeatsSold = SeatsSold + ? WHERE FlightInstanceID = ?";
+
+   private final ConcurrentHashMap<Integer, InstanceQueue> _queues = new ConcurrentHashMap<Integer, InstanceQueue>();
+
+   /**
+    * Appends a reservation that was just added to the waitlist.
+    */
+   public void enqueue(int flightInstanceId, String reservationId) {
+      InstanceQueue queue = queue(flightInstanceId);
+      synchronized (queue) {
+         queue.ids.add(reservationId);
+      }
+   }//end enqueue
+
+   /**
+    * Drops a reservation that left the waitlist, e.g. because it was cancelled.
+    */
+   public void remove(int flightInstanceId, String reservationId) {
+      InstanceQueue queue = this._queues.get(flightInstanceId);
+      if (queue == null)
+         return;
+      synchronized (queue) {
+         queue.ids.remove(reservationId);
+      }
+   }//end remove
+
+   /**
+    * Forgets the queue of an instance so it is reloaded on next use.  Called
+    * when a promotion transaction rolled back.
+    */
+   public void forget(int flightInstanceId) {
+      this._queues.remove(flightInstanceId);
+   }
+
+   /**
+    * Promotes waitlisted reservations into every free seat of the instance.
+    * Must be called inside a transaction on conn; the instance row stays
+    * locked until that transaction ends.  If the transaction rolls back the
+    * caller must call forget.
+    *
+    * @param conn the connection running the caller's transaction
+    * @param flightInstanceId the instance that may have free seats
+    * @return the promoted ReservationIDs, oldest first
+    * @throws java.sql.SQLException when the promotion failed
+    */
+   public List<String> promote(ConnectionPool.PooledConnection conn, int flightInstanceId) throws SQLException {
+      List<String> promoted = new ArrayList<String>();
+      ResultSet rs = AirlineManagement.prepare(conn, LOCK_INSTANCE, flightInstanceId).executeQuery();
+      int free = rs.next() ? rs.getInt(1) : 0;
+      rs.close();
+      if (free <= 0)
+         return promoted;
+
+      InstanceQueue queue = queue(flightInstanceId);
+      synchronized (queue) {
+         boolean reloaded = false;
+         while (promoted.size() < free) {
+            if (!queue.loaded || (queue.ids.isEmpty() && !reloaded)) {
+               load(conn, flightInstanceId, queue);
+               reloaded = true;
+            }
+            List<String> batch = poll(queue, free - promoted.size());
+            if (batch.isEmpty())
+               break;
+
+            PreparedStatement stmt = conn.prepare(PROMOTE);
+            for (String id : batch) {
+               stmt.setString(1, id);
+               stmt.addBatch();
+            }
+            int[] counts = stmt.executeBatch();
+            for (int i = 0; i < counts.length; ++i)
+               if (counts[i] > 0)
+                  promoted.add(batch.get(i));
+         }
+      }
+
+      if (!promoted.isEmpty()) {
+         PreparedStatement stmt = AirlineManagement.prepare(conn, TAKE_SEATS, promoted.size(), flightInstanceId);
+         stmt.executeUpdate();
+      }
+      return promoted;
+   }//end promote
+
+   private InstanceQueue queue(int flightInstanceId) {
+      InstanceQueue queue = this._queues.get(flightInstanceId);
+      if (queue == null) {
+         InstanceQueue created = new InstanceQueue();
+         queue = this._queues.putIfAbsent(flightInstanceId, created);
+         if (queue == null)
+            queue = created;
+      }
+      return queue;
+   }
+
+   /*
+    * Reads the instance's waitlist in booking order.  Entries enqueued while
+    * the queue was not loaded are kept after the loaded ones.
+    **/
+   private static void load(ConnectionPool.PooledConnection conn, int flightInstanceId, InstanceQueue queue) throws SQLException {
+      LinkedHashSet<String> ids = new LinkedHashSet<String>();
+      ResultSet rs = AirlineManagement.prepare(conn, LOAD_QUEUE, flightInstanceId).executeQuery();
+      while (rs.next())
+         ids.add(rs.getString(1));
+      rs.close();
+      if (queue.loaded) {
+         queue.ids = ids;
+      } else {
+         ids.addAll(queue.ids);
+         queue.ids = ids;
+         queue.loaded = true;
+      }
+   }//end load
+
+   private static List<String> poll(InstanceQueue queue, int max) {
+      List<String> batch = new ArrayList<String>();
+      Iterator<String> it = queue.ids.iterator();
+      while (it.hasNext() && batch.size() < max) {
+         batch.add(it.next());
+         it.remove();
+      }
+      return batch;
+   }
+
+}//end WaitlistEngine
@@ -1,11 +1,17 @@
 #!/bin/bash
+# usage: create_db.sh [--partitioned]
 cs166_initdb
 cs166_db_start
 cs166_db_status
 DIR="$( cd "$( dirname "${BASH_SOURCE[0]}" )" && pwd )"
 echo $DIR 
+TABLES=create_tables.sql
+LOAD=load_data.sql
+if [ "$1" = "--partitioned" ]; then
+  TABLES=create_tables_partitioned.sql
+  LOAD=load_data_partitioned.sql
+fi
 cs166_createdb $USER"_project_phase_3_DB"
-cs166_psql -p $PGPORT $USER"_project_phase_3_DB" < $DIR/../src/create_tables.sql
+cs166_psql -p $PGPORT $USER"_project_phase_3_DB" < $DIR/../src/$TABLES
 cs166_psql -p $PGPORT $USER"_project_phase_3_DB" < $DIR/../src/create_indexes.sql
-cs166_psql -p $PGPORT $USER"_project_phase_3_DB" < $DIR/../src/load_data.sql
-
+cs166_psql -p $PGPORT $USER"_project_phase_3_DB" < $DIR/../src/$LOAD
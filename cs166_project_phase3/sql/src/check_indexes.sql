@@ -0,0 +1,104 @@
+-- Plan check for the composite and covering indexes of create_indexes.sql
+--
+-- Runs EXPLAIN on the shape of every hot query that one of those indexes
+-- was made for and stops with an error when the plan doesn't use it, so a
+-- query or index change that silently falls back to scanning is caught.
+-- Run it against a loaded database built with create_tables.sql:
+--   cs166_psql -p $PGPORT $USER"_project_phase_3_DB" < check_indexes.sql
+-- (partition indexes of create_tables_partitioned.sql get generated names
+-- and are not checked here).
+--
+-- The sample data is small enough that the planner may rightly prefer a
+-- sequential scan, so sequential and bitmap scans are turned off for the
+-- session: the check proves each index fits its query (leading columns,
+-- covered columns), not that it wins at every table size.  The values are
+-- taken from the loaded rows.
+
+\set ON_ERROR_STOP on
+
+VACUUM ANALYZE FlightInstance;
+VACUUM ANALYZE Schedule;
+VACUUM ANALYZE Reservation;
+VACUUM ANALYZE Pilot;
+VACUUM ANALYZE Technician;
+
+SET enable_seqscan = off;
+SET enable_bitmapscan = off;
+
+-- Raises unless the plan of query scans index_name, with a node of type
+-- node_type when one is given
+CREATE FUNCTION pg_temp.expect_index(query TEXT, index_name TEXT, node_type TEXT DEFAULT NULL) RETURNS VOID AS $$
+DECLARE
+    plan JSON;
+BEGIN
+    EXECUTE 'EXPLAIN (FORMAT JSON) ' || query INTO plan;
+    IF position(format('"Index Name": "%s"', index_name) IN plan::TEXT) = 0 THEN
+        RAISE EXCEPTION 'plan does not use %: %', index_name, query
+            USING DETAIL = plan::TEXT;
+    END IF;
+    IF node_type IS NOT NULL AND position(format('"Node Type": "%s"', node_type) IN plan::TEXT) = 0 THEN
+        RAISE EXCEPTION 'plan has no % on %: %', node_type, index_name, query
+            USING DETAIL = plan::TEXT;
+    END IF;
+    RAISE NOTICE 'ok: %', index_name;
+END;
+$$ LANGUAGE plpgsql;
+
+DO $$
+DECLARE
+    instance_id INTEGER;
+    instance_flight TEXT;
+    instance_date DATE;
+    flight_number TEXT;
+    pilot_name TEXT;
+    technician_name TEXT;
+BEGIN
+    SELECT FlightInstanceID, FlightNumber, FlightDate INTO instance_id, instance_flight, instance_date
+    FROM FlightInstance WHERE FlightDate IS NOT NULL ORDER BY FlightInstanceID LIMIT 1;
+    SELECT FlightNumber INTO flight_number FROM Schedule ORDER BY ScheduleID LIMIT 1;
+    SELECT Name INTO pilot_name FROM Pilot ORDER BY PilotID LIMIT 1;
+    SELECT Name INTO technician_name FROM Technician ORDER BY TechnicianID LIMIT 1;
+    IF instance_id IS NULL OR flight_number IS NULL OR pilot_name IS NULL OR technician_name IS NULL THEN
+        RAISE EXCEPTION 'load the data first (load_data.sql)';
+    END IF;
+
+    -- instance of a flight on a date (MakeReservation, BookingEngine)
+    PERFORM pg_temp.expect_index(format(
+        'SELECT FlightInstanceID FROM FlightInstance WHERE FlightNumber = %L AND FlightDate = %L',
+        instance_flight, instance_date), 'idx_flightinstance_flightnumber_date');
+
+    -- flight stats report over a date range
+    PERFORM pg_temp.expect_index(format(
+        'SELECT FlightInstanceID, FlightDate, SeatsSold FROM FlightInstance ' ||
+        'WHERE FlightNumber = %L AND FlightDate BETWEEN %L AND %L ORDER BY FlightDate, FlightInstanceID',
+        instance_flight, instance_date, instance_date + 30), 'idx_flightinstance_flightnumber_date');
+
+    -- weekly schedule of a flight (ViewFlights), answered from the index alone
+    PERFORM pg_temp.expect_index(format(
+        'SELECT s.DayOfWeek, s.DepartureTime, s.ArrivalTime FROM Schedule s ' ||
+        'WHERE s.FlightNumber = %L ORDER BY s.DayNum', flight_number),
+        'idx_schedule_flightnumber_daynum', 'Index Only Scan');
+
+    -- schedule row of an instance (ScheduledFlightRow.SOURCE)
+    PERFORM pg_temp.expect_index(format(
+        'SELECT s.DepartureTime, s.ArrivalTime FROM FlightInstance fi ' ||
+        'JOIN Schedule s ON fi.FlightNumber = s.FlightNumber AND s.DayNum = fi.FlightDow ' ||
+        'WHERE fi.FlightInstanceID = %s', instance_id), 'idx_schedule_flightnumber_daynum');
+
+    -- waitlist queue of an instance (WaitlistEngine.LOAD_QUEUE)
+    PERFORM pg_temp.expect_index(format(
+        'SELECT ReservationID FROM Reservation WHERE FlightInstanceID = %s AND Status = %L ' ||
+        'ORDER BY CAST(SUBSTRING(ReservationID, 2) AS INTEGER)', instance_id, 'waitlist'),
+        'idx_reservation_instance_status');
+
+    -- login by name (IdentityCache.FIND_PILOT / FIND_TECHNICIAN)
+    PERFORM pg_temp.expect_index(format(
+        'SELECT PilotID FROM Pilot WHERE Name = %L ORDER BY PilotID LIMIT 1', pilot_name), 'idx_pilot_name');
+    PERFORM pg_temp.expect_index(format(
+        'SELECT TechnicianID FROM Technician WHERE Name = %L ORDER BY TechnicianID LIMIT 1', technician_name),
+        'idx_technician_name');
+END;
+$$;
+
+RESET enable_seqscan;
+RESET enable_bitmapscan;
@@ -4,17 +4,18 @@ CREATE INDEX idx_flight_departurecity ON Flight(DepartureCity);
 CREATE INDEX idx_flight_arrivalcity ON Flight(ArrivalCity);
 
 -- FlightInstance
-CREATE INDEX idx_flightinstance_flightnumber ON FlightInstance(FlightNumber);
+CREATE INDEX idx_flightinstance_flightnumber_date ON FlightInstance(FlightNumber, FlightDate);
 CREATE INDEX idx_flightinstance_flightdate ON FlightInstance(FlightDate);
 
 -- Schedule
-CREATE INDEX idx_schedule_flightnumber ON Schedule(FlightNumber);
-CREATE INDEX idx_schedule_dayofweek ON Schedule(DayOfWeek);
+CREATE INDEX idx_schedule_flightnumber_daynum ON Schedule(FlightNumber, DayNum)
+    INCLUDE (DayOfWeek, DepartureTime, ArrivalTime);
 
 -- Reservation
 CREATE INDEX idx_reservation_customerid ON Reservation(CustomerID);
 CREATE INDEX idx_reservation_flightinstanceid ON Reservation(FlightInstanceID);
 CREATE INDEX idx_reservation_status ON Reservation(Status);
+CREATE INDEX idx_reservation_instance_status ON Reservation(FlightInstanceID, Status);
 
 -- Repair
 CREATE INDEX idx_repair_planeid ON Repair(PlaneID);
@@ -25,3 +26,7 @@ CREATE INDEX idx_repair_repairdate ON Repair(RepairDate);
 CREATE INDEX idx_maintreq_planeid ON MaintenanceRequest(PlaneID);
 CREATE INDEX idx_maintreq_pilotid ON MaintenanceRequest(PilotID);
 CREATE INDEX idx_maintreq_requestdate ON MaintenanceRequest(RequestDate);
+
+-- Pilot / Technician (login by name; the ID breaks ties between equal names)
+CREATE INDEX idx_pilot_name ON Pilot(Name, PilotID);
+CREATE INDEX idx_technician_name ON Technician(Name, TechnicianID);
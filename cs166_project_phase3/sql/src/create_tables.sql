@@ -10,6 +10,13 @@ DROP TABLE IF EXISTS Flight;
 DROP TABLE IF EXISTS Plane;
 DROP TABLE IF EXISTS Pilot;
 
+DROP SEQUENCE IF EXISTS reservation_id_seq;
+DROP SEQUENCE IF EXISTS customer_id_seq;
+DROP SEQUENCE IF EXISTS maintenance_request_id_seq;
+DROP SEQUENCE IF EXISTS repair_id_seq;
+DROP SEQUENCE IF EXISTS pilot_id_seq;
+DROP SEQUENCE IF EXISTS technician_id_seq;
+
 -- Plane Table
 CREATE TABLE Plane (
     PlaneID TEXT PRIMARY KEY,
@@ -35,6 +42,12 @@ CREATE TABLE Schedule (
     DayOfWeek TEXT,
     DepartureTime TIME,
     ArrivalTime TIME,
+    -- ISO day number (Monday = 1 ... Sunday = 7), joined against FlightInstance.FlightDow
+    DayNum SMALLINT GENERATED ALWAYS AS (
+        CASE DayOfWeek
+            WHEN 'Monday' THEN 1 WHEN 'Tuesday' THEN 2 WHEN 'Wednesday' THEN 3
+            WHEN 'Thursday' THEN 4 WHEN 'Friday' THEN 5 WHEN 'Saturday' THEN 6
+            WHEN 'Sunday' THEN 7 END) STORED,
     FOREIGN KEY (FlightNumber) REFERENCES Flight(FlightNumber)
 );
 
@@ -49,6 +62,8 @@ CREATE TABLE FlightInstance (
     SeatsSold INTEGER,
     NumOfStops INTEGER,
     TicketCost DECIMAL(10,2),
+    -- ISO day number of FlightDate (Monday = 1 ... Sunday = 7)
+    FlightDow SMALLINT GENERATED ALWAYS AS (CAST(EXTRACT(ISODOW FROM FlightDate) AS SMALLINT)) STORED,
     FOREIGN KEY (FlightNumber) REFERENCES Flight(FlightNumber)
 );
 
@@ -69,7 +84,7 @@ CREATE TABLE Reservation (
     ReservationID TEXT PRIMARY KEY,
     CustomerID INTEGER,
     FlightInstanceID INTEGER,
-    Status TEXT CHECK(Status IN ('reserved', 'waitlist', 'flown')),
+    Status TEXT CHECK(Status IN ('reserved', 'waitlist', 'flown', 'cancelled')),
     FOREIGN KEY (CustomerID) REFERENCES Customer(CustomerID),
     FOREIGN KEY (FlightInstanceID) REFERENCES FlightInstance(FlightInstanceID)
 );
@@ -106,4 +121,15 @@ CREATE TABLE MaintenanceRequest (
     PilotID TEXT,
     FOREIGN KEY (PlaneID) REFERENCES Plane(PlaneID),
     FOREIGN KEY (PilotID) REFERENCES Pilot(PilotID)
-);
\ No newline at end of file
+);
+
+-- ID Sequences
+-- The application reserves IDs in blocks: one nextval returns the last ID of
+-- a block of INCREMENT BY ids, so each value must match the block size used
+-- in AirlineManagement.java.  load_data.sql moves them past the loaded data.
+CREATE SEQUENCE reservation_id_seq INCREMENT BY 50 START WITH 50;
+CREATE SEQUENCE customer_id_seq INCREMENT BY 20 START WITH 20;
+CREATE SEQUENCE maintenance_request_id_seq INCREMENT BY 20 START WITH 20;
+CREATE SEQUENCE repair_id_seq INCREMENT BY 20 START WITH 20;
+CREATE SEQUENCE pilot_id_seq INCREMENT BY 1 START WITH 1;
+CREATE SEQUENCE technician_id_seq INCREMENT BY 1 START WITH 1;
@@ -0,0 +1,274 @@
+-- Partitioned variant of create_tables.sql (PostgreSQL 12 or later)
+--
+-- FlightInstance and Reservation are split into monthly range partitions on
+-- the flight date.  Reservation carries the FlightDate of its instance, so
+-- both tables are pruned by the same date predicate and a month of history
+-- can be dropped as a whole.  Partitions are created and retired by
+-- maintain_flight_partitions (see the end of this file); a row whose month
+-- has no partition is rejected, so run it before loading or booking new
+-- months.  load_data_partitioned.sql loads the CSV files into this schema.
+--
+-- A unique key of a partitioned table must hold the partition key, so the
+-- primary keys of both tables include FlightDate.  ReservationID is still
+-- unique over all dates: ReservationKey holds each one once and a trigger
+-- on Reservation keeps it, at the price of one more index insert per
+-- booking (see ReservationKey below).
+--
+-- Every other table, index and sequence is the same as in create_tables.sql.
+
+-- Drop existing tables
+DROP TABLE IF EXISTS MaintenanceRequest;
+DROP TABLE IF EXISTS Repair;
+DROP TABLE IF EXISTS Technician;
+DROP TABLE IF EXISTS Reservation;
+DROP TABLE IF EXISTS ReservationKey;
+DROP TABLE IF EXISTS Customer;
+DROP TABLE IF EXISTS FlightInstance;
+DROP TABLE IF EXISTS Schedule;
+DROP TABLE IF EXISTS Flight;
+DROP TABLE IF EXISTS Plane;
+DROP TABLE IF EXISTS Pilot;
+
+DROP SEQUENCE IF EXISTS reservation_id_seq;
+DROP SEQUENCE IF EXISTS customer_id_seq;
+DROP SEQUENCE IF EXISTS maintenance_request_id_seq;
+DROP SEQUENCE IF EXISTS repair_id_seq;
+DROP SEQUENCE IF EXISTS pilot_id_seq;
+DROP SEQUENCE IF EXISTS technician_id_seq;
+
+DROP FUNCTION IF EXISTS maintain_flight_partitions(INTEGER, INTEGER);
+DROP FUNCTION IF EXISTS create_flight_partitions(DATE, DATE);
+DROP FUNCTION IF EXISTS drop_flight_partitions(DATE);
+DROP FUNCTION IF EXISTS reservation_key();
+
+-- Plane Table
+CREATE TABLE Plane (
+    PlaneID TEXT PRIMARY KEY,
+    Make TEXT,
+    Model TEXT,
+    Year INTEGER,
+    LastRepairDate DATE
+);
+
+-- Flight Table
+CREATE TABLE Flight (
+    FlightNumber TEXT PRIMARY KEY,
+    PlaneID TEXT,
+    DepartureCity TEXT,
+    ArrivalCity TEXT,
+    FOREIGN KEY (PlaneID) REFERENCES Plane(PlaneID)
+);
+
+-- Schedule Table
+CREATE TABLE Schedule (
+    ScheduleID INTEGER PRIMARY KEY,
+    FlightNumber TEXT,
+    DayOfWeek TEXT,
+    DepartureTime TIME,
+    ArrivalTime TIME,
+    -- ISO day number (Monday = 1 ... Sunday = 7), joined against FlightInstance.FlightDow
+    DayNum SMALLINT GENERATED ALWAYS AS (
+        CASE DayOfWeek
+            WHEN 'Monday' THEN 1 WHEN 'Tuesday' THEN 2 WHEN 'Wednesday' THEN 3
+            WHEN 'Thursday' THEN 4 WHEN 'Friday' THEN 5 WHEN 'Saturday' THEN 6
+            WHEN 'Sunday' THEN 7 END) STORED,
+    FOREIGN KEY (FlightNumber) REFERENCES Flight(FlightNumber)
+);
+
+-- FlightInstance Table, one partition per month of FlightDate
+-- (a unique key must hold the partition key, so FlightInstanceID is unique
+-- per FlightDate; the application only ever assigns each ID once)
+CREATE TABLE FlightInstance (
+    FlightInstanceID INTEGER NOT NULL,
+    FlightNumber TEXT,
+    FlightDate DATE NOT NULL,
+    DepartedOnTime BOOLEAN,
+    ArrivedOnTime BOOLEAN,
+    SeatsTotal INTEGER,
+    SeatsSold INTEGER,
+    NumOfStops INTEGER,
+    TicketCost DECIMAL(10,2),
+    -- ISO day number of FlightDate (Monday = 1 ... Sunday = 7)
+    FlightDow SMALLINT GENERATED ALWAYS AS (CAST(EXTRACT(ISODOW FROM FlightDate) AS SMALLINT)) STORED,
+    PRIMARY KEY (FlightInstanceID, FlightDate),
+    FOREIGN KEY (FlightNumber) REFERENCES Flight(FlightNumber)
+) PARTITION BY RANGE (FlightDate);
+
+-- Customer Table
+CREATE TABLE Customer (
+    CustomerID INTEGER PRIMARY KEY,
+    FirstName TEXT,
+    LastName TEXT,
+    Gender TEXT,
+    DOB DATE,
+    Address TEXT,
+    Phone TEXT,
+    Zip TEXT
+);
+
+-- Reservation Table, co-partitioned with FlightInstance on its FlightDate
+CREATE TABLE Reservation (
+    ReservationID TEXT NOT NULL,
+    CustomerID INTEGER,
+    FlightInstanceID INTEGER NOT NULL,
+    Status TEXT CHECK(Status IN ('reserved', 'waitlist', 'flown', 'cancelled')),
+    -- FlightDate of the instance, copied so the table can be pruned by date
+    FlightDate DATE NOT NULL,
+    PRIMARY KEY (ReservationID, FlightDate),
+    FOREIGN KEY (CustomerID) REFERENCES Customer(CustomerID),
+    FOREIGN KEY (FlightInstanceID, FlightDate) REFERENCES FlightInstance(FlightInstanceID, FlightDate)
+) PARTITION BY RANGE (FlightDate);
+
+-- Every ReservationID once, with the date of its partition.  The primary
+-- key above only keeps an ID unique within one FlightDate; the trigger
+-- below adds every new ID here, so booking an ID that exists on another
+-- date fails with this table's unique violation.  Status updates don't touch
+-- it.  DROP TABLE and TRUNCATE fire no row triggers: drop_flight_partitions
+-- deletes the keys of the months it drops, and nothing else may truncate
+-- Reservation.
+CREATE TABLE ReservationKey (
+    ReservationID TEXT PRIMARY KEY,
+    FlightDate DATE NOT NULL
+);
+CREATE INDEX idx_reservationkey_flightdate ON ReservationKey(FlightDate);
+
+CREATE FUNCTION reservation_key() RETURNS TRIGGER AS $$
+BEGIN
+    IF TG_OP IN ('UPDATE', 'DELETE') THEN
+        DELETE FROM ReservationKey WHERE ReservationID = OLD.ReservationID;
+    END IF;
+    IF TG_OP IN ('INSERT', 'UPDATE') THEN
+        INSERT INTO ReservationKey (ReservationID, FlightDate) VALUES (NEW.ReservationID, NEW.FlightDate);
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER reservation_key AFTER INSERT OR DELETE OR UPDATE OF ReservationID, FlightDate ON Reservation
+    FOR EACH ROW EXECUTE FUNCTION reservation_key();
+
+-- Technician Table
+CREATE TABLE Technician (
+    TechnicianID TEXT PRIMARY KEY,
+    Name TEXT
+);
+
+-- Repair Table
+CREATE TABLE Repair (
+    RepairID INTEGER PRIMARY KEY,
+    PlaneID TEXT,
+    RepairCode TEXT,
+    RepairDate DATE,
+    TechnicianID TEXT,
+    FOREIGN KEY (PlaneID) REFERENCES Plane(PlaneID),
+    FOREIGN KEY (TechnicianID) REFERENCES Technician(TechnicianID)
+);
+
+-- Pilot Table
+CREATE TABLE Pilot (
+    PilotID TEXT PRIMARY KEY,
+    Name TEXT
+);
+
+-- MaintenanceRequest Table
+CREATE TABLE MaintenanceRequest (
+    RequestID INTEGER PRIMARY KEY,
+    PlaneID TEXT,
+    RepairCode TEXT,
+    RequestDate DATE,
+    PilotID TEXT,
+    FOREIGN KEY (PlaneID) REFERENCES Plane(PlaneID),
+    FOREIGN KEY (PilotID) REFERENCES Pilot(PilotID)
+);
+
+-- ID Sequences (see create_tables.sql)
+CREATE SEQUENCE reservation_id_seq INCREMENT BY 50 START WITH 50;
+CREATE SEQUENCE customer_id_seq INCREMENT BY 20 START WITH 20;
+CREATE SEQUENCE maintenance_request_id_seq INCREMENT BY 20 START WITH 20;
+CREATE SEQUENCE repair_id_seq INCREMENT BY 20 START WITH 20;
+CREATE SEQUENCE pilot_id_seq INCREMENT BY 1 START WITH 1;
+CREATE SEQUENCE technician_id_seq INCREMENT BY 1 START WITH 1;
+
+-- Partition maintenance
+-- Partitions are named flightinstance_yyyy_mm and reservation_yyyy_mm and
+-- cover one calendar month each.
+
+-- Creates the missing partitions of every month from first_day to last_day;
+-- returns the number of partitions created
+CREATE FUNCTION create_flight_partitions(first_day DATE, last_day DATE) RETURNS INTEGER AS $$
+DECLARE
+    month_start DATE := date_trunc('month', first_day);
+    created INTEGER := 0;
+    suffix TEXT;
+BEGIN
+    WHILE month_start <= last_day LOOP
+        suffix := to_char(month_start, 'YYYY_MM');
+        IF to_regclass('flightinstance_' || suffix) IS NULL THEN
+            EXECUTE format('CREATE TABLE %I PARTITION OF FlightInstance FOR VALUES FROM (%L) TO (%L)',
+                           'flightinstance_' || suffix, month_start, CAST(month_start + INTERVAL '1 month' AS DATE));
+            created := created + 1;
+        END IF;
+        IF to_regclass('reservation_' || suffix) IS NULL THEN
+            EXECUTE format('CREATE TABLE %I PARTITION OF Reservation FOR VALUES FROM (%L) TO (%L)',
+                           'reservation_' || suffix, month_start, CAST(month_start + INTERVAL '1 month' AS DATE));
+            created := created + 1;
+        END IF;
+        month_start := month_start + INTERVAL '1 month';
+    END LOOP;
+    RETURN created;
+END;
+$$ LANGUAGE plpgsql;
+
+-- Drops the partitions of every month that ends on or before before_date;
+-- returns the number of partitions dropped.  Per month the reservation
+-- partition goes first, with its ReservationKey rows, so no row references
+-- the instance partition any more.  That one is detached before it is
+-- dropped: Reservation's foreign key depends on every FlightInstance
+-- partition, so a plain DROP TABLE is refused, while DETACH PARTITION
+-- checks that no reservation still references its rows and removes the
+-- dependency.
+CREATE FUNCTION drop_flight_partitions(before_date DATE) RETURNS INTEGER AS $$
+DECLARE
+    part RECORD;
+    month_start DATE;
+    dropped INTEGER := 0;
+BEGIN
+    FOR part IN
+        SELECT substring(c.relname FROM '\d{4}_\d{2}$') AS suffix
+        FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid
+        WHERE i.inhparent = 'flightinstance'::regclass
+          AND c.relname ~ '^flightinstance_\d{4}_\d{2}$'
+          AND to_date(substring(c.relname FROM '\d{4}_\d{2}$'), 'YYYY_MM') + INTERVAL '1 month' <= before_date
+        ORDER BY 1
+    LOOP
+        month_start := to_date(part.suffix, 'YYYY_MM');
+        IF to_regclass('reservation_' || part.suffix) IS NOT NULL THEN
+            EXECUTE format('DROP TABLE %I', 'reservation_' || part.suffix);
+            dropped := dropped + 1;
+        END IF;
+        DELETE FROM ReservationKey
+        WHERE FlightDate >= month_start AND FlightDate < month_start + INTERVAL '1 month';
+        EXECUTE format('ALTER TABLE FlightInstance DETACH PARTITION %I', 'flightinstance_' || part.suffix);
+        EXECUTE format('DROP TABLE %I', 'flightinstance_' || part.suffix);
+        dropped := dropped + 1;
+    END LOOP;
+    RETURN dropped;
+END;
+$$ LANGUAGE plpgsql;
+
+-- The scheduled job: partitions for this month and the next months_ahead
+-- months, and none older than months_kept whole months before this one
+-- (months_kept <= 0 keeps everything).  Run daily, e.g. with
+--   AirlineManagement <db> <port> <user> --maintain-partitions 3 24
+CREATE FUNCTION maintain_flight_partitions(months_ahead INTEGER, months_kept INTEGER,
+                                           OUT created INTEGER, OUT dropped INTEGER) AS $$
+DECLARE
+    this_month DATE := date_trunc('month', CURRENT_DATE);
+BEGIN
+    created := create_flight_partitions(this_month, CAST(this_month + make_interval(months => months_ahead) AS DATE));
+    dropped := 0;
+    IF months_kept > 0 THEN
+        dropped := drop_flight_partitions(CAST(this_month - make_interval(months => months_kept) AS DATE));
+    END IF;
+END;
+$$ LANGUAGE plpgsql;
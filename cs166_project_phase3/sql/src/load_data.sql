@@ -20,3 +20,10 @@
 
 \copy MaintenanceRequest FROM 'data/MaintenanceRequest.csv' WITH DELIMITER ',' CSV HEADER; 
 
+-- Start ID sequences after the loaded data (see create_tables.sql)
+SELECT setval('reservation_id_seq', COALESCE(MAX(CAST(SUBSTRING(ReservationID, 2) AS INTEGER)), 0) + 50, false) FROM Reservation;
+SELECT setval('customer_id_seq', COALESCE(MAX(CustomerID), 0) + 20, false) FROM Customer;
+SELECT setval('maintenance_request_id_seq', COALESCE(MAX(RequestID), 0) + 20, false) FROM MaintenanceRequest;
+SELECT setval('repair_id_seq', COALESCE(MAX(RepairID), 0) + 20, false) FROM Repair;
+SELECT setval('pilot_id_seq', COALESCE(MAX(CAST(SUBSTRING(PilotID, 2) AS INTEGER)), 0) + 1, false) FROM Pilot;
+SELECT setval('technician_id_seq', COALESCE(MAX(CAST(SUBSTRING(TechnicianID, 2) AS INTEGER)), 0) + 1, false) FROM Technician;
@@ -0,0 +1,85 @@
+/* Loads the data files into the partitioned schema of create_tables_partitioned.sql.
+   FlightInstance and Reservation go through staging tables: the partitions
+   for the loaded months are created first, and each reservation takes the
+   FlightDate of its instance. */
+
+\copy Plane FROM 'data/Plane.csv' WITH DELIMITER ',' CSV HEADER; 
+
+\copy Flight FROM 'data/Flight.csv' WITH DELIMITER ',' CSV HEADER; 
+
+\copy Schedule FROM 'data/Schedule.csv' WITH DELIMITER ',' CSV HEADER; 
+
+CREATE TEMP TABLE FlightInstanceStaging (
+    FlightInstanceID INTEGER,
+    FlightNumber TEXT,
+    FlightDate DATE,
+    DepartedOnTime BOOLEAN,
+    ArrivedOnTime BOOLEAN,
+    SeatsTotal INTEGER,
+    SeatsSold INTEGER,
+    NumOfStops INTEGER,
+    TicketCost DECIMAL(10,2)
+);
+
+\copy FlightInstanceStaging FROM 'data/FlightInstance.csv' WITH DELIMITER ',' CSV HEADER; 
+
+SELECT create_flight_partitions(MIN(FlightDate), MAX(FlightDate)) FROM FlightInstanceStaging;
+
+INSERT INTO FlightInstance (FlightInstanceID, FlightNumber, FlightDate, DepartedOnTime, ArrivedOnTime,
+                            SeatsTotal, SeatsSold, NumOfStops, TicketCost)
+SELECT FlightInstanceID, FlightNumber, FlightDate, DepartedOnTime, ArrivedOnTime,
+       SeatsTotal, SeatsSold, NumOfStops, TicketCost
+FROM FlightInstanceStaging;
+
+\copy Customer FROM 'data/Customer.csv' WITH DELIMITER ',' CSV HEADER; 
+
+CREATE TEMP TABLE ReservationStaging (
+    ReservationID TEXT,
+    CustomerID INTEGER,
+    FlightInstanceID INTEGER,
+    Status TEXT
+);
+
+\copy ReservationStaging FROM 'data/Reservation.csv' WITH DELIMITER ',' CSV HEADER; 
+
+-- a reservation of an unknown instance has no date to be filed under; like
+-- the foreign key of create_tables.sql, it fails the Reservation load
+DO $$
+DECLARE
+    orphans BIGINT;
+BEGIN
+    SELECT count(*) INTO orphans
+    FROM ReservationStaging s
+    WHERE NOT EXISTS (SELECT 1 FROM FlightInstance fi WHERE fi.FlightInstanceID = s.FlightInstanceID);
+    IF orphans > 0 THEN
+        RAISE EXCEPTION '% reservations refer to unknown flight instances; no reservations were loaded', orphans;
+    END IF;
+
+    INSERT INTO Reservation (ReservationID, CustomerID, FlightInstanceID, Status, FlightDate)
+    SELECT s.ReservationID, s.CustomerID, s.FlightInstanceID, s.Status, fi.FlightDate
+    FROM ReservationStaging s
+    JOIN FlightInstance fi ON fi.FlightInstanceID = s.FlightInstanceID;
+END;
+$$;
+
+DROP TABLE FlightInstanceStaging;
+DROP TABLE ReservationStaging;
+
+\copy Technician FROM 'data/Technician.csv' WITH DELIMITER ',' CSV HEADER; 
+
+\copy Repair FROM 'data/Repair.csv' WITH DELIMITER ',' CSV HEADER; 
+
+\copy Pilot FROM 'data/Pilot.csv' WITH DELIMITER ',' CSV HEADER; 
+
+\copy MaintenanceRequest FROM 'data/MaintenanceRequest.csv' WITH DELIMITER ',' CSV HEADER; 
+
+-- Start ID sequences after the loaded data (see create_tables.sql)
+SELECT setval('reservation_id_seq', COALESCE(MAX(CAST(SUBSTRING(ReservationID, 2) AS INTEGER)), 0) + 50, false) FROM Reservation;
+SELECT setval('customer_id_seq', COALESCE(MAX(CustomerID), 0) + 20, false) FROM Customer;
+SELECT setval('maintenance_request_id_seq', COALESCE(MAX(RequestID), 0) + 20, false) FROM MaintenanceRequest;
+SELECT setval('repair_id_seq', COALESCE(MAX(RepairID), 0) + 20, false) FROM Repair;
+SELECT setval('pilot_id_seq', COALESCE(MAX(CAST(SUBSTRING(PilotID, 2) AS INTEGER)), 0) + 1, false) FROM Pilot;
+SELECT setval('technician_id_seq', COALESCE(MAX(CAST(SUBSTRING(TechnicianID, 2) AS INTEGER)), 0) + 1, false) FROM Technician;
+
+ANALYZE FlightInstance;
+ANALYZE Reservation;